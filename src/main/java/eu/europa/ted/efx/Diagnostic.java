@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * An error found in an EFX expression or template, reported as data rather than as an exception.
+ */
+public final class Diagnostic {
+
+  public enum Kind {
+    /**
+     * The input does not conform to the EFX grammar. Reported by the lexer or the parser.
+     */
+    SYNTAX,
+
+    /**
+     * The input is well-formed but cannot be translated: an unknown field, node or codelist, a
+     * type mismatch, an undeclared variable etc. Reported by the translator.
+     */
+    SEMANTIC
+  }
+
+  /**
+   * The format of the messages of {@link eu.europa.ted.efx.exceptions.ThrowingErrorListener}.
+   */
+  private static final Pattern SYNTAX_ERROR_MESSAGE = Pattern.compile("^line (\\d+):(\\d+) (.*)$",
+      Pattern.DOTALL);
+
+  private final Kind kind;
+  private final int line;
+  private final int column;
+  private final String message;
+
+  /**
+   * @param kind The kind of error.
+   * @param line The line the error was found at, starting from 1, or 0 if unknown.
+   * @param column The position of the error in the line, starting from 0.
+   * @param message The description of the error.
+   */
+  public Diagnostic(final Kind kind, final int line, final int column, final String message) {
+    this.kind = Objects.requireNonNull(kind);
+    this.line = line;
+    this.column = column;
+    this.message = message == null ? "" : message;
+  }
+
+  /**
+   * Describes an error that was thrown as an exception. Syntax errors are recognised by the
+   * message format of {@link eu.europa.ted.efx.exceptions.ThrowingErrorListener}.
+   * 
+   * @param error The exception.
+   * @return The corresponding diagnostic.
+   */
+  public static Diagnostic fromException(final RuntimeException error) {
+    final String message = error.getMessage();
+    if (error instanceof ParseCancellationException && message != null) {
+      final Matcher matcher = SYNTAX_ERROR_MESSAGE.matcher(message);
+      if (matcher.matches()) {
+        return new Diagnostic(Kind.SYNTAX, Integer.parseInt(matcher.group(1)),
+            Integer.parseInt(matcher.group(2)), matcher.group(3));
+      }
+    }
+    return new Diagnostic(Kind.SEMANTIC, 0, 0, message != null ? message : error.toString());
+  }
+
+  public Kind getKind() {
+    return this.kind;
+  }
+
+  /**
+   * @return The line the error was found at, starting from 1, or 0 if unknown.
+   */
+  public int getLine() {
+    return this.line;
+  }
+
+  /**
+   * @return The position of the error in the line, starting from 0.
+   */
+  public int getColumn() {
+    return this.column;
+  }
+
+  public String getMessage() {
+    return this.message;
+  }
+
+  @Override
+  public String toString() {
+    return this.line > 0 ? String.format("line %d:%d %s", this.line, this.column, this.message)
+        : this.message;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.kind, this.line, this.column, this.message);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    Diagnostic other = (Diagnostic) obj;
+    return this.kind == other.kind && this.line == other.line && this.column == other.column
+        && this.message.equals(other.message);
+  }
+}
@@ -13,23 +13,1218 @@
  */
 package eu.europa.ted.efx;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import eu.europa.ted.efx.cache.ExpressionFingerprint;
+import eu.europa.ted.efx.cache.CrossVersionTranslationReuse;
+import eu.europa.ted.efx.cache.TranslationCache;
+import eu.europa.ted.efx.cache.TranslationCacheKey;
+import eu.europa.ted.efx.cache.TranslationCacheKey.Kind;
 import eu.europa.ted.efx.component.EfxTranslatorFactory;
+import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
+import eu.europa.ted.efx.interfaces.EfxTemplateTranslator;
 import eu.europa.ted.efx.interfaces.TranslatorDependencyFactory;
 import eu.europa.ted.efx.interfaces.TranslatorOptions;
+import eu.europa.ted.efx.model.DecimalFormat;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.FieldIndex;
+import eu.europa.ted.efx.model.FieldPresenceCondition;
+import eu.europa.ted.efx.model.templates.TemplateModule;
+import eu.europa.ted.efx.parsing.CancellationToken;
+import eu.europa.ted.efx.parsing.WarmUpCorpus;
 
 /**
  * Provided for convenience, this class exposes static methods that allow you to quickly instantiate
  * an EFX translator to translate EFX expressions and templates.
+ * 
+ * Translators are instantiated once per dependency factory, SDK version, qualifier and translator
+ * options, and are then reused by all subsequent calls with the same arguments. This is possible
+ * because translators do not keep any state between translations. It does mean however that the
+ * dependencies created by the {@link TranslatorDependencyFactory} are shared between calls (and
+ * threads), so they should not hold any per-translation state either.
+ * 
+ * The pool keeps a limited number of translators of each kind (see
+ * {@link #setMaximumPooledTranslators(int)}), evicting the least recently used one when full. An
+ * evicted translator is instantiated again, with new dependencies, the next time it is needed.
+ * Until then, the pool holds on to the dependency factories of the translators it keeps.
+ * 
+ * Optionally, the results of translations can be cached by registering a {@link TranslationCache}
+ * with {@link #setTranslationCache(TranslationCache)}.
  */
 public class EfxTranslator {
  
   private static TranslatorOptions defaultOptions = EfxTranslatorOptions.DEFAULT;
 
+  // #region Translator pool --------------------------------------------------
+
+  /**
+   * Identifies a translator in the pool. The translator options are captured by value, so that
+   * equivalent options passed as different instances share the same translator.
+   */
+  private static class TranslatorKey {
+    private final TranslatorDependencyFactory dependencyFactory;
+    private final String sdkVersion;
+    private final String qualifier;
+    private final DecimalFormat decimalFormat;
+    private final String[] languages;
+
+    TranslatorKey(TranslatorDependencyFactory dependencyFactory, String sdkVersion,
+        String qualifier, TranslatorOptions options) {
+      this.dependencyFactory = dependencyFactory;
+      this.sdkVersion = sdkVersion;
+      this.qualifier = qualifier;
+      this.decimalFormat = options.getDecimalFormat();
+      this.languages = options.getAllLanguage2LetterCodes();
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dependencyFactory, sdkVersion, qualifier, decimalFormat)
+          * 31 + Arrays.hashCode(languages);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (obj == null)
+        return false;
+      if (getClass() != obj.getClass())
+        return false;
+      TranslatorKey other = (TranslatorKey) obj;
+      return dependencyFactory == other.dependencyFactory
+          && Objects.equals(sdkVersion, other.sdkVersion)
+          && Objects.equals(qualifier, other.qualifier)
+          && Objects.equals(decimalFormat, other.decimalFormat)
+          && Arrays.equals(languages, other.languages);
+    }
+  }
+
+  public static final int DEFAULT_MAXIMUM_POOLED_TRANSLATORS = 64;
+
+  private static volatile int maximumPooledTranslators = DEFAULT_MAXIMUM_POOLED_TRANSLATORS;
+
+  /**
+   * Pooled translators in access order. All access is synchronized on the map itself.
+   */
+  private static final Map<TranslatorKey, EfxExpressionTranslator> expressionTranslators =
+      newPool();
+
+  private static final Map<TranslatorKey, EfxTemplateTranslator> templateTranslators = newPool();
+
+  private static <T> Map<TranslatorKey, T> newPool() {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<TranslatorKey, T> eldest) {
+        return this.size() > maximumPooledTranslators;
+      }
+    };
+  }
+
+  private static <T> T getPooled(final Map<TranslatorKey, T> pool, final TranslatorKey key) {
+    synchronized (pool) {
+      return pool.get(key);
+    }
+  }
+
+  /**
+   * Adds a translator to the pool, unless another thread already added one for the same key.
+   * 
+   * @return The translator in the pool.
+   */
+  private static <T> T addPooled(final Map<TranslatorKey, T> pool, final TranslatorKey key,
+      final T translator) {
+    synchronized (pool) {
+      final T existing = pool.putIfAbsent(key, translator);
+      return existing != null ? existing : translator;
+    }
+  }
+
+  /**
+   * Sets the maximum number of expression translators, and of template translators, kept in the
+   * pool. The least recently used translators are evicted first.
+   * 
+   * @param maximum The maximum number of translators of each kind. Zero disables pooling.
+   */
+  public static void setMaximumPooledTranslators(final int maximum) {
+    if (maximum < 0) {
+      throw new IllegalArgumentException("The maximum size of the pool cannot be negative.");
+    }
+    maximumPooledTranslators = maximum;
+    trimPool(expressionTranslators, maximum);
+    trimPool(templateTranslators, maximum);
+  }
+
+  private static void trimPool(final Map<TranslatorKey, ?> pool, final int maximum) {
+    synchronized (pool) {
+      final Iterator<TranslatorKey> eldest = pool.keySet().iterator();
+      while (pool.size() > maximum) {
+        eldest.next();
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * @return The maximum number of translators of each kind kept in the pool.
+   */
+  public static int getMaximumPooledTranslators() {
+    return maximumPooledTranslators;
+  }
+
+  /**
+   * Gets the EFX expression translator for the given SDK version, qualifier and options. The
+   * translator is instantiated on first use and reused afterwards, until it is evicted from the
+   * pool.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX expression translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar.
+   * @param qualifier Qualifier to choose between several implementations.
+   * @param options The options to be used by the EFX expression translator.
+   * @return A reusable EFX expression translator.
+   * @throws InstantiationException If the EFX expression translator cannot be instantiated.
+   */
+  public static EfxExpressionTranslator getExpressionTranslator(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String qualifier, final TranslatorOptions options) throws InstantiationException {
+    final TranslatorKey key = new TranslatorKey(dependencyFactory, sdkVersion, qualifier, options);
+    final EfxExpressionTranslator translator = getPooled(expressionTranslators, key);
+    if (translator != null) {
+      return translator;
+    }
+    return addPooled(expressionTranslators, key, EfxTranslatorFactory
+        .getEfxExpressionTranslator(sdkVersion, qualifier, dependencyFactory, options));
+  }
+
+  /**
+   * Gets the EFX template translator for the given SDK version, qualifier and options. The
+   * translator is instantiated on first use and reused afterwards, until it is evicted from the
+   * pool.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar.
+   * @param qualifier Qualifier to choose between several implementations.
+   * @param options The options to be used by the EFX template translator.
+   * @return A reusable EFX template translator.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   */
+  public static EfxTemplateTranslator getTemplateTranslator(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String qualifier, final TranslatorOptions options) throws InstantiationException {
+    final TranslatorKey key = new TranslatorKey(dependencyFactory, sdkVersion, qualifier, options);
+    final EfxTemplateTranslator translator = getPooled(templateTranslators, key);
+    if (translator != null) {
+      return translator;
+    }
+    return addPooled(templateTranslators, key, EfxTranslatorFactory
+        .getEfxTemplateTranslator(sdkVersion, qualifier, dependencyFactory, options));
+  }
+
+  private static final Map<String, EfxTemplateTranslator> syntaxValidators =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Gets a translator that can only validate syntax, for the given SDK version. It is instantiated
+   * on first use and reused afterwards.
+   */
+  private static EfxTemplateTranslator getSyntaxValidator(final String sdkVersion)
+      throws InstantiationException {
+    final EfxTemplateTranslator validator = syntaxValidators.get(sdkVersion);
+    if (validator != null) {
+      return validator;
+    }
+    final EfxTemplateTranslator created = EfxTranslatorFactory.getEfxSyntaxValidator(sdkVersion);
+    final EfxTemplateTranslator existing = syntaxValidators.putIfAbsent(sdkVersion, created);
+    return existing != null ? existing : created;
+  }
+
+  /**
+   * Discards all pooled translators. Subsequent calls will instantiate new translators, and
+   * therefore request new dependencies from their {@link TranslatorDependencyFactory}.
+   */
+  public static void clearTranslators() {
+    synchronized (expressionTranslators) {
+      expressionTranslators.clear();
+    }
+    synchronized (templateTranslators) {
+      templateTranslators.clear();
+    }
+    syntaxValidators.clear();
+  }
+
+  // #endregion Translator pool
+
+  // #region Translation cache ------------------------------------------------
+
+  private static volatile TranslationCache translationCache = null;
+
+  /**
+   * Sets the cache used to store the results of translations. Caching is disabled by default.
+   * 
+   * Only use a cache if the output of the {@link TranslatorDependencyFactory} implementations you
+   * use depends solely on the SDK version, qualifier and translator options.
+   * 
+   * To keep translations across restarts, create the cache with a second-level
+   * {@link eu.europa.ted.efx.cache.TranslationStore}, such as a
+   * {@link eu.europa.ted.efx.cache.MappedFileTranslationStore}.
+   * 
+   * @param cache The cache to use, or null to disable caching.
+   */
+  public static void setTranslationCache(final TranslationCache cache) {
+    translationCache = cache;
+  }
+
+  /**
+   * @return The cache used to store the results of translations, or null if caching is disabled.
+   */
+  public static TranslationCache getTranslationCache() {
+    return translationCache;
+  }
+
+  private static volatile boolean canonicalCacheKeys = false;
+
+  /**
+   * Sets whether expressions that are not in the translation cache are looked up again by their
+   * canonical form (see {@link #canonicaliseExpression(String, String)}) before being translated.
+   * Expressions that differ only in their layout then share a single translation. This costs an
+   * additional parse of each expression that is not in the cache. Disabled by default.
+   * 
+   * @param enabled True to look up expressions by their canonical form.
+   */
+  public static void setCanonicalCacheKeys(final boolean enabled) {
+    canonicalCacheKeys = enabled;
+  }
+
+  private static volatile CrossVersionTranslationReuse crossVersionReuse = null;
+
+  /**
+   * Sets the registry used to reuse the translations of expressions across SDK versions. When set,
+   * each translated expression is recorded with the metadata of the symbols it depends on, and
+   * expressions translated again for another SDK version reuse a recorded translation if none of
+   * these symbols changed. It is consulted when a translation is not in the translation cache.
+   * Disabled by default.
+   * 
+   * @param reuse The registry to use, or null to disable reuse across SDK versions.
+   */
+  public static void setCrossVersionReuse(final CrossVersionTranslationReuse reuse) {
+    crossVersionReuse = reuse;
+  }
+
+  /**
+   * @return The registry used to reuse translations across SDK versions, or null if disabled.
+   */
+  public static CrossVersionTranslationReuse getCrossVersionReuse() {
+    return crossVersionReuse;
+  }
+
+  private static String renderTemplate(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String template, final TranslatorOptions options)
+      throws InstantiationException {
+    final EfxTemplateTranslator translator =
+        getTemplateTranslator(dependencyFactory, sdkVersion, "", options);
+    final TranslationCache cache = translationCache;
+    if (cache == null) {
+      return translator.renderTemplate(template);
+    }
+    final TranslationCacheKey key = new TranslationCacheKey(Kind.TEMPLATE, dependencyFactory,
+        sdkVersion, "", options, template);
+    return cache.get(key, () -> translator.renderTemplate(template));
+  }
+
+  // #endregion Translation cache
+
+  // #region Warm-up ----------------------------------------------------------
+
+  /**
+   * Translates every entry of the given corpus, using the default options, to populate the
+   * prediction caches of the EFX lexer and parser, as well as the pool of translators.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX translators.
+   * @param corpus The expressions and templates to translate.
+   * @return The number of entries that were translated successfully.
+   * @throws InstantiationException If the EFX translators cannot be instantiated.
+   */
+  public static int warmUp(final TranslatorDependencyFactory dependencyFactory,
+      final WarmUpCorpus corpus) throws InstantiationException {
+    return warmUp(dependencyFactory, corpus, defaultOptions);
+  }
+
+  /**
+   * Translates every entry of the given corpus to populate the prediction caches of the EFX lexer
+   * and parser, as well as the pool of translators.
+   * 
+   * The translation cache is bypassed, so that every entry is actually parsed. Entries that fail
+   * to translate (for example because they reference fields that do not exist) are ignored: by
+   * the time the translation fails, the input has already been parsed.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX translators.
+   * @param corpus The expressions and templates to translate.
+   * @param options The options to be used by the EFX translators.
+   * @return The number of entries that were translated successfully.
+   * @throws InstantiationException If the EFX translators cannot be instantiated.
+   */
+  public static int warmUp(final TranslatorDependencyFactory dependencyFactory,
+      final WarmUpCorpus corpus, final TranslatorOptions options) throws InstantiationException {
+    final String sdkVersion = corpus.getSdkVersion();
+    final EfxExpressionTranslator expressionTranslator =
+        getExpressionTranslator(dependencyFactory, sdkVersion, "", options);
+    final EfxTemplateTranslator templateTranslator =
+        getTemplateTranslator(dependencyFactory, sdkVersion, "", options);
+
+    int translated = 0;
+    for (WarmUpCorpus.Entry entry : corpus.getEntries()) {
+      try {
+        switch (entry.getKind()) {
+          case EXPRESSION:
+            expressionTranslator.translateExpression(entry.getSource(),
+                entry.getParameters().toArray(new String[0]));
+            break;
+          case TEMPLATE:
+            templateTranslator.renderTemplate(entry.getSource());
+            break;
+        }
+        translated++;
+      } catch (RuntimeException e) {
+        // Ignored: the purpose of the warm-up is parsing, not translating.
+      }
+    }
+    return translated;
+  }
+
+  // #endregion Warm-up
+
+  // #region Batch translation ------------------------------------------------
+
+  /**
+   * The number of chunks per worker thread a batch of expressions is split into. More chunks than
+   * workers keep all workers busy when some chunks take longer than others.
+   */
+  private static final int CHUNKS_PER_WORKER = 4;
+
   /**
-   * Instantiates an EFX expression translator and translates a given expression.
+   * Translates the given expressions in parallel, using the common {@link ForkJoinPool}.
+   * 
+   * @see #translateExpressions(TranslatorDependencyFactory, String, List, TranslatorOptions,
+   *      Executor)
+   */
+  public static List<TranslationResult> translateExpressions(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final List<String> expressions, final TranslatorOptions options)
+      throws InstantiationException {
+    return translateExpressions(dependencyFactory, sdkVersion, expressions, options,
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Translates the given expressions, none of which expects parameters, in parallel.
+   * 
+   * The expressions are split into contiguous chunks that are translated concurrently by the given
+   * executor. Each chunk is translated as a batch (see
+   * {@link EfxExpressionTranslator#translateExpressions(List)}), so every worker reuses its own
+   * lexer and parser across the expressions of a chunk. The translation cache is not used.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX expression translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expressions to be translated.
+   * @param expressions The EFX expressions to translate.
+   * @param options The options to be used by the EFX expression translator.
+   * @param executor The executor that runs the translations.
+   * @return One result per expression, in the same order as the expressions, regardless of the
+   *         order in which they were translated.
+   * @throws InstantiationException If the EFX expression translator cannot be instantiated.
+   */
+  public static List<TranslationResult> translateExpressions(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final List<String> expressions, final TranslatorOptions options, final Executor executor)
+      throws InstantiationException {
+    final EfxExpressionTranslator translator =
+        getExpressionTranslator(dependencyFactory, sdkVersion, "", options);
+
+    final int workers = executor instanceof ForkJoinPool
+        ? ((ForkJoinPool) executor).getParallelism()
+        : Runtime.getRuntime().availableProcessors();
+    final int chunkSize =
+        Math.max(1, (expressions.size() + workers * CHUNKS_PER_WORKER - 1)
+            / (workers * CHUNKS_PER_WORKER));
+
+    final List<CompletableFuture<List<TranslationResult>>> chunks = new ArrayList<>();
+    for (int start = 0; start < expressions.size(); start += chunkSize) {
+      final List<String> chunk =
+          expressions.subList(start, Math.min(start + chunkSize, expressions.size()));
+      chunks.add(CompletableFuture.supplyAsync(
+          CancellationToken.propagate(() -> translator.translateExpressions(chunk)), executor));
+    }
+
+    final List<TranslationResult> results = new ArrayList<>(expressions.size());
+    for (CompletableFuture<List<TranslationResult>> chunk : chunks) {
+      results.addAll(join(chunk));
+    }
+    return Collections.unmodifiableList(results);
+  }
+
+  /**
+   * Translates the given template files in parallel, using the common {@link ForkJoinPool}.
+   * 
+   * @see #translateTemplates(TranslatorDependencyFactory, String, List, TranslatorOptions,
+   *      Executor)
+   */
+  public static List<TranslationResult> translateTemplates(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final List<Path> templates, final TranslatorOptions options) throws InstantiationException {
+    return translateTemplates(dependencyFactory, sdkVersion, templates, options,
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Translates the given template files in parallel, one task per file. The translation cache is
+   * not used.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        templates to be translated.
+   * @param templates The paths to the files containing the EFX templates to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @param executor The executor that runs the translations.
+   * @return One result per template, in the same order as the templates. The source of each
+   *         result is the path of the template. Files that cannot be read result in an
+   *         {@link UncheckedIOException}.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   */
+  public static List<TranslationResult> translateTemplates(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final List<Path> templates, final TranslatorOptions options, final Executor executor)
+      throws InstantiationException {
+    final EfxTemplateTranslator translator =
+        getTemplateTranslator(dependencyFactory, sdkVersion, "", options);
+
+    final List<CompletableFuture<TranslationResult>> tasks = new ArrayList<>(templates.size());
+    for (Path template : templates) {
+      tasks.add(CompletableFuture.supplyAsync(CancellationToken.propagate(() -> {
+        try {
+          return TranslationResult.success(template.toString(),
+              translator.renderTemplate(template));
+        } catch (IOException e) {
+          return TranslationResult.failure(template.toString(), new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+          return TranslationResult.failure(template.toString(), e);
+        }
+      }), executor));
+    }
+
+    final List<TranslationResult> results = new ArrayList<>(templates.size());
+    for (CompletableFuture<TranslationResult> task : tasks) {
+      results.add(join(task));
+    }
+    return Collections.unmodifiableList(results);
+  }
+
+  /**
+   * Translates the given EFX template, translating its top-level blocks in parallel using the
+   * common {@link ForkJoinPool}.
+   * 
+   * @see #translateTemplateInParallel(TranslatorDependencyFactory, String, String,
+   *      TranslatorOptions, Executor)
+   */
+  public static String translateTemplateInParallel(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String template, final TranslatorOptions options) throws InstantiationException {
+    return translateTemplateInParallel(dependencyFactory, sdkVersion, template, options,
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Translates the given EFX template, translating its top-level blocks in parallel. The output is
+   * the same as the one of a sequential translation. The translation cache is not used.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param template A string containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @param executor The executor that runs the translations of the blocks.
+   * @return The translated template in the target markup language supported by the given
+   *         {@link TranslatorDependencyFactory}.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   * @see EfxTemplateTranslator#renderTemplateInParallel(String, Executor)
+   */
+  public static String translateTemplateInParallel(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String template, final TranslatorOptions options, final Executor executor)
+      throws InstantiationException {
+    return getTemplateTranslator(dependencyFactory, sdkVersion, "", options)
+        .renderTemplateInParallel(template, executor);
+  }
+
+  private static <T> T join(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  // #endregion Batch translation
+
+  // #region Asynchronous translation -----------------------------------------
+
+  /**
+   * Runs tasks on a delegate executor, making sure that no more than a given number of them run
+   * at the same time. Tasks in excess are queued, rather than blocking a thread.
+   */
+  private static final class BoundedExecutor implements Executor {
+    private final Executor delegate;
+    private final int maximumConcurrency;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    BoundedExecutor(final Executor delegate, final int maximumConcurrency) {
+      if (maximumConcurrency < 1) {
+        throw new IllegalArgumentException("The maximum concurrency must be at least 1.");
+      }
+      this.delegate = Objects.requireNonNull(delegate);
+      this.maximumConcurrency = maximumConcurrency;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+      pending.add(task);
+      drain();
+    }
+
+    private void drain() {
+      while (!pending.isEmpty()) {
+        final int current = running.get();
+        if (current >= maximumConcurrency) {
+          return;
+        }
+        if (!running.compareAndSet(current, current + 1)) {
+          continue;
+        }
+        final Runnable task = pending.poll();
+        if (task == null) {
+          running.decrementAndGet();
+          continue;
+        }
+        try {
+          delegate.execute(() -> {
+            try {
+              task.run();
+            } finally {
+              running.decrementAndGet();
+              drain();
+            }
+          });
+        } catch (RuntimeException e) {
+          running.decrementAndGet();
+          throw e;
+        }
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface Translation {
+    String translate() throws Exception;
+  }
+
+  private static final Executor DEFAULT_ASYNC_EXECUTOR = createDefaultAsyncExecutor();
+
+  private static Executor asyncDelegate = DEFAULT_ASYNC_EXECUTOR;
+
+  private static int maximumConcurrentTranslations = Runtime.getRuntime().availableProcessors();
+
+  private static volatile BoundedExecutor asyncExecutor =
+      new BoundedExecutor(asyncDelegate, maximumConcurrentTranslations);
+
+  /**
+   * Creates a virtual thread per task executor when running on Java 21 or later, and a cached
+   * pool of daemon threads otherwise. Either way, the number of translations actually running at
+   * the same time is bounded by {@link #setMaximumConcurrentTranslations(int)}.
+   */
+  private static Executor createDefaultAsyncExecutor() {
+    try {
+      return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      final AtomicInteger threadCount = new AtomicInteger();
+      return Executors.newCachedThreadPool(runnable -> {
+        final Thread thread =
+            new Thread(runnable, "efx-translator-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Sets the executor used by the asynchronous translation methods. By default, translations run
+   * on virtual threads on Java 21 or later, and on a pool of daemon threads otherwise.
+   * 
+   * @param executor The executor to use, or null to restore the default one.
+   */
+  public static synchronized void setAsyncExecutor(final Executor executor) {
+    asyncDelegate = executor != null ? executor : DEFAULT_ASYNC_EXECUTOR;
+    asyncExecutor = new BoundedExecutor(asyncDelegate, maximumConcurrentTranslations);
+  }
+
+  /**
+   * Sets the maximum number of asynchronous translations that run at the same time. Further
+   * translations are queued until a running one completes. Defaults to the number of available
+   * processors, as translating is CPU-bound.
+   * 
+   * Translations already queued or running are not affected.
+   * 
+   * @param maximum The maximum number of concurrent translations; at least 1.
+   */
+  public static synchronized void setMaximumConcurrentTranslations(final int maximum) {
+    asyncExecutor = new BoundedExecutor(asyncDelegate, maximum);
+    maximumConcurrentTranslations = maximum;
+  }
+
+  /**
+   * @return The maximum number of asynchronous translations that run at the same time.
+   */
+  public static synchronized int getMaximumConcurrentTranslations() {
+    return maximumConcurrentTranslations;
+  }
+
+  /**
+   * Runs the given translation on the asynchronous executor. Cancelling the returned future, or
+   * completing it in any other way before the translation is over (e.g. with
+   * {@link CompletableFuture#orTimeout}), aborts the translation through a
+   * {@link CancellationToken}.
+   * 
+   * Failures are wrapped in a {@link CompletionException}, so that the future only reports
+   * {@link CompletableFuture#isCancelled()} when it was actually cancelled: syntax errors are
+   * reported as {@link org.antlr.v4.runtime.misc.ParseCancellationException}, which is a
+   * {@link java.util.concurrent.CancellationException}.
+   */
+  @SuppressWarnings("try")
+  private static CompletableFuture<String> supplyAsync(final Translation translation) {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    final CancellationToken token = CancellationToken.create();
+    future.whenComplete((result, error) -> token.cancel());
+    try {
+      asyncExecutor.execute(() -> {
+        if (future.isDone()) {
+          return;
+        }
+        try (CancellationToken.Scope ignored = token.bind()) {
+          future.complete(translation.translate());
+        } catch (Throwable e) {
+          future.completeExceptionally(wrap(e));
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(wrap(e));
+    }
+    return future;
+  }
+
+  private static CompletionException wrap(final Throwable e) {
+    return e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+  }
+
+  /**
+   * Translates the given expression asynchronously, using the default options.
+   * 
+   * @see #translateExpressionAsync(TranslatorDependencyFactory, String, String, TranslatorOptions,
+   *      String...)
+   */
+  public static CompletableFuture<String> translateExpressionAsync(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String expression, final String... expressionParameters) {
+    return translateExpressionAsync(dependencyFactory, sdkVersion, expression, defaultOptions,
+        expressionParameters);
+  }
+
+  /**
+   * Translates the given expression asynchronously. The translation runs on the executor set with
+   * {@link #setAsyncExecutor(Executor)}, and goes through the translation cache, if any.
+   * Cancelling the returned future, or completing it with a timeout (see
+   * {@link CompletableFuture#orTimeout}), aborts the translation.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX expression translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression to be translated.
+   * @param expression The EFX expression to translate.
+   * @param options The options to be used by the EFX expression translator.
+   * @param expressionParameters The values of any parameters that the EFX expression requires.
+   * @return A future completed with the translated expression, or completed exceptionally with the
+   *         exception thrown by the translation (such as an {@link InstantiationException}),
+   *         wrapped in a {@link CompletionException}. Syntax errors do not cancel the future.
+   */
+  public static CompletableFuture<String> translateExpressionAsync(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String expression, final TranslatorOptions options,
+      final String... expressionParameters) {
+    return supplyAsync(() -> translateExpression(dependencyFactory, sdkVersion, expression,
+        options, expressionParameters));
+  }
+
+  /**
+   * Translates the given EFX template asynchronously, using the default options.
+   * 
+   * @see #translateTemplateAsync(TranslatorDependencyFactory, String, String, TranslatorOptions)
+   */
+  public static CompletableFuture<String> translateTemplateAsync(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String template) {
+    return translateTemplateAsync(dependencyFactory, sdkVersion, template, defaultOptions);
+  }
+
+  /**
+   * Translates the given EFX template asynchronously. The translation runs on the executor set
+   * with {@link #setAsyncExecutor(Executor)}, and goes through the translation cache, if any.
+   * Cancelling the returned future, or completing it with a timeout (see
+   * {@link CompletableFuture#orTimeout}), aborts the translation.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param template A string containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @return A future completed with the translated template, or completed exceptionally with the
+   *         exception thrown by the translation.
+   */
+  public static CompletableFuture<String> translateTemplateAsync(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String template, final TranslatorOptions options) {
+    return supplyAsync(() -> translateTemplate(dependencyFactory, sdkVersion, template, options));
+  }
+
+  /**
+   * Translates the EFX template contained in the given file asynchronously, using the default
+   * options.
+   * 
+   * @see #translateTemplateAsync(TranslatorDependencyFactory, String, Path, TranslatorOptions)
+   */
+  public static CompletableFuture<String> translateTemplateAsync(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final Path pathname) {
+    return translateTemplateAsync(dependencyFactory, sdkVersion, pathname, defaultOptions);
+  }
+
+  /**
+   * Translates the EFX template contained in the given file asynchronously. The file is read by
+   * the executor as well.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param pathname The path to the file containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @return A future completed with the translated template, or completed exceptionally with the
+   *         exception thrown by the translation (such as an {@link IOException}).
+   */
+  public static CompletableFuture<String> translateTemplateAsync(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final Path pathname, final TranslatorOptions options) {
+    return supplyAsync(() -> translateTemplate(dependencyFactory, sdkVersion, pathname, options));
+  }
+
+  // #endregion Asynchronous translation
+
+  // #region Template modules -------------------------------------------------
+
+  /**
+   * Gets an EFX template translator and translates the given EFX template as a module, to be
+   * linked with other modules by {@link #linkTemplateModules}.
+   * 
+   * If a translation cache is in use, modules are cached by their name, their source, the SDK
+   * version and the translator options, so a module is translated again only when one of these
+   * changes. With a second-level {@link eu.europa.ted.efx.cache.TranslationStore}, this holds
+   * across restarts.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param name The name of the module.
+   * @param template A string containing the EFX template of the module.
+   * @param options The options to be used by the EFX template translator.
+   * @return The translated module.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   * @see EfxTemplateTranslator#compileTemplateModule(String, String)
+   */
+  public static TemplateModule compileTemplateModule(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String name, final String template, final TranslatorOptions options)
+      throws InstantiationException {
+    final EfxTemplateTranslator translator =
+        getTemplateTranslator(dependencyFactory, sdkVersion, "", options);
+    final TranslationCache cache = translationCache;
+    if (cache == null) {
+      return translator.compileTemplateModule(name, template);
+    }
+    final TranslationCacheKey key = new TranslationCacheKey(Kind.TEMPLATE_MODULE,
+        dependencyFactory, sdkVersion, "", options, template, name);
+    return TemplateModule
+        .decode(cache.get(key, () -> translator.compileTemplateModule(name, template).encode()));
+  }
+
+  /**
+   * Gets an EFX template translator and composes an output file from the given template modules.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK the modules were translated with.
+   * @param modules The modules to link, in the order their content is to be rendered.
+   * @param options The options to be used by the EFX template translator.
+   * @return The translated template in the target markup language supported by the given
+   *         {@link TranslatorDependencyFactory}.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   * @see EfxTemplateTranslator#linkTemplateModules(List)
+   */
+  public static String linkTemplateModules(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final List<TemplateModule> modules,
+      final TranslatorOptions options) throws InstantiationException {
+    return getTemplateTranslator(dependencyFactory, sdkVersion, "", options)
+        .linkTemplateModules(modules);
+  }
+
+  /**
+   * Translates each of the given EFX templates as a module, and links the modules into an output
+   * file. Combined with a translation cache, only the modules that changed since they were last
+   * translated are translated again.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        templates to be translated.
+   * @param modules The EFX templates to translate, by module name, in the order their content is
+   *        to be rendered.
+   * @param options The options to be used by the EFX template translator.
+   * @return The translated template in the target markup language supported by the given
+   *         {@link TranslatorDependencyFactory}.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   */
+  public static String translateTemplateModules(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final Map<String, String> modules, final TranslatorOptions options)
+      throws InstantiationException {
+    final List<TemplateModule> compiled = new ArrayList<>(modules.size());
+    for (Map.Entry<String, String> module : modules.entrySet()) {
+      compiled.add(compileTemplateModule(dependencyFactory, sdkVersion, module.getKey(),
+          module.getValue(), options));
+    }
+    return linkTemplateModules(dependencyFactory, sdkVersion, compiled, options);
+  }
+
+  // #endregion Template modules
+
+  // #region Cancellation -----------------------------------------------------
+
+  /**
+   * Gets an EFX expression translator and translates the given expression, aborting if the given
+   * token is cancelled or its deadline passes.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX expression translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression to be translated.
+   * @param expression The EFX expression to translate.
+   * @param options The options to be used by the EFX expression translator.
+   * @param token The token that bounds the translation, e.g.
+   *        {@code CancellationToken.withTimeout(Duration.ofMillis(500))}.
+   * @param expressionParameters The values of any parameters that the EFX expression requires.
+   * @return The translated expression in the target script language supported by the given
+   *         {@link TranslatorDependencyFactory}.
+   * @throws InstantiationException If the EFX expression translator cannot be instantiated.
+   * @throws eu.europa.ted.efx.exceptions.TranslationCancelledException If the token is cancelled
+   *         or its deadline passes before the translation is over.
+   */
+  @SuppressWarnings("try")
+  public static String translateExpression(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String expression, final TranslatorOptions options,
+      final CancellationToken token, final String... expressionParameters)
+      throws InstantiationException {
+    try (CancellationToken.Scope ignored = token.bind()) {
+      return translateExpression(dependencyFactory, sdkVersion, expression, options,
+          expressionParameters);
+    }
+  }
+
+  /**
+   * Gets an EFX template translator and translates the given EFX template, aborting if the given
+   * token is cancelled or its deadline passes.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param template A string containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @param token The token that bounds the translation.
+   * @return The translated template in the target markup language supported by the given
+   *         {@link TranslatorDependencyFactory}.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   * @throws eu.europa.ted.efx.exceptions.TranslationCancelledException If the token is cancelled
+   *         or its deadline passes before the translation is over.
+   */
+  @SuppressWarnings("try")
+  public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String template, final TranslatorOptions options,
+      final CancellationToken token) throws InstantiationException {
+    try (CancellationToken.Scope ignored = token.bind()) {
+      return translateTemplate(dependencyFactory, sdkVersion, template, options);
+    }
+  }
+
+  // #endregion Cancellation
+
+  // #region Diagnostics ------------------------------------------------------
+
+  /**
+   * Gets an EFX expression translator and checks the given expression, collecting the errors found
+   * as {@link Diagnostic diagnostics} instead of throwing them.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX expression translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression to be checked.
+   * @param expression The EFX expression to check.
+   * @param options The options to be used by the EFX expression translator.
+   * @param expressionParameters The values of any parameters that the EFX expression requires.
+   * @return The translation of the expression, or the diagnostics collected for it.
+   * @throws InstantiationException If the EFX expression translator cannot be instantiated.
+   */
+  public static TranslationResult checkExpression(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final String expression, final TranslatorOptions options,
+      final String... expressionParameters) throws InstantiationException {
+    return getExpressionTranslator(dependencyFactory, sdkVersion, "", options)
+        .checkExpression(expression, expressionParameters);
+  }
+
+  /**
+   * Gets an EFX expression translator and checks the given expressions, none of which expects
+   * parameters, collecting the errors found in each of them as {@link Diagnostic diagnostics}.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX expression translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expressions to be checked.
+   * @param expressions The EFX expressions to check.
+   * @param options The options to be used by the EFX expression translator.
+   * @return One result per expression, in the same order as the expressions.
+   * @throws InstantiationException If the EFX expression translator cannot be instantiated.
+   */
+  public static List<TranslationResult> checkExpressions(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final List<String> expressions, final TranslatorOptions options)
+      throws InstantiationException {
+    return getExpressionTranslator(dependencyFactory, sdkVersion, "", options)
+        .checkExpressions(expressions);
+  }
+
+  /**
+   * Gets an EFX template translator and checks the given template, collecting the errors found as
+   * {@link Diagnostic diagnostics} instead of throwing them.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be checked.
+   * @param template A string containing the EFX template to check.
+   * @param options The options to be used by the EFX template translator.
+   * @return The translation of the template, or the diagnostics collected for it.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   */
+  public static TranslationResult checkTemplate(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String template, final TranslatorOptions options)
+      throws InstantiationException {
+    return getTemplateTranslator(dependencyFactory, sdkVersion, "", options)
+        .checkTemplate(template);
+  }
+
+  // #endregion Diagnostics
+
+  // #region Syntax validation ------------------------------------------------
+
+  /**
+   * Checks the syntax of the given EFX expression only, using the grammar of the given SDK version.
+   * No symbol is resolved and no code is generated, so no SDK metadata is needed.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression to be validated.
+   * @param expression The EFX expression to validate.
+   * @return The syntax errors found, empty if the expression is syntactically valid.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   */
+  public static List<Diagnostic> validateExpressionSyntax(final String sdkVersion,
+      final String expression) throws InstantiationException {
+    return getSyntaxValidator(sdkVersion).validateExpressionSyntax(expression);
+  }
+
+  /**
+   * Checks the syntax of the given EFX template only, using the grammar of the given SDK version.
+   * No symbol is resolved and no markup is generated, so no SDK metadata is needed.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be validated.
+   * @param template A string containing the EFX template to validate.
+   * @return The syntax errors found, empty if the template is syntactically valid.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   */
+  public static List<Diagnostic> validateTemplateSyntax(final String sdkVersion,
+      final String template) throws InstantiationException {
+    return getSyntaxValidator(sdkVersion).validateTemplateSyntax(template);
+  }
+
+  // #endregion Syntax validation
+
+  // #region Canonicalisation -------------------------------------------------
+
+  /**
+   * Builds the canonical form of the given EFX expression, using the grammar of the given SDK
+   * version. Expressions that differ only in whitespace, redundant parentheses or the quotes around
+   * string literals have the same canonical form. No SDK metadata is needed.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression.
+   * @param expression The EFX expression.
+   * @return The canonical form of the expression.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   * @throws org.antlr.v4.runtime.misc.ParseCancellationException If the expression has syntax
+   *         errors.
+   */
+  public static String canonicaliseExpression(final String sdkVersion, final String expression)
+      throws InstantiationException {
+    return getSyntaxValidator(sdkVersion).canonicaliseExpression(expression);
+  }
+
+  /**
+   * Computes a fingerprint of the given EFX expression from its canonical form, so that
+   * expressions that differ only in their layout have the same fingerprint.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression.
+   * @param expression The EFX expression.
+   * @param expressionParameters The values of any parameters that the EFX expression requires.
+   * @return The fingerprint of the expression.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   * @throws org.antlr.v4.runtime.misc.ParseCancellationException If the expression has syntax
+   *         errors.
+   */
+  public static ExpressionFingerprint fingerprintExpression(final String sdkVersion,
+      final String expression, final String... expressionParameters)
+      throws InstantiationException {
+    return ExpressionFingerprint.of(sdkVersion, canonicaliseExpression(sdkVersion, expression),
+        Arrays.asList(expressionParameters));
+  }
+
+  // #endregion Canonicalisation
+
+  // #region Dependencies -----------------------------------------------------
+
+  /**
+   * Lists the fields, nodes, codelists, attributes, variables and external references that the
+   * given EFX expression refers to, using the grammar of the given SDK version. The expression is
+   * parsed but not translated, so no SDK metadata is needed.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression.
+   * @param expression The EFX expression.
+   * @return The dependencies of the expression.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   * @throws org.antlr.v4.runtime.misc.ParseCancellationException If the expression has syntax
+   *         errors.
+   */
+  public static Dependencies extractExpressionDependencies(final String sdkVersion,
+      final String expression) throws InstantiationException {
+    return getSyntaxValidator(sdkVersion).extractExpressionDependencies(expression);
+  }
+
+  /**
+   * Lists the fields, nodes, codelists, attributes, variables and external references that the
+   * given EFX template refers to, using the grammar of the given SDK version.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template.
+   * @param template A string containing the EFX template.
+   * @return The dependencies of the template.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   * @throws org.antlr.v4.runtime.misc.ParseCancellationException If the template has syntax
+   *         errors.
+   */
+  public static Dependencies extractTemplateDependencies(final String sdkVersion,
+      final String template) throws InstantiationException {
+    return getSyntaxValidator(sdkVersion).extractTemplateDependencies(template);
+  }
+
+  // #endregion Dependencies
+
+  // #region Field presence ---------------------------------------------------
+
+  /**
+   * Derives the fields that must be present in a notice for the given EFX boolean expression to be
+   * true, and those that must be present for it to be false, using the grammar of the given SDK
+   * version. The expression is parsed but not translated, so no SDK metadata is needed.
+   * 
+   * A validator can turn the result into bitmaps with a {@link FieldIndex}, once per rule, and
+   * skip the rules whose expression cannot fail on a notice by testing them against the bitmap of
+   * the fields present in the notice.
+   * 
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the
+   *        expression.
+   * @param expression The EFX expression.
+   * @return The necessary conditions over the presence of fields.
+   * @throws InstantiationException If no EFX translator is available for the given SDK version.
+   * @throws org.antlr.v4.runtime.misc.ParseCancellationException If the expression has syntax
+   *         errors.
+   * @throws UnsupportedOperationException If the EFX translator of the given SDK version does not
+   *         implement the analysis.
+   */
+  public static FieldPresenceCondition deriveFieldPresenceCondition(final String sdkVersion,
+      final String expression) throws InstantiationException {
+    return getSyntaxValidator(sdkVersion).deriveFieldPresenceCondition(expression);
+  }
+
+  // #endregion Field presence
+
+  /**
+   * Gets an EFX expression translator and translates a given expression.
    * 
    * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
    *        dependencies of the EFX expression translator.
@@ -45,8 +1240,32 @@ public class EfxTranslator {
   public static String translateExpression(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
       final String expression, TranslatorOptions options, final String... expressionParameters)
       throws InstantiationException {
-    return EfxTranslatorFactory.getEfxExpressionTranslator(sdkVersion, dependencyFactory, options)
-        .translateExpression(expression, expressionParameters);
+    final CrossVersionTranslationReuse reuse = crossVersionReuse;
+    final EfxExpressionTranslator translator = getExpressionTranslator(
+        reuse == null ? dependencyFactory : reuse.recording(dependencyFactory), sdkVersion, "",
+        options);
+    final Supplier<String> translation = reuse == null
+        ? () -> translator.translateExpression(expression, expressionParameters)
+        : () -> reuse.translateExpression(dependencyFactory, sdkVersion, "", options, translator,
+            expression, expressionParameters);
+    final TranslationCache cache = translationCache;
+    if (cache == null) {
+      return translation.get();
+    }
+    final TranslationCacheKey key = new TranslationCacheKey(Kind.EXPRESSION, dependencyFactory,
+        sdkVersion, "", options, expression, expressionParameters);
+    if (!canonicalCacheKeys) {
+      return cache.get(key, translation);
+    }
+    return cache.get(key, () -> {
+      final String canonical = translator.canonicaliseExpression(expression);
+      if (canonical.equals(expression)) {
+        return translation.get();
+      }
+      final TranslationCacheKey canonicalKey = new TranslationCacheKey(Kind.EXPRESSION,
+          dependencyFactory, sdkVersion, "", options, canonical, expressionParameters);
+      return cache.get(canonicalKey, translation);
+    });
   }
 
   public static String translateExpression(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
@@ -55,7 +1274,7 @@ public class EfxTranslator {
   }
 
   /**
-   * Instantiates an EFX template translator and translates the EFX template contained in the given
+   * Gets an EFX template translator and translates the EFX template contained in the given
    * file.
    * 
    * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
@@ -72,8 +1291,11 @@ public class EfxTranslator {
   public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
       final Path pathname, TranslatorOptions options)
       throws IOException, InstantiationException {
-    return EfxTranslatorFactory.getEfxTemplateTranslator(sdkVersion, dependencyFactory, options)
-        .renderTemplate(pathname);
+    if (translationCache == null) {
+      return getTemplateTranslator(dependencyFactory, sdkVersion, "", options)
+          .renderTemplate(pathname);
+    }
+    return renderTemplate(dependencyFactory, sdkVersion, Files.readString(pathname), options);
   }
 
   public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
@@ -83,7 +1305,90 @@ public class EfxTranslator {
   }
 
   /**
-   * Instantiates an EFX template translator and translates the given EFX template.
+   * Gets an EFX template translator and translates the EFX template contained in the given file,
+   * writing the translated template to the given output.
+   * 
+   * If the {@link eu.europa.ted.efx.interfaces.MarkupGenerator} provided by the given
+   * {@link TranslatorDependencyFactory} is a
+   * {@link eu.europa.ted.efx.interfaces.StreamingMarkupGenerator}, the translated template is
+   * written as it is rendered, unless a translation cache is in use.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param pathname The path to the file containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the file cannot be read or the output cannot be written.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   */
+  public static void translateTemplate(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final Path pathname, final TranslatorOptions options,
+      final Appendable output) throws IOException, InstantiationException {
+    if (translationCache == null) {
+      getTemplateTranslator(dependencyFactory, sdkVersion, "", options).renderTemplate(pathname,
+          output);
+    } else {
+      output.append(translateTemplate(dependencyFactory, sdkVersion, pathname, options));
+    }
+  }
+
+  /**
+   * Gets an EFX template translator and translates the EFX template contained in the given file
+   * one top-level block at a time, writing the translated template to the given output. The
+   * translation cache is not used.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param pathname The path to the file containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the file cannot be read or the output cannot be written.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   * @see EfxTemplateTranslator#renderTemplateIncrementally(java.io.Reader, Appendable)
+   */
+  public static void translateTemplateIncrementally(
+      final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
+      final Path pathname, final TranslatorOptions options, final Appendable output)
+      throws IOException, InstantiationException {
+    try (BufferedReader reader = Files.newBufferedReader(pathname, StandardCharsets.UTF_8)) {
+      getTemplateTranslator(dependencyFactory, sdkVersion, "", options)
+          .renderTemplateIncrementally(reader, output);
+    }
+  }
+
+  /**
+   * Gets an EFX template translator and translates the given EFX template, writing the translated
+   * template to the given output.
+   * 
+   * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
+   *        dependencies of the EFX template translator.
+   * @param sdkVersion The version of the eForms SDK that defines the EFX grammar used by the EFX
+   *        template to be translated.
+   * @param template A string containing the EFX template to translate.
+   * @param options The options to be used by the EFX template translator.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the output cannot be written.
+   * @throws InstantiationException If the EFX template translator cannot be instantiated.
+   * @see #translateTemplate(TranslatorDependencyFactory, String, Path, TranslatorOptions,
+   *      Appendable)
+   */
+  public static void translateTemplate(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String template, final TranslatorOptions options,
+      final Appendable output) throws IOException, InstantiationException {
+    if (translationCache == null) {
+      getTemplateTranslator(dependencyFactory, sdkVersion, "", options).renderTemplate(template,
+          output);
+    } else {
+      output.append(translateTemplate(dependencyFactory, sdkVersion, template, options));
+    }
+  }
+
+  /**
+   * Gets an EFX template translator and translates the given EFX template.
    * 
    * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
    *        dependencies of the EFX template translator.
@@ -98,8 +1403,7 @@ public class EfxTranslator {
   public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
       final String template, TranslatorOptions options)
       throws InstantiationException {
-    return EfxTranslatorFactory.getEfxTemplateTranslator(sdkVersion, dependencyFactory, options)
-        .renderTemplate(template);
+    return renderTemplate(dependencyFactory, sdkVersion, template, options);
   }
 
   public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
@@ -109,7 +1413,7 @@ public class EfxTranslator {
   }
 
   /**
-   * Instantiates an EFX template translator and translates the EFX template contained in the given
+   * Gets an EFX template translator and translates the EFX template contained in the given
    * InputStream.
    * 
    * @param dependencyFactory A {@link TranslatorDependencyFactory} to be used for instantiating the
@@ -126,8 +1430,12 @@ public class EfxTranslator {
   public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
       final InputStream stream, TranslatorOptions options)
       throws IOException, InstantiationException {
-    return EfxTranslatorFactory.getEfxTemplateTranslator(sdkVersion, dependencyFactory, options)
-        .renderTemplate(stream);
+    if (translationCache == null) {
+      return getTemplateTranslator(dependencyFactory, sdkVersion, "", options)
+          .renderTemplate(stream);
+    }
+    return renderTemplate(dependencyFactory, sdkVersion,
+        new String(stream.readAllBytes(), StandardCharsets.UTF_8), options);
   }
 
   public static String translateTemplate(final TranslatorDependencyFactory dependencyFactory, final String sdkVersion,
@@ -2,12 +2,20 @@ package eu.europa.ted.efx;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import eu.europa.ted.efx.interfaces.TranslatorOptions;
 import eu.europa.ted.efx.model.DecimalFormat;
 
+/**
+ * Immutable implementation of {@link TranslatorOptions}.
+ * 
+ * Instances can be safely shared between translators and threads, and compared by value, which
+ * makes them suitable for use as (part of) a cache key.
+ */
 public class EfxTranslatorOptions implements TranslatorOptions {
 
     // Change to EfxDecimalFormatSymbols.EFX_DEFAULT to use the decimal format
@@ -15,8 +23,8 @@ public class EfxTranslatorOptions implements TranslatorOptions {
     public static final EfxTranslatorOptions DEFAULT = new EfxTranslatorOptions(DecimalFormat.XSL_DEFAULT, Locale.ENGLISH);
 
     private final DecimalFormat symbols;
-    private Locale primaryLocale;
-    private ArrayList<Locale> otherLocales;
+    private final Locale primaryLocale;
+    private final List<Locale> otherLocales;
 
     public EfxTranslatorOptions(DecimalFormat symbols) {
         this(symbols, Locale.ENGLISH);
@@ -27,15 +35,19 @@ public class EfxTranslatorOptions implements TranslatorOptions {
     }
 
     public EfxTranslatorOptions(DecimalFormat symbols, Locale primaryLocale, Locale... otherLocales) {
-        this.symbols = symbols;
+        // DecimalFormat is mutable, so we keep our own copy.
+        this.symbols = (DecimalFormat) symbols.clone();
         this.primaryLocale = primaryLocale;
-        this.otherLocales = new ArrayList<>(Arrays.asList(otherLocales));
+        this.otherLocales = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(otherLocales)));
     }
-    
 
+    /**
+     * @return A copy of the decimal format symbols. Changing the returned object does not affect
+     *         these options.
+     */
     @Override
     public DecimalFormat getDecimalFormat() {
-        return this.symbols;
+        return (DecimalFormat) this.symbols.clone();
     }
 
     @Override
@@ -68,8 +80,32 @@ public class EfxTranslatorOptions implements TranslatorOptions {
         return languages.toArray(new String[0]);
     }
 
+    /**
+     * Creates a copy of these options with a different primary language.
+     * 
+     * @param language The language tag of the new primary language.
+     * @return A new instance. These options are left unchanged.
+     */
     public EfxTranslatorOptions withLanguage(String language) {
-        this.primaryLocale = Locale.forLanguageTag(language);
-        return this;
+        return new EfxTranslatorOptions(this.symbols, Locale.forLanguageTag(language), this.otherLocales.toArray(new Locale[0]));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(symbols, primaryLocale, otherLocales);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        EfxTranslatorOptions other = (EfxTranslatorOptions) obj;
+        return Objects.equals(symbols, other.symbols)
+                && Objects.equals(primaryLocale, other.primaryLocale)
+                && Objects.equals(otherLocales, other.otherLocales);
     }
-}
\ No newline at end of file
+}
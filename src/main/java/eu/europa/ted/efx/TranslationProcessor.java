@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
+import eu.europa.ted.efx.interfaces.EfxTemplateTranslator;
+
+/**
+ * A {@link Flow.Processor} that translates a stream of EFX expressions or templates, publishing
+ * one {@link TranslationResult} per source, in the same order.
+ * 
+ * Every source yields exactly one result, so the demand signalled by the subscriber is forwarded
+ * as is to the upstream publisher: the processor never requests more sources than the subscriber
+ * is ready to receive results for, and never buffers anything. Sources are translated on the
+ * thread that delivers them.
+ * 
+ * Failed translations are published as unsuccessful results; they do not terminate the stream.
+ * Only errors signalled by the upstream publisher do.
+ * 
+ * A processor supports a single subscriber and a single upstream subscription.
+ */
+public class TranslationProcessor implements Flow.Processor<String, TranslationResult> {
+
+  private final Function<String, String> translation;
+
+  private final Object lock = new Object();
+  private Flow.Subscription upstream;
+  private Flow.Subscriber<? super TranslationResult> downstream;
+  private long pendingDemand;
+  private boolean subscribed;
+  private boolean cancelled;
+  private boolean completed;
+  private Throwable error;
+  private boolean terminated;
+
+  protected TranslationProcessor(final Function<String, String> translation) {
+    this.translation = Objects.requireNonNull(translation);
+  }
+
+  /**
+   * Creates a processor that translates EFX expressions that do not expect any parameters.
+   * 
+   * @param translator The translator to use. It is shared with the calling code, which is safe as
+   *        translators do not keep state between translations.
+   * @return A new processor.
+   */
+  public static TranslationProcessor forExpressions(final EfxExpressionTranslator translator) {
+    return new TranslationProcessor(translator::translateExpression);
+  }
+
+  /**
+   * Creates a processor that translates EFX templates.
+   * 
+   * @param translator The translator to use.
+   * @return A new processor.
+   */
+  public static TranslationProcessor forTemplates(final EfxTemplateTranslator translator) {
+    return new TranslationProcessor(translator::renderTemplate);
+  }
+
+  // #region Publisher --------------------------------------------------------
+
+  @Override
+  public void subscribe(final Flow.Subscriber<? super TranslationResult> subscriber) {
+    Objects.requireNonNull(subscriber);
+    synchronized (lock) {
+      if (downstream != null) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+          @Override
+          public void request(long n) {}
+
+          @Override
+          public void cancel() {}
+        });
+        subscriber.onError(
+            new IllegalStateException("A TranslationProcessor supports a single subscriber."));
+        return;
+      }
+      downstream = subscriber;
+    }
+
+    subscriber.onSubscribe(new Flow.Subscription() {
+      @Override
+      public void request(final long n) {
+        requestFromUpstream(n);
+      }
+
+      @Override
+      public void cancel() {
+        cancelUpstream();
+      }
+    });
+
+    // Upstream may have terminated before the subscriber was ready to be told.
+    final boolean isCompleted;
+    final Throwable failure;
+    synchronized (lock) {
+      subscribed = true;
+      final boolean deliver = (completed || error != null) && !terminated;
+      terminated |= deliver;
+      isCompleted = deliver && completed;
+      failure = deliver ? error : null;
+    }
+    if (failure != null) {
+      subscriber.onError(failure);
+    } else if (isCompleted) {
+      subscriber.onComplete();
+    }
+  }
+
+  private void requestFromUpstream(final long n) {
+    if (n <= 0) {
+      cancelUpstream();
+      synchronized (lock) {
+        if (terminated) {
+          return;
+        }
+        terminated = true;
+      }
+      downstream.onError(new IllegalArgumentException(
+          "The number of requested results must be positive, but was " + n + "."));
+      return;
+    }
+    final Flow.Subscription subscription;
+    synchronized (lock) {
+      if (cancelled) {
+        return;
+      }
+      if (upstream == null) {
+        pendingDemand = pendingDemand + n < 0 ? Long.MAX_VALUE : pendingDemand + n;
+        return;
+      }
+      subscription = upstream;
+    }
+    subscription.request(n);
+  }
+
+  private void cancelUpstream() {
+    final Flow.Subscription subscription;
+    synchronized (lock) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      subscription = upstream;
+    }
+    if (subscription != null) {
+      subscription.cancel();
+    }
+  }
+
+  // #endregion Publisher
+
+  // #region Subscriber -------------------------------------------------------
+
+  @Override
+  public void onSubscribe(final Flow.Subscription subscription) {
+    Objects.requireNonNull(subscription);
+    final long demand;
+    synchronized (lock) {
+      if (upstream != null || cancelled) {
+        demand = -1;
+      } else {
+        upstream = subscription;
+        demand = pendingDemand;
+        pendingDemand = 0;
+      }
+    }
+    if (demand < 0) {
+      subscription.cancel();
+    } else if (demand > 0) {
+      subscription.request(demand);
+    }
+  }
+
+  @Override
+  public void onNext(final String source) {
+    final Flow.Subscriber<? super TranslationResult> subscriber;
+    synchronized (lock) {
+      if (cancelled) {
+        return;
+      }
+      subscriber = downstream;
+    }
+    subscriber.onNext(translate(source));
+  }
+
+  @Override
+  public void onError(final Throwable throwable) {
+    final Flow.Subscriber<? super TranslationResult> subscriber;
+    synchronized (lock) {
+      error = Objects.requireNonNull(throwable);
+      subscriber = takeSubscriberForTermination();
+    }
+    if (subscriber != null) {
+      subscriber.onError(throwable);
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    final Flow.Subscriber<? super TranslationResult> subscriber;
+    synchronized (lock) {
+      completed = true;
+      subscriber = takeSubscriberForTermination();
+    }
+    if (subscriber != null) {
+      subscriber.onComplete();
+    }
+  }
+
+  /**
+   * Must be called while holding the lock.
+   * 
+   * @return The subscriber to notify of the termination of the stream, or null if it is not ready
+   *         to be notified yet, or has already been notified.
+   */
+  private Flow.Subscriber<? super TranslationResult> takeSubscriberForTermination() {
+    if (!subscribed || terminated) {
+      return null;
+    }
+    terminated = true;
+    return downstream;
+  }
+
+  // #endregion Subscriber
+
+  protected TranslationResult translate(final String source) {
+    try {
+      return TranslationResult.success(source, translation.apply(source));
+    } catch (RuntimeException e) {
+      return TranslationResult.failure(source, e);
+    }
+  }
+}
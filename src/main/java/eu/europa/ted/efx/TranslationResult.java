@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The outcome of translating one item of a batch: either the translation, or the errors that
+ * prevented it.
+ */
+public final class TranslationResult {
+
+  private final String source;
+  private final String translation;
+  private final RuntimeException error;
+  private final List<Diagnostic> diagnostics;
+
+  private TranslationResult(final String source, final String translation,
+      final RuntimeException error, final List<Diagnostic> diagnostics) {
+    this.source = source;
+    this.translation = translation;
+    this.error = error;
+    this.diagnostics = diagnostics;
+  }
+
+  public static TranslationResult success(final String source, final String translation) {
+    return new TranslationResult(source, Objects.requireNonNull(translation), null,
+        Collections.emptyList());
+  }
+
+  public static TranslationResult failure(final String source, final RuntimeException error) {
+    return new TranslationResult(source, null, Objects.requireNonNull(error),
+        Collections.singletonList(Diagnostic.fromException(error)));
+  }
+
+  /**
+   * Creates the result of a translation that collected its errors as diagnostics instead of
+   * throwing them.
+   * 
+   * @param source The EFX source that was translated.
+   * @param diagnostics The errors found, at least one.
+   * @return The result.
+   */
+  public static TranslationResult failure(final String source,
+      final List<Diagnostic> diagnostics) {
+    if (diagnostics.isEmpty()) {
+      throw new IllegalArgumentException("A failed translation needs at least one diagnostic.");
+    }
+    return new TranslationResult(source, null, null,
+        Collections.unmodifiableList(new ArrayList<>(diagnostics)));
+  }
+
+  /**
+   * @return The EFX source that was translated.
+   */
+  public String getSource() {
+    return this.source;
+  }
+
+  public boolean isSuccessful() {
+    return this.diagnostics.isEmpty();
+  }
+
+  /**
+   * @return The translation, or null if the translation failed.
+   */
+  public String getTranslation() {
+    return this.translation;
+  }
+
+  /**
+   * @return The error that prevented the translation, or null if the translation succeeded or
+   *         reported its errors as diagnostics only.
+   */
+  public RuntimeException getError() {
+    return this.error;
+  }
+
+  /**
+   * @return The errors that prevented the translation, in the order they were found. Empty if the
+   *         translation succeeded.
+   */
+  public List<Diagnostic> getDiagnostics() {
+    return this.diagnostics;
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.antlr.v4.runtime.BaseErrorListener;
+import eu.europa.ted.efx.cache.TranslationCacheKey.Kind;
+import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
+import eu.europa.ted.efx.interfaces.MarkupGenerator;
+import eu.europa.ted.efx.interfaces.ScriptGenerator;
+import eu.europa.ted.efx.interfaces.SymbolResolver;
+import eu.europa.ted.efx.interfaces.TranslatorDependencyFactory;
+import eu.europa.ted.efx.interfaces.TranslatorOptions;
+
+/**
+ * Reuses the translations of EFX expressions across SDK versions, as long as the metadata of the
+ * symbols they depend on are unchanged.
+ * 
+ * Each translation is recorded with the {@link SymbolMetadata} of the symbols that the translator
+ * looked up while translating it. When the same expression is translated for another SDK version,
+ * with the same translator implementation, dependency factory, qualifier, options and parameters,
+ * a recorded translation is reused if the symbols it depends on are described identically by the
+ * symbol resolver of that version. Only the expressions that depend on changed symbols are
+ * translated again. The description of each symbol is computed once per SDK version, so checking a
+ * translation costs a few string comparisons.
+ * 
+ * To note the symbols looked up, the translator must get its dependencies from the factory returned
+ * by {@link #recording(TranslatorDependencyFactory)}, which wraps the symbol resolvers it creates.
+ * 
+ * Only reuse translations if the script generators of your {@link TranslatorDependencyFactory}
+ * produce the same output for all the SDK versions that share a translator implementation.
+ * Translations are kept until {@link #clear()} is called.
+ */
+public class CrossVersionTranslationReuse {
+
+  /**
+   * A translation, with the SDK version it was made or reused for and the metadata it depends on.
+   */
+  private static final class Recorded {
+    private final String sdkVersion;
+    private final Class<?> translatorClass;
+    private final String translation;
+    private final SymbolMetadata metadata;
+
+    Recorded(final String sdkVersion, final Class<?> translatorClass, final String translation,
+        final SymbolMetadata metadata) {
+      this.sdkVersion = sdkVersion;
+      this.translatorClass = translatorClass;
+      this.translation = translation;
+      this.metadata = metadata;
+    }
+  }
+
+  /**
+   * The wrapper of each dependency factory, by factory instance: two instances of the same class
+   * may be configured differently, and are never assumed to be interchangeable.
+   */
+  private final Map<TranslatorDependencyFactory, RecordingDependencyFactory> factories =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+
+  /**
+   * Recorded translations, by key without SDK version. The keys refer to the wrapper of the
+   * dependency factory, so that translations are recorded per factory instance whether the caller
+   * passes the factory or its wrapper.
+   */
+  private final Map<TranslationCacheKey, List<Recorded>> translations = new ConcurrentHashMap<>();
+
+  private final AtomicLong reuseCount = new AtomicLong();
+  private final AtomicLong translationCount = new AtomicLong();
+
+  /**
+   * Wraps the given dependency factory so that the symbol resolvers it creates note the symbols
+   * looked up by translations. The same wrapper is returned for a given factory, so that pooled
+   * translators can be shared.
+   * 
+   * @param dependencyFactory The dependency factory to wrap.
+   * @return The dependency factory to create the translators with.
+   */
+  public TranslatorDependencyFactory recording(
+      final TranslatorDependencyFactory dependencyFactory) {
+    return this.recordingFactory(dependencyFactory);
+  }
+
+  private RecordingDependencyFactory recordingFactory(
+      final TranslatorDependencyFactory dependencyFactory) {
+    if (dependencyFactory instanceof RecordingDependencyFactory) {
+      return (RecordingDependencyFactory) dependencyFactory;
+    }
+    return this.factories.computeIfAbsent(dependencyFactory, RecordingDependencyFactory::new);
+  }
+
+  /**
+   * Returns a translation of the given expression recorded for the given SDK version, or for
+   * another SDK version with unchanged metadata, and translates it otherwise.
+   * 
+   * @param dependencyFactory The dependency factory, as passed to
+   *        {@link #recording(TranslatorDependencyFactory)}.
+   * @param sdkVersion The SDK version to translate for.
+   * @param qualifier The qualifier of the translator.
+   * @param options The options of the translator.
+   * @param translator A translator created with the factory returned by
+   *        {@link #recording(TranslatorDependencyFactory)} for the same SDK version, qualifier and
+   *        options.
+   * @param expression The EFX expression to translate.
+   * @param parameters The values of the parameters of the expression.
+   * @return The translation.
+   */
+  public String translateExpression(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String qualifier, final TranslatorOptions options,
+      final EfxExpressionTranslator translator, final String expression,
+      final String... parameters) {
+    final RecordingDependencyFactory factory = this.recordingFactory(dependencyFactory);
+    final RecordingSymbolResolver resolver = factory.getSymbolResolver(sdkVersion, qualifier);
+    final List<Recorded> recorded = this.translations.computeIfAbsent(
+        new TranslationCacheKey(Kind.EXPRESSION, factory, "", qualifier, options, expression,
+            parameters),
+        k -> new CopyOnWriteArrayList<>());
+
+    for (Recorded candidate : recorded) {
+      if (candidate.sdkVersion.equals(sdkVersion)
+          && candidate.translatorClass == translator.getClass()) {
+        this.reuseCount.incrementAndGet();
+        return candidate.translation;
+      }
+    }
+    for (Recorded candidate : recorded) {
+      if (candidate.translatorClass != translator.getClass()) {
+        continue;
+      }
+      final SymbolMetadata metadata = resolver.describe(candidate.metadata.getSymbols());
+      if (candidate.metadata.changedSymbols(metadata).isEmpty()) {
+        recorded.add(new Recorded(sdkVersion, translator.getClass(), candidate.translation,
+            metadata));
+        this.reuseCount.incrementAndGet();
+        return candidate.translation;
+      }
+    }
+
+    final String translation;
+    final SymbolMetadata metadata;
+    resolver.startRecording();
+    try {
+      translation = translator.translateExpression(expression, parameters);
+    } finally {
+      metadata = resolver.stopRecording();
+    }
+    recorded.add(new Recorded(sdkVersion, translator.getClass(), translation, metadata));
+    this.translationCount.incrementAndGet();
+    return translation;
+  }
+
+  /**
+   * @return The metadata that the translation of the given expression for the given SDK version
+   *         depends on, or null if no such translation is recorded.
+   */
+  public SymbolMetadata getSymbolMetadata(final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String qualifier, final TranslatorOptions options,
+      final String expression, final String... parameters) {
+    final List<Recorded> recorded = this.translations.get(new TranslationCacheKey(Kind.EXPRESSION,
+        this.recordingFactory(dependencyFactory), "", qualifier, options, expression,
+        parameters));
+    if (recorded != null) {
+      for (Recorded candidate : recorded) {
+        if (candidate.sdkVersion.equals(sdkVersion)) {
+          return candidate.metadata;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares the metadata of two SDK versions. The symbol resolver cannot list all the symbols of
+   * an SDK, so only the symbols that the translations recorded for the previous version depend on
+   * are compared. The translations that depend on the symbols returned are the ones that will be
+   * translated again for the current version.
+   * 
+   * @param dependencyFactory The dependency factory that creates the symbol resolvers.
+   * @param previousVersion The SDK version whose translations are recorded.
+   * @param currentVersion The SDK version to compare it with.
+   * @param qualifier The qualifier of the symbol resolvers.
+   * @return The symbols whose metadata changed, e.g. {@code field:BT-00-Text}.
+   */
+  public Set<String> diff(final TranslatorDependencyFactory dependencyFactory,
+      final String previousVersion, final String currentVersion, final String qualifier) {
+    final RecordingDependencyFactory factory = this.recordingFactory(dependencyFactory);
+    final String normalisedQualifier = qualifier == null ? "" : qualifier;
+    final Set<String> symbols = new TreeSet<>();
+    for (Map.Entry<TranslationCacheKey, List<Recorded>> entry : this.translations.entrySet()) {
+      if (entry.getKey().getDependencyFactory() == factory
+          && entry.getKey().getQualifier().equals(normalisedQualifier)) {
+        for (Recorded recorded : entry.getValue()) {
+          if (recorded.sdkVersion.equals(previousVersion)) {
+            symbols.addAll(recorded.metadata.getSymbols());
+          }
+        }
+      }
+    }
+    return factory.getSymbolResolver(previousVersion, qualifier).describe(symbols)
+        .changedSymbols(factory.getSymbolResolver(currentVersion, qualifier).describe(symbols));
+  }
+
+  /**
+   * @return The number of translations reused, for the same or for another SDK version.
+   */
+  public long getReuseCount() {
+    return this.reuseCount.get();
+  }
+
+  /**
+   * @return The number of expressions translated and recorded.
+   */
+  public long getTranslationCount() {
+    return this.translationCount.get();
+  }
+
+  /**
+   * Forgets all the recorded translations. The wrapped dependency factories are kept, as pooled
+   * translators may still use them.
+   */
+  public void clear() {
+    this.translations.clear();
+  }
+
+  /**
+   * Wraps the symbol resolvers created by a dependency factory in {@link RecordingSymbolResolver}s.
+   * A single resolver is created per SDK version and qualifier.
+   */
+  private static final class RecordingDependencyFactory implements TranslatorDependencyFactory {
+
+    private final TranslatorDependencyFactory delegate;
+    private final Map<String, RecordingSymbolResolver> symbolResolvers =
+        new ConcurrentHashMap<>();
+
+    RecordingDependencyFactory(final TranslatorDependencyFactory delegate) {
+      this.delegate = delegate;
+    }
+
+    RecordingSymbolResolver getSymbolResolver(final String sdkVersion, final String qualifier) {
+      return this.symbolResolvers.computeIfAbsent(
+          sdkVersion + "|" + (qualifier == null ? "" : qualifier),
+          k -> new RecordingSymbolResolver(
+              this.delegate.createSymbolResolver(sdkVersion, qualifier)));
+    }
+
+    @Override
+    public SymbolResolver createSymbolResolver(final String sdkVersion, final String qualifier) {
+      return this.getSymbolResolver(sdkVersion, qualifier);
+    }
+
+    @Override
+    public ScriptGenerator createScriptGenerator(final String sdkVersion, final String qualifier,
+        final TranslatorOptions options) {
+      return this.delegate.createScriptGenerator(sdkVersion, qualifier, options);
+    }
+
+    @Override
+    public MarkupGenerator createMarkupGenerator(final String sdkVersion, final String qualifier,
+        final TranslatorOptions options) {
+      return this.delegate.createMarkupGenerator(sdkVersion, qualifier, options);
+    }
+
+    @Override
+    public BaseErrorListener createErrorListener() {
+      return this.delegate.createErrorListener();
+    }
+
+    @Override
+    public String getCacheIdentity() {
+      return this.delegate.getCacheIdentity();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the SHA-256 digests that identify cache keys and expressions across JVM instances.
+ */
+final class Digests {
+
+  private Digests() {}
+
+  /**
+   * @return A new SHA-256 message digest.
+   */
+  static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Adds a length-prefixed string to the digest, so that the boundaries between components are
+   * part of the digest.
+   */
+  static void update(final MessageDigest messageDigest, final String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    messageDigest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+    messageDigest.update(bytes);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * A stable 128-bit fingerprint of an EFX expression: its SDK version, its canonical form (see
+ * {@link eu.europa.ted.efx.EfxTranslator#canonicaliseExpression}) and the values of its parameters.
+ * 
+ * Expressions that differ only in their layout have the same fingerprint. Fingerprints are derived
+ * from a SHA-256 digest, so they are the same across JVM instances and can be stored, for instance
+ * to deduplicate rules or to share translations between processes.
+ * 
+ * Instances are immutable.
+ */
+public final class ExpressionFingerprint {
+
+  private final long high;
+  private final long low;
+
+  private ExpressionFingerprint(final long high, final long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /**
+   * @param sdkVersion The version of the eForms SDK whose grammar the expression uses.
+   * @param canonicalExpression The canonical form of the expression.
+   * @param parameters The values of the parameters of the expression.
+   * @return The fingerprint.
+   */
+  public static ExpressionFingerprint of(final String sdkVersion,
+      final String canonicalExpression, final List<String> parameters) {
+    final MessageDigest messageDigest = Digests.newSha256();
+    Digests.update(messageDigest, sdkVersion);
+    Digests.update(messageDigest, canonicalExpression);
+    for (String parameter : parameters) {
+      Digests.update(messageDigest, parameter);
+    }
+    final ByteBuffer digest = ByteBuffer.wrap(messageDigest.digest());
+    return new ExpressionFingerprint(digest.getLong(), digest.getLong());
+  }
+
+  /**
+   * @return The first 64 bits of the fingerprint. They can be used on their own where a 64-bit
+   *         fingerprint is enough.
+   */
+  public long getHighBits() {
+    return this.high;
+  }
+
+  /**
+   * @return The last 64 bits of the fingerprint.
+   */
+  public long getLowBits() {
+    return this.low;
+  }
+
+  /**
+   * @return The fingerprint as 16 bytes, most significant first.
+   */
+  public byte[] toBytes() {
+    return ByteBuffer.allocate(2 * Long.BYTES).putLong(this.high).putLong(this.low).array();
+  }
+
+  /**
+   * @return The fingerprint as 32 lowercase hexadecimal digits.
+   */
+  @Override
+  public String toString() {
+    return String.format("%016x%016x", this.high, this.low);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(this.high);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    ExpressionFingerprint other = (ExpressionFingerprint) obj;
+    return this.high == other.high && this.low == other.low;
+  }
+}
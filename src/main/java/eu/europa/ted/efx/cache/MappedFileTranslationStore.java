@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link TranslationStore} that persists translations in a memory-mapped, append-only file.
+ * 
+ * The file starts with a header, followed by one record per translation. Each record contains the
+ * {@link TranslationCacheKey#digest() digest} of its key, followed by the length and the UTF-8
+ * bytes of the translation. The header records the end of the last complete record, and is only
+ * updated after a record has been fully written, so a process that stops while appending never
+ * leaves a partial record visible.
+ * 
+ * An index from digest to record offset is built in memory when the file is opened. Lookups are
+ * served directly from the mapped file.
+ * 
+ * Several processes can share the same file (for example on a local volume): appends are
+ * serialised with a file lock, and records appended by other processes are picked up on the next
+ * lookup that misses. Within one JVM, use a single instance per file.
+ * 
+ * The file is limited to 2GB.
+ */
+public class MappedFileTranslationStore implements TranslationStore, Closeable {
+
+  private static final int MAGIC = 0x45465843; // "EFXC"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int END_OFFSET = 8;
+  private static final int HEADER_SIZE = 16;
+  private static final int DIGEST_SIZE = 32;
+
+  static final int DEFAULT_INITIAL_CAPACITY = 1 << 20;
+
+  private final Path path;
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+
+  /**
+   * Offset of each record, by digest.
+   */
+  private final Map<ByteBuffer, Integer> index = new HashMap<>();
+
+  /**
+   * The position up to which records have been added to the index.
+   */
+  private int indexedEnd = HEADER_SIZE;
+
+  /**
+   * Opens the store in the given file, creating the file if it does not exist.
+   * 
+   * @param path The path of the file.
+   * @throws IOException If the file cannot be opened, is not a translation store, or is corrupt.
+   */
+  public MappedFileTranslationStore(final Path path) throws IOException {
+    this(path, DEFAULT_INITIAL_CAPACITY);
+  }
+
+  @SuppressWarnings("try")
+  MappedFileTranslationStore(final Path path, final int initialCapacity) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try (FileLock ignored = this.channel.lock()) {
+      final long size = this.channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Translation store is too large: " + path);
+      }
+      if (size > 0) {
+        // Check the header before mapping, so that we never grow a file that is not ours.
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        this.channel.read(header, 0);
+        if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+          throw new IOException("Not a translation store: " + path);
+        }
+        if (header.getInt(4) != FORMAT_VERSION) {
+          throw new IOException(String.format("Unsupported translation store format %d: %s",
+              header.getInt(4), path));
+        }
+      }
+      this.map((int) Math.max(size, Math.max(initialCapacity, HEADER_SIZE)));
+      if (size == 0) {
+        this.buffer.putInt(0, MAGIC);
+        this.buffer.putInt(4, FORMAT_VERSION);
+        this.buffer.putLong(END_OFFSET, HEADER_SIZE);
+      }
+      this.refresh();
+    } catch (UncheckedIOException e) {
+      this.channel.close();
+      throw e.getCause();
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized String get(final TranslationCacheKey key) {
+    final ByteBuffer digest = ByteBuffer.wrap(key.digest());
+    Integer offset = this.index.get(digest);
+    if (offset == null) {
+      this.refresh();
+      offset = this.index.get(digest);
+      if (offset == null) {
+        return null;
+      }
+    }
+    final int length = this.buffer.getInt(offset + DIGEST_SIZE);
+    final byte[] bytes = new byte[length];
+    final ByteBuffer record = this.buffer.duplicate();
+    record.position(offset + DIGEST_SIZE + Integer.BYTES);
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  @SuppressWarnings("try")
+  public synchronized void put(final TranslationCacheKey key, final String translation) {
+    final byte[] digest = key.digest();
+    if (this.index.containsKey(ByteBuffer.wrap(digest))) {
+      return;
+    }
+    final byte[] bytes = translation.getBytes(StandardCharsets.UTF_8);
+    try (FileLock ignored = this.channel.lock()) {
+      // Another process may have appended records since we last looked.
+      this.refresh();
+      if (this.index.containsKey(ByteBuffer.wrap(digest))) {
+        return;
+      }
+      final int offset = this.indexedEnd;
+      final long end = (long) offset + DIGEST_SIZE + Integer.BYTES + bytes.length;
+      if (end > Integer.MAX_VALUE) {
+        throw new IOException("Translation store is full.");
+      }
+      if (end > this.buffer.capacity()) {
+        this.map((int) Math.min(Integer.MAX_VALUE, Math.max(end, 2L * this.buffer.capacity())));
+      }
+      final ByteBuffer record = this.buffer.duplicate();
+      record.position(offset);
+      record.put(digest);
+      record.putInt(bytes.length);
+      record.put(bytes);
+      this.buffer.putLong(END_OFFSET, end);
+      this.index.put(ByteBuffer.wrap(digest), offset);
+      this.indexedEnd = (int) end;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return The number of translations in the store.
+   */
+  public synchronized int size() {
+    this.refresh();
+    return this.index.size();
+  }
+
+  /**
+   * Forces any changes to be written to the storage device and closes the file.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.channel.isOpen()) {
+      this.buffer.force();
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Adds the records appended since the last call to the index.
+   * 
+   * @throws UncheckedIOException If the header or a record points past the end of the file.
+   */
+  private void refresh() {
+    final long end = this.buffer.getLong(END_OFFSET);
+    if (end == this.indexedEnd) {
+      return;
+    }
+    try {
+      final long size = this.channel.size();
+      if (end < this.indexedEnd || end > size || end > Integer.MAX_VALUE) {
+        throw this.corrupt(String.format("end of records %d, file size %d", end, size));
+      }
+      if (end > this.buffer.capacity()) {
+        this.map((int) size);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    int position = this.indexedEnd;
+    while (position < end) {
+      if ((long) position + DIGEST_SIZE + Integer.BYTES > end) {
+        throw new UncheckedIOException(
+            this.corrupt(String.format("truncated record at offset %d", position)));
+      }
+      final byte[] digest = new byte[DIGEST_SIZE];
+      final ByteBuffer record = this.buffer.duplicate();
+      record.position(position);
+      record.get(digest);
+      final int length = record.getInt();
+      final long next = (long) position + DIGEST_SIZE + Integer.BYTES + length;
+      if (length < 0 || next > end) {
+        throw new UncheckedIOException(this.corrupt(
+            String.format("record at offset %d has an invalid length %d", position, length)));
+      }
+      this.index.putIfAbsent(ByteBuffer.wrap(digest), position);
+      position = (int) next;
+    }
+    this.indexedEnd = position;
+  }
+
+  private IOException corrupt(final String reason) {
+    return new IOException(String.format("Corrupt translation store (%s): %s", reason, this.path));
+  }
+
+  /**
+   * Maps the first {@code capacity} bytes of the file, growing the file if needed.
+   */
+  private void map(final int capacity) throws IOException {
+    this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import eu.europa.ted.efx.interfaces.SymbolResolver;
+import eu.europa.ted.efx.model.expressions.path.PathExpression;
+
+/**
+ * A {@link SymbolResolver} that notes the symbols looked up by the translations running on the
+ * current thread, so that the metadata they depend on can be recorded with them.
+ * 
+ * The resolver also remembers the description of each symbol it has described (see
+ * {@link SymbolMetadata}). This assumes, like the translator pool does, that the metadata of an SDK
+ * version never change.
+ */
+final class RecordingSymbolResolver implements SymbolResolver {
+
+  private final SymbolResolver delegate;
+
+  private final ThreadLocal<Set<String>> recording = new ThreadLocal<>();
+
+  private final Map<String, String> descriptions = new ConcurrentHashMap<>();
+
+  RecordingSymbolResolver(final SymbolResolver delegate) {
+    this.delegate = delegate;
+  }
+
+  // #region Recording --------------------------------------------------------
+
+  /**
+   * Starts noting the symbols looked up on the current thread.
+   */
+  void startRecording() {
+    this.recording.set(new TreeSet<>());
+  }
+
+  /**
+   * Stops noting the symbols looked up on the current thread.
+   * 
+   * @return The metadata of the symbols looked up since {@link #startRecording()}.
+   */
+  SymbolMetadata stopRecording() {
+    final Set<String> symbols = this.recording.get();
+    this.recording.remove();
+    return symbols == null ? SymbolMetadata.EMPTY : this.describe(symbols);
+  }
+
+  /**
+   * @param symbols Symbols, e.g. {@code field:BT-00-Text}.
+   * @return The metadata of the given symbols in the SDK version of this resolver.
+   */
+  SymbolMetadata describe(final Set<String> symbols) {
+    final Map<String, String> metadata = new HashMap<>();
+    for (String symbol : symbols) {
+      metadata.put(symbol, this.descriptions.computeIfAbsent(symbol,
+          s -> SymbolMetadata.describe(this.delegate, s)));
+    }
+    return new SymbolMetadata(metadata);
+  }
+
+  private void note(final String kind, final String id) {
+    final Set<String> symbols = this.recording.get();
+    if (symbols != null) {
+      symbols.add(kind + id);
+    }
+  }
+
+  // #endregion Recording
+
+  @Override
+  public String getParentNodeOfField(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getParentNodeOfField(fieldId);
+  }
+
+  @Override
+  public PathExpression getRelativePathOfField(final String fieldId,
+      final PathExpression contextPath) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getRelativePathOfField(fieldId, contextPath);
+  }
+
+  @Override
+  public PathExpression getRelativePathOfNode(final String nodeId,
+      final PathExpression contextPath) {
+    this.note(SymbolMetadata.NODE, nodeId);
+    return this.delegate.getRelativePathOfNode(nodeId, contextPath);
+  }
+
+  @Override
+  public PathExpression getRelativePath(final PathExpression absolutePath,
+      final PathExpression contextPath) {
+    return this.delegate.getRelativePath(absolutePath, contextPath);
+  }
+
+  @Override
+  public PathExpression getAbsolutePathOfField(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getAbsolutePathOfField(fieldId);
+  }
+
+  @Override
+  public PathExpression getAbsolutePathOfNode(final String nodeId) {
+    this.note(SymbolMetadata.NODE, nodeId);
+    return this.delegate.getAbsolutePathOfNode(nodeId);
+  }
+
+  @Override
+  public String getTypeOfField(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getTypeOfField(fieldId);
+  }
+
+  @Override
+  public String getRootCodelistOfField(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getRootCodelistOfField(fieldId);
+  }
+
+  @Override
+  public boolean isAttributeField(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.isAttributeField(fieldId);
+  }
+
+  @Override
+  public String getAttributeNameFromAttributeField(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getAttributeNameFromAttributeField(fieldId);
+  }
+
+  @Override
+  public PathExpression getAbsolutePathOfFieldWithoutTheAttribute(final String fieldId) {
+    this.note(SymbolMetadata.FIELD, fieldId);
+    return this.delegate.getAbsolutePathOfFieldWithoutTheAttribute(fieldId);
+  }
+
+  @Override
+  public List<String> expandCodelist(final String codelistId) {
+    this.note(SymbolMetadata.CODELIST, codelistId);
+    return this.delegate.expandCodelist(codelistId);
+  }
+}
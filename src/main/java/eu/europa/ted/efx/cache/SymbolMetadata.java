@@ -0,0 +1,180 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import eu.europa.ted.efx.interfaces.SymbolResolver;
+import eu.europa.ted.efx.model.expressions.path.PathExpression;
+
+/**
+ * The metadata of the SDK symbols that a translation depended on, as returned by a
+ * {@link SymbolResolver}: the path, type, parent node, codelist and attribute of each field, the
+ * path of each node and the values of each codelist.
+ * 
+ * Symbols are identified by their kind and their identifier, e.g. {@code field:BT-00-Text}. The
+ * metadata of each symbol is kept as a description string, so that the metadata of two SDK versions
+ * can be compared symbol by symbol. Relative paths are not described, as they are computed from the
+ * absolute paths of the symbols involved.
+ * 
+ * Instances are immutable.
+ */
+public final class SymbolMetadata {
+
+  public static final String FIELD = "field:";
+  public static final String NODE = "node:";
+  public static final String CODELIST = "codelist:";
+
+  public static final SymbolMetadata EMPTY = new SymbolMetadata(Collections.emptyMap());
+
+  private final SortedMap<String, String> descriptions;
+
+  /**
+   * @param descriptions The description of each symbol, by symbol.
+   */
+  public SymbolMetadata(final Map<String, String> descriptions) {
+    this.descriptions = Collections.unmodifiableSortedMap(new TreeMap<>(descriptions));
+  }
+
+  /**
+   * Describes the given symbols with the metadata returned by the given resolver.
+   * 
+   * @param resolver The resolver of the SDK version to describe.
+   * @param symbols The symbols to describe, e.g. {@code field:BT-00-Text}.
+   * @return The metadata of the symbols.
+   */
+  public static SymbolMetadata of(final SymbolResolver resolver,
+      final Collection<String> symbols) {
+    final Map<String, String> descriptions = new TreeMap<>();
+    for (String symbol : symbols) {
+      descriptions.put(symbol, describe(resolver, symbol));
+    }
+    return new SymbolMetadata(descriptions);
+  }
+
+  public Set<String> getSymbols() {
+    return this.descriptions.keySet();
+  }
+
+  /**
+   * @param symbol A symbol, e.g. {@code field:BT-00-Text}.
+   * @return The description of the symbol, or null if the metadata does not include the symbol.
+   */
+  public String getDescription(final String symbol) {
+    return this.descriptions.get(symbol);
+  }
+
+  /**
+   * Compares these metadata with those of another SDK version.
+   * 
+   * @param other The metadata of another SDK version.
+   * @return The symbols whose description differs in the other metadata, or which the other
+   *         metadata do not include.
+   */
+  public Set<String> changedSymbols(final SymbolMetadata other) {
+    final Set<String> changed = new TreeSet<>();
+    for (Map.Entry<String, String> entry : this.descriptions.entrySet()) {
+      if (!entry.getValue().equals(other.descriptions.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    return changed;
+  }
+
+  // #region Descriptions -----------------------------------------------------
+
+  /**
+   * Builds the description of a symbol. Errors raised by the resolver are part of the description,
+   * so that a symbol that is missing from both versions is unchanged.
+   * 
+   * @param resolver The resolver of the SDK version to describe.
+   * @param symbol A symbol, e.g. {@code field:BT-00-Text}.
+   * @return The description of the symbol.
+   * @throws IllegalArgumentException if the kind of the symbol is unknown.
+   */
+  static String describe(final SymbolResolver resolver, final String symbol) {
+    final StringBuilder sb = new StringBuilder();
+    if (symbol.startsWith(FIELD)) {
+      final String fieldId = symbol.substring(FIELD.length());
+      append(sb, "path", () -> describe(resolver.getAbsolutePathOfField(fieldId)));
+      append(sb, "type", () -> resolver.getTypeOfField(fieldId));
+      append(sb, "parent", () -> resolver.getParentNodeOfField(fieldId));
+      append(sb, "codelist", () -> resolver.getRootCodelistOfField(fieldId));
+      append(sb, "attribute", () -> resolver.isAttributeField(fieldId)
+          ? resolver.getAttributeNameFromAttributeField(fieldId) + " of "
+              + describe(resolver.getAbsolutePathOfFieldWithoutTheAttribute(fieldId))
+          : "");
+    } else if (symbol.startsWith(NODE)) {
+      final String nodeId = symbol.substring(NODE.length());
+      append(sb, "path", () -> describe(resolver.getAbsolutePathOfNode(nodeId)));
+    } else if (symbol.startsWith(CODELIST)) {
+      final String codelistId = symbol.substring(CODELIST.length());
+      append(sb, "values", () -> String.join(",", resolver.expandCodelist(codelistId)));
+    } else {
+      throw new IllegalArgumentException(String.format("Unknown symbol '%s'.", symbol));
+    }
+    return sb.toString();
+  }
+
+  private static void append(final StringBuilder sb, final String name,
+      final Supplier<String> value) {
+    String description;
+    try {
+      description = String.valueOf(value.get());
+    } catch (RuntimeException e) {
+      description = "!" + e.getMessage();
+    }
+    sb.append(name).append('=').append(description).append('\n');
+  }
+
+  private static String describe(final PathExpression path) {
+    if (path == null) {
+      return "null";
+    }
+    return path.getDataType() != null
+        ? path.getScript() + " as " + path.getDataType().getSimpleName()
+        : path.getScript();
+  }
+
+  // #endregion Descriptions
+
+  @Override
+  public String toString() {
+    return this.descriptions.keySet().toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.descriptions);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    SymbolMetadata other = (SymbolMetadata) obj;
+    return this.descriptions.equals(other.descriptions);
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import eu.europa.ted.efx.exceptions.TranslationCancelledException;
+
+/**
+ * A bounded, thread-safe, in-memory cache of translations.
+ * 
+ * Entries are evicted in least-recently-used order when either the number of entries or their
+ * total weight (the number of characters in the EFX source, its parameters and the translation)
+ * exceeds the configured maximum.
+ * 
+ * Concurrent requests for a key that is not in the cache are coalesced: the first caller
+ * translates, and the others wait for its result instead of translating the same input again. If
+ * the translation fails, all waiting callers receive the same exception and nothing is cached.
+ * 
+ * A {@link TranslationStore} can be added as a second level. It is consulted before translating,
+ * and receives every new translation.
+ */
+public class TranslationCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(TranslationCache.class);
+
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 10_000;
+  public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+  private final int maximumEntries;
+  private final long maximumWeight;
+  private final TranslationStore secondLevel;
+
+  /**
+   * Cached translations in access order. All access is synchronized on the map itself.
+   */
+  private final LinkedHashMap<TranslationCacheKey, String> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long weight = 0;
+
+  /**
+   * Translations in progress. Used to coalesce concurrent requests for the same key.
+   */
+  private final Map<TranslationCacheKey, CompletableFuture<String>> loading =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong secondLevelHitCount = new AtomicLong();
+
+  public TranslationCache() {
+    this(DEFAULT_MAXIMUM_ENTRIES, DEFAULT_MAXIMUM_WEIGHT);
+  }
+
+  /**
+   * @param secondLevel The store consulted when a translation is not found in memory.
+   */
+  public TranslationCache(final TranslationStore secondLevel) {
+    this(DEFAULT_MAXIMUM_ENTRIES, DEFAULT_MAXIMUM_WEIGHT, secondLevel);
+  }
+
+  /**
+   * @param maximumEntries The maximum number of translations kept in the cache.
+   * @param maximumWeight The maximum total weight, in characters, of the cached entries.
+   */
+  public TranslationCache(final int maximumEntries, final long maximumWeight) {
+    this(maximumEntries, maximumWeight, null);
+  }
+
+  /**
+   * @param maximumEntries The maximum number of translations kept in memory.
+   * @param maximumWeight The maximum total weight, in characters, of the entries kept in memory.
+   * @param secondLevel The store consulted when a translation is not found in memory, or null.
+   */
+  public TranslationCache(final int maximumEntries, final long maximumWeight,
+      final TranslationStore secondLevel) {
+    if (maximumEntries < 0 || maximumWeight < 0) {
+      throw new IllegalArgumentException("The maximum size of the cache cannot be negative.");
+    }
+    this.maximumEntries = maximumEntries;
+    this.maximumWeight = maximumWeight;
+    this.secondLevel = secondLevel;
+  }
+
+  /**
+   * Returns the cached translation for the given key, calling the given loader to translate it if
+   * needed.
+   * 
+   * @param key Identifies the translation.
+   * @param loader Performs the translation if it is not already cached. Exceptions thrown by the
+   *        loader are propagated to the caller (and to any concurrent caller waiting for the same
+   *        key). A {@link TranslationCancelledException} is only propagated to the caller whose
+   *        loader was cancelled; the callers waiting for it load the translation again.
+   * @return The translation.
+   */
+  public String get(final TranslationCacheKey key, final Supplier<String> loader) {
+    final String cached = this.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    final CompletableFuture<String> inProgress = this.loading.putIfAbsent(key, future);
+    if (inProgress != null) {
+      this.hitCount.incrementAndGet();
+      try {
+        return join(inProgress);
+      } catch (TranslationCancelledException e) {
+        // The translation was cancelled on behalf of the caller that started it, not this one.
+        return this.get(key, loader);
+      }
+    }
+
+    try {
+      // Another thread may have completed the same translation between our lookup and our
+      // registration in the loading map.
+      String translation = this.lookup(key);
+      if (translation != null) {
+        this.hitCount.incrementAndGet();
+      } else if ((translation = this.loadFromSecondLevel(key)) != null) {
+        this.hitCount.incrementAndGet();
+        this.secondLevelHitCount.incrementAndGet();
+        this.putInMemory(key, translation);
+      } else {
+        this.missCount.incrementAndGet();
+        translation = loader.get();
+        this.put(key, translation);
+      }
+      future.complete(translation);
+      return translation;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.loading.remove(key, future);
+    }
+  }
+
+  /**
+   * @param key Identifies the translation.
+   * @return The cached translation, or null if the key is not in the cache.
+   */
+  public String getIfPresent(final TranslationCacheKey key) {
+    final String cached = this.lookup(key);
+    if (cached != null) {
+      this.hitCount.incrementAndGet();
+    }
+    return cached;
+  }
+
+  /**
+   * Adds a translation to the cache (and to the second-level store, if any), evicting older entries
+   * from memory if needed. Translations that are heavier than the maximum weight of the cache are
+   * not kept in memory.
+   * 
+   * @param key Identifies the translation.
+   * @param translation The translation.
+   */
+  public void put(final TranslationCacheKey key, final String translation) {
+    this.putInMemory(key, translation);
+    if (this.secondLevel != null) {
+      try {
+        this.secondLevel.put(key, translation);
+      } catch (RuntimeException e) {
+        logger.warn("Failed to write translation to the second-level store", e);
+      }
+    }
+  }
+
+  private void putInMemory(final TranslationCacheKey key, final String translation) {
+    final long entryWeight = weightOf(key, translation);
+    synchronized (this.entries) {
+      final String previous = this.entries.remove(key);
+      if (previous != null) {
+        this.weight -= weightOf(key, previous);
+      }
+      if (entryWeight > this.maximumWeight || this.maximumEntries == 0) {
+        return;
+      }
+      this.entries.put(key, translation);
+      this.weight += entryWeight;
+      this.evict();
+    }
+  }
+
+  /**
+   * Removes all entries from memory. The second-level store and the counters are left untouched.
+   */
+  public void invalidateAll() {
+    synchronized (this.entries) {
+      this.entries.clear();
+      this.weight = 0;
+    }
+  }
+
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * @return The total weight, in characters, of the cached entries.
+   */
+  public long getWeight() {
+    synchronized (this.entries) {
+      return this.weight;
+    }
+  }
+
+  /**
+   * @return The number of requests that were served without translating, including requests that
+   *         waited for a concurrent translation of the same key.
+   */
+  public long getHitCount() {
+    return this.hitCount.get();
+  }
+
+  /**
+   * @return The number of requests that required a translation.
+   */
+  public long getMissCount() {
+    return this.missCount.get();
+  }
+
+  /**
+   * @return The number of requests that were served from the second-level store. These are also
+   *         counted as hits.
+   */
+  public long getSecondLevelHitCount() {
+    return this.secondLevelHitCount.get();
+  }
+
+  /**
+   * @return The number of entries removed to keep the cache within its bounds.
+   */
+  public long getEvictionCount() {
+    return this.evictionCount.get();
+  }
+
+  private String loadFromSecondLevel(final TranslationCacheKey key) {
+    if (this.secondLevel == null) {
+      return null;
+    }
+    try {
+      return this.secondLevel.get(key);
+    } catch (RuntimeException e) {
+      logger.warn("Failed to read translation from the second-level store", e);
+      return null;
+    }
+  }
+
+  private String lookup(final TranslationCacheKey key) {
+    synchronized (this.entries) {
+      return this.entries.get(key);
+    }
+  }
+
+  /**
+   * Removes least recently used entries until the cache is within its bounds. Must be called while
+   * holding the lock on {@link #entries}.
+   */
+  private void evict() {
+    final Iterator<Map.Entry<TranslationCacheKey, String>> iterator =
+        this.entries.entrySet().iterator();
+    while ((this.entries.size() > this.maximumEntries || this.weight > this.maximumWeight)
+        && iterator.hasNext()) {
+      final Map.Entry<TranslationCacheKey, String> eldest = iterator.next();
+      this.weight -= weightOf(eldest.getKey(), eldest.getValue());
+      iterator.remove();
+      this.evictionCount.incrementAndGet();
+    }
+  }
+
+  private static long weightOf(final TranslationCacheKey key, final String translation) {
+    return key.getWeight() + translation.length();
+  }
+
+  private static String join(final CompletableFuture<String> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Objects;
+import eu.europa.ted.efx.interfaces.TranslatorDependencyFactory;
+import eu.europa.ted.efx.interfaces.TranslatorOptions;
+import eu.europa.ted.efx.model.DecimalFormat;
+
+/**
+ * Identifies a translation in a {@link TranslationCache}.
+ * 
+ * The key captures everything that determines the output of a translation: the kind of input
+ * (expression, template or template module), the {@link TranslatorDependencyFactory} that provides
+ * the target language, the SDK version, the qualifier, the translator options, the EFX source and
+ * the values of its parameters. Translator options are captured as a fingerprint string, so the
+ * key does not keep a reference to (possibly mutable) options objects.
+ * 
+ * Keys are equal only if they were created with the same dependency factory instance, as two
+ * instances of the same factory class can be configured differently. The {@link #digest()} used by
+ * persistent stores cannot refer to instances, so it relies on
+ * {@link TranslatorDependencyFactory#getCacheIdentity()} instead.
+ */
+public final class TranslationCacheKey {
+
+  public enum Kind {
+    EXPRESSION, TEMPLATE, TEMPLATE_MODULE
+  }
+
+  private final Kind kind;
+  private final TranslatorDependencyFactory dependencyFactory;
+  private final String cacheIdentity;
+  private final String sdkVersion;
+  private final String qualifier;
+  private final String options;
+  private final String source;
+  private final List<String> parameters;
+  private final int hashCode;
+  private volatile byte[] digest;
+
+  public TranslationCacheKey(final Kind kind, final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String qualifier, final TranslatorOptions options,
+      final String source, final String... parameters) {
+    this(kind, dependencyFactory, sdkVersion, qualifier, fingerprint(options), source,
+        List.of(parameters.clone()));
+  }
+
+  TranslationCacheKey(final Kind kind, final TranslatorDependencyFactory dependencyFactory,
+      final String sdkVersion, final String qualifier, final String options, final String source,
+      final List<String> parameters) {
+    this.kind = Objects.requireNonNull(kind);
+    this.dependencyFactory = Objects.requireNonNull(dependencyFactory);
+    this.cacheIdentity = Objects.requireNonNull(dependencyFactory.getCacheIdentity());
+    this.sdkVersion = Objects.requireNonNull(sdkVersion);
+    this.qualifier = qualifier == null ? "" : qualifier;
+    this.options = Objects.requireNonNull(options);
+    this.source = Objects.requireNonNull(source);
+    this.parameters = List.copyOf(parameters);
+    this.hashCode = Objects.hash(this.kind, System.identityHashCode(this.dependencyFactory),
+        this.sdkVersion,
+        this.qualifier, this.options, this.source, this.parameters);
+  }
+
+  /**
+   * Builds a string that identifies the given translator options by value: the decimal format
+   * symbols and the languages, in order.
+   * 
+   * @param options The translator options.
+   * @return A string that is equal for any two equivalent sets of options.
+   */
+  public static String fingerprint(final TranslatorOptions options) {
+    final DecimalFormat format = options.getDecimalFormat();
+    return new StringBuilder()
+        .append(format.getDecimalSeparator())
+        .append(format.getGroupingSeparator())
+        .append(format.getMinusSign())
+        .append(format.getPercent())
+        .append(format.getPerMill())
+        .append(format.getZeroDigit())
+        .append(format.getDigit())
+        .append(format.getPatternSeparator())
+        .append('|').append(format.getInfinity())
+        .append('|').append(format.getNaN())
+        .append('|').append(format.getExponentSeparator())
+        .append('|').append(String.join(",", options.getAllLanguage2LetterCodes()))
+        .toString();
+  }
+
+  public Kind getKind() {
+    return this.kind;
+  }
+
+  public TranslatorDependencyFactory getDependencyFactory() {
+    return this.dependencyFactory;
+  }
+
+  public String getCacheIdentity() {
+    return this.cacheIdentity;
+  }
+
+  public String getSdkVersion() {
+    return this.sdkVersion;
+  }
+
+  public String getQualifier() {
+    return this.qualifier;
+  }
+
+  public String getOptions() {
+    return this.options;
+  }
+
+  public String getSource() {
+    return this.source;
+  }
+
+  public List<String> getParameters() {
+    return this.parameters;
+  }
+
+  /**
+   * @return The approximate size of the key in characters. Used by the cache for weight-based
+   *         eviction.
+   */
+  public long getWeight() {
+    long weight = this.source.length();
+    for (String parameter : this.parameters) {
+      weight += parameter.length();
+    }
+    return weight;
+  }
+
+  /**
+   * Computes a SHA-256 digest of the key. Unlike {@link #hashCode()}, the digest is stable across
+   * JVM instances, so it can be used to identify translations in a persistent
+   * {@link TranslationStore}. The dependency factory is identified by its
+   * {@link TranslatorDependencyFactory#getCacheIdentity() cache identity}.
+   * 
+   * @return A 32 byte digest of all the components of the key.
+   */
+  public byte[] digest() {
+    byte[] result = this.digest;
+    if (result == null) {
+      final MessageDigest messageDigest = Digests.newSha256();
+      Digests.update(messageDigest, this.kind.name());
+      Digests.update(messageDigest, this.cacheIdentity);
+      Digests.update(messageDigest, this.sdkVersion);
+      Digests.update(messageDigest, this.qualifier);
+      Digests.update(messageDigest, this.options);
+      Digests.update(messageDigest, this.source);
+      for (String parameter : this.parameters) {
+        Digests.update(messageDigest, parameter);
+      }
+      result = messageDigest.digest();
+      this.digest = result;
+    }
+    return result.clone();
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hashCode;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    TranslationCacheKey other = (TranslationCacheKey) obj;
+    return this.hashCode == other.hashCode
+        && this.kind == other.kind
+        && this.dependencyFactory == other.dependencyFactory
+        && this.sdkVersion.equals(other.sdkVersion)
+        && this.qualifier.equals(other.qualifier)
+        && this.options.equals(other.options)
+        && this.source.equals(other.source)
+        && this.parameters.equals(other.parameters);
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.cache;
+
+/**
+ * A second-level store for translations, consulted by {@link TranslationCache} when a translation
+ * is not found in memory, and before the EFX source is translated.
+ * 
+ * Implementations typically persist translations outside of the JVM, so that they survive a
+ * restart or can be shared between processes. They must be thread-safe.
+ * 
+ * Implementations should not throw exceptions for translations they cannot find. Any runtime
+ * exception they throw is logged by the {@link TranslationCache} and otherwise ignored, so a
+ * failing store never prevents a translation.
+ */
+public interface TranslationStore {
+
+  /**
+   * @param key Identifies the translation.
+   * @return The stored translation, or null if the store does not contain the key.
+   */
+  String get(TranslationCacheKey key);
+
+  /**
+   * Stores a translation. Storing a key that is already present has no effect.
+   * 
+   * @param key Identifies the translation.
+   * @param translation The translation.
+   */
+  void put(TranslationCacheKey key, String translation);
+}
@@ -51,4 +51,16 @@ public class EfxTranslatorFactory extends SdkComponentFactory {
         SdkComponentType.EFX_TEMPLATE_TRANSLATOR, qualifier, EfxTemplateTranslator.class,
         markupGenerator, symbolResolver, scriptGenerator, factory.createErrorListener());
   }
+
+  /**
+   * Gets an EFX template translator that can only be used to validate the syntax of expressions
+   * and templates (see {@link EfxTemplateTranslator#validateTemplateSyntax(String)}). It has no
+   * symbol resolver, script generator or markup generator, so no SDK metadata is loaded.
+   */
+  public static EfxTemplateTranslator getEfxSyntaxValidator(final String sdkVersion)
+      throws InstantiationException {
+    return EfxTranslatorFactory.INSTANCE.getComponentImpl(sdkVersion,
+        SdkComponentType.EFX_TEMPLATE_TRANSLATOR, "", EfxTemplateTranslator.class, null, null,
+        null, null);
+  }
 }
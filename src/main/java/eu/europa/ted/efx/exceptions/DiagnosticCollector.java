@@ -0,0 +1,80 @@
+package eu.europa.ted.efx.exceptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import eu.europa.ted.efx.Diagnostic;
+
+/**
+ * An error listener that records syntax errors instead of throwing them. The lexer and the parser
+ * then recover from each error and go on, so that all the syntax errors of the input are reported
+ * in a single pass.
+ * 
+ * Instances are not thread-safe.
+ */
+public class DiagnosticCollector extends BaseErrorListener {
+
+  private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+  private Diagnostic.Kind kind = Diagnostic.Kind.SYNTAX;
+
+  /**
+   * The lexer or parser that reported the last diagnostic.
+   */
+  private Recognizer<?, ?> lastRecognizer;
+
+  @Override
+  public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+      int charPositionInLine, String msg, RecognitionException e) {
+    final Diagnostic diagnostic = new Diagnostic(this.kind, line, charPositionInLine, msg);
+
+    // When recovering, nested rules can report the same error again. The last report comes from
+    // the innermost rule, and is the most specific. The lexer and the parser share this listener,
+    // though, and an error of each at the same position are two different errors.
+    final int last = this.diagnostics.size() - 1;
+    if (last >= 0 && recognizer == this.lastRecognizer
+        && this.diagnostics.get(last).getLine() == line
+        && this.diagnostics.get(last).getColumn() == charPositionInLine) {
+      this.diagnostics.set(last, diagnostic);
+    } else {
+      this.diagnostics.add(diagnostic);
+    }
+    this.lastRecognizer = recognizer;
+  }
+
+  /**
+   * Sets the kind of the errors reported from now on. Errors found when parsing the input again
+   * with type casts inserted are type errors rather than syntax errors.
+   * 
+   * @param kind The kind of the errors reported from now on, until {@link #clear()} is called.
+   */
+  public void reportAs(final Diagnostic.Kind kind) {
+    this.kind = kind;
+  }
+
+  public void add(final Diagnostic diagnostic) {
+    this.diagnostics.add(diagnostic);
+    this.lastRecognizer = null;
+  }
+
+  public boolean hasDiagnostics() {
+    return !this.diagnostics.isEmpty();
+  }
+
+  /**
+   * @return A copy of the diagnostics recorded so far, in the order they were recorded.
+   */
+  public List<Diagnostic> getDiagnostics() {
+    return Collections.unmodifiableList(new ArrayList<>(this.diagnostics));
+  }
+
+  public void clear() {
+    this.diagnostics.clear();
+    this.kind = Diagnostic.Kind.SYNTAX;
+    this.lastRecognizer = null;
+  }
+}
@@ -0,0 +1,34 @@
+package eu.europa.ted.efx.exceptions;
+
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Thrown when the EFX being translated is in error: an unknown symbol, a type mismatch, an
+ * undeclared variable etc.
+ *
+ * It extends the {@link ParseCancellationException} that the translators have always thrown, so
+ * existing callers keep catching it. Like {@link TranslationCancelledException}, it does not
+ * capture a stack trace: it reports a problem with the input rather than with the code, and
+ * diagnostics can raise it for every expression of a large batch.
+ */
+public class EfxTranslationException extends ParseCancellationException {
+
+  private static final long serialVersionUID = 1L;
+
+  public EfxTranslationException(final String message) {
+    super(message);
+  }
+
+  public EfxTranslationException(final Throwable cause) {
+    super(cause);
+  }
+
+  /**
+   * ParseCancellationException has no constructor that disables the stack trace, so it is skipped
+   * here instead.
+   */
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,30 @@
+package eu.europa.ted.efx.exceptions;
+
+/**
+ * Thrown when a translation is aborted because its
+ * {@link eu.europa.ted.efx.parsing.CancellationToken} was cancelled or its deadline passed.
+ * 
+ * Unlike the {@link org.antlr.v4.runtime.misc.ParseCancellationException} thrown for syntax
+ * errors, it says nothing about the EFX being translated: the same input may translate fine when
+ * given more time.
+ */
+public class TranslationCancelledException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final boolean deadlineExceeded;
+
+  public TranslationCancelledException(final boolean deadlineExceeded) {
+    super(deadlineExceeded ? "Translation deadline exceeded." : "Translation cancelled.", null,
+        false, false);
+    this.deadlineExceeded = deadlineExceeded;
+  }
+
+  /**
+   * @return True if the translation was aborted because its deadline passed, false if it was
+   *         cancelled explicitly.
+   */
+  public boolean isDeadlineExceeded() {
+    return this.deadlineExceeded;
+  }
+}
@@ -14,11 +14,24 @@
 
 package eu.europa.ted.efx.interfaces;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import eu.europa.ted.efx.Diagnostic;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.FieldPresenceCondition;
+
 /**
  * Defines the API of an EFX expression translator.
  * 
  * Note that the behaviour of the translator is defined once during its instantiation using a
  * TranslatorDependencyFactory.
+ * 
+ * Translating does not change the state of the translator. The same instance can therefore be used
+ * for any number of translations, and it can be shared between threads as long as the dependencies
+ * it was created with are thread-safe.
  */
 public interface EfxExpressionTranslator {
 
@@ -30,4 +43,138 @@ public interface EfxExpressionTranslator {
    * @return The translated expression in the target script language.
    */
   String translateExpression(final String expression, final String... expressionParameters);
+
+  /**
+   * Translates the given EFX expressions, none of which expects parameters.
+   * 
+   * @param expressions The EFX expressions to be translated.
+   * @return One result per expression, in the same order. A failure to translate one expression
+   *         does not prevent the translation of the others.
+   */
+  default List<TranslationResult> translateExpressions(final List<String> expressions) {
+    return this.translateExpressions(expressions,
+        Collections.nCopies(expressions.size(), new String[0]));
+  }
+
+  /**
+   * Translates the given EFX expressions. Implementations may reuse lexers, parsers and other
+   * resources across the batch, which is cheaper than translating expressions one by one.
+   * 
+   * @param expressions The EFX expressions to be translated.
+   * @param expressionParameters The parameter values of each expression, in the same order as the
+   *        expressions.
+   * @return One result per expression, in the same order. A failure to translate one expression
+   *         does not prevent the translation of the others.
+   */
+  default List<TranslationResult> translateExpressions(final List<String> expressions,
+      final List<String[]> expressionParameters) {
+    if (expressions.size() != expressionParameters.size()) {
+      throw new IllegalArgumentException(
+          "The number of parameter lists must match the number of expressions.");
+    }
+    final List<TranslationResult> results = new ArrayList<>(expressions.size());
+    for (int i = 0; i < expressions.size(); i++) {
+      final String expression = expressions.get(i);
+      try {
+        results.add(TranslationResult.success(expression,
+            this.translateExpression(expression, expressionParameters.get(i))));
+      } catch (RuntimeException e) {
+        results.add(TranslationResult.failure(expression, e));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Translates the given EFX expression, reporting the errors found as diagnostics instead of
+   * throwing them.
+   * 
+   * Translators that support it report all the syntax errors of the expression, and do so without
+   * throwing any exception. If the expression is syntactically valid, translation stops at the
+   * first semantic error (an unknown symbol or a type mismatch, for instance). The default
+   * implementation reports the first error only.
+   * 
+   * @param expression A string containing the EFX expression to be checked.
+   * @param expressionParameters The values of any parameters that the given expression expects.
+   * @return The translation, or the diagnostics that prevented it.
+   */
+  default TranslationResult checkExpression(final String expression,
+      final String... expressionParameters) {
+    try {
+      return TranslationResult.success(expression,
+          this.translateExpression(expression, expressionParameters));
+    } catch (ParseCancellationException e) {
+      return TranslationResult.failure(expression, e);
+    }
+  }
+
+  /**
+   * Checks the given EFX expressions, none of which expects parameters, as
+   * {@link #checkExpression(String, String...)} does.
+   * 
+   * @param expressions The EFX expressions to be checked.
+   * @return One result per expression, in the same order.
+   */
+  default List<TranslationResult> checkExpressions(final List<String> expressions) {
+    final List<TranslationResult> results = new ArrayList<>(expressions.size());
+    for (String expression : expressions) {
+      results.add(this.checkExpression(expression));
+    }
+    return results;
+  }
+
+  /**
+   * Checks the syntax of the given EFX expression only. The expression is lexed and parsed, but no
+   * symbol is resolved and no code is generated, so this is considerably faster than
+   * {@link #checkExpression(String, String...)} and needs neither a {@link SymbolResolver} nor a
+   * {@link ScriptGenerator}.
+   * 
+   * @param expression A string containing the EFX expression to be validated.
+   * @return The syntax errors found, in the order they were found. Empty if the expression is
+   *         syntactically valid.
+   */
+  default List<Diagnostic> validateExpressionSyntax(final String expression) {
+    throw new UnsupportedOperationException(
+        "Syntax validation is not supported by " + this.getClass().getName());
+  }
+
+  /**
+   * Builds the canonical form of the given EFX expression: the same expression, with its layout
+   * normalised and redundant parentheses removed. Expressions that differ only in their layout have
+   * the same canonical form, and translate to equivalent code.
+   * 
+   * @param expression A string containing the EFX expression.
+   * @return The canonical form of the expression.
+   */
+  default String canonicaliseExpression(final String expression) {
+    throw new UnsupportedOperationException(
+        "Canonicalisation is not supported by " + this.getClass().getName());
+  }
+
+  /**
+   * Lists the fields, nodes, codelists, attributes, variables and external references that the
+   * given EFX expression refers to. The expression is parsed but not translated.
+   * 
+   * @param expression A string containing the EFX expression.
+   * @return The dependencies of the expression.
+   */
+  default Dependencies extractExpressionDependencies(final String expression) {
+    throw new UnsupportedOperationException(
+        "Dependency extraction is not supported by " + this.getClass().getName());
+  }
+
+  /**
+   * Derives, from the structure of the given EFX boolean expression, the fields that must be
+   * present in a notice for the expression to be true, and those that must be present for it to be
+   * false. A validator can use them to skip the rules that cannot fail on a notice, without
+   * evaluating them.
+   * 
+   * @param expression A string containing the EFX expression.
+   * @return The necessary conditions over the presence of fields.
+   * @throws UnsupportedOperationException If the translator does not implement the analysis.
+   */
+  default FieldPresenceCondition deriveFieldPresenceCondition(final String expression) {
+    throw new UnsupportedOperationException(
+        "Field presence analysis is not supported by " + this.getClass().getName());
+  }
 }
@@ -15,13 +15,27 @@ package eu.europa.ted.efx.interfaces;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import eu.europa.ted.efx.Diagnostic;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.templates.TemplateModule;
+import eu.europa.ted.efx.model.templates.TemplateTranslationState;
 
 /**
  * Defines the API of an EFX template translator.
  * 
  * Note that the behaviour of the translator is defined once during its instantiation using a
  * TranslatorDependencyFactory.
+ * 
+ * Translating does not change the state of the translator. The same instance can therefore be used
+ * for any number of translations, and it can be shared between threads as long as the dependencies
+ * it was created with are thread-safe.
  */
 public interface EfxTemplateTranslator extends EfxExpressionTranslator {
 
@@ -50,4 +64,200 @@ public interface EfxTemplateTranslator extends EfxExpressionTranslator {
    * @throws IOException If the InputStream cannot be read.
    */
   String renderTemplate(InputStream stream) throws IOException;
+
+  /**
+   * Translate the EFX template stored in the given string, reporting the errors found as
+   * diagnostics instead of throwing them.
+   * 
+   * @param template A string containing an EFX template to be checked.
+   * @return The translation, or the diagnostics that prevented it.
+   * @see EfxExpressionTranslator#checkExpression(String, String...)
+   */
+  default TranslationResult checkTemplate(String template) {
+    try {
+      return TranslationResult.success(template, renderTemplate(template));
+    } catch (ParseCancellationException e) {
+      return TranslationResult.failure(template, e);
+    }
+  }
+
+  /**
+   * Checks the syntax of the given EFX template only, without resolving any symbol or generating
+   * any markup.
+   * 
+   * @param template A string containing an EFX template to be validated.
+   * @return The syntax errors found, in the order they were found. Empty if the template is
+   *         syntactically valid.
+   * @see EfxExpressionTranslator#validateExpressionSyntax(String)
+   */
+  default List<Diagnostic> validateTemplateSyntax(final String template) {
+    throw new UnsupportedOperationException(
+        "Syntax validation is not supported by " + this.getClass().getName());
+  }
+
+  /**
+   * Lists the fields, nodes, codelists, attributes, variables and external references that the
+   * given EFX template refers to. The template is parsed but not translated.
+   * 
+   * @param template A string containing an EFX template.
+   * @return The dependencies of the template.
+   * @see EfxExpressionTranslator#extractExpressionDependencies(String)
+   */
+  default Dependencies extractTemplateDependencies(final String template) {
+    throw new UnsupportedOperationException(
+        "Dependency extraction is not supported by " + this.getClass().getName());
+  }
+
+  /**
+   * Translate the EFX template stored in a file, writing the translated template to the given
+   * output.
+   * 
+   * Translators whose {@link MarkupGenerator} is a {@link StreamingMarkupGenerator} write each
+   * fragment of the translated template as soon as it is rendered, so the translated template is
+   * never held in memory as a whole. Otherwise, this is the same as appending the result of
+   * {@link #renderTemplate(Path)} to the output.
+   * 
+   * @param pathname The path and filename of the EFX template file to translate.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the file cannot be read or the output cannot be written.
+   */
+  default void renderTemplate(Path pathname, Appendable output) throws IOException {
+    output.append(renderTemplate(pathname));
+  }
+
+  /**
+   * Translate the EFX template stored in the given string, writing the translated template to the
+   * given output.
+   * 
+   * @param template A string containing an EFX template to be translated.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the output cannot be written.
+   * @see #renderTemplate(Path, Appendable)
+   */
+  default void renderTemplate(String template, Appendable output) throws IOException {
+    output.append(renderTemplate(template));
+  }
+
+  /**
+   * Translate the EFX template given as an InputStream, writing the translated template to the
+   * given output.
+   * 
+   * @param stream An InputStream with the EFX template to be translated.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the InputStream cannot be read or the output cannot be written.
+   * @see #renderTemplate(Path, Appendable)
+   */
+  default void renderTemplate(InputStream stream, Appendable output) throws IOException {
+    output.append(renderTemplate(stream));
+  }
+
+  /**
+   * Translate the EFX template read from the given reader, one top-level block at a time, writing
+   * the translated template to the given output.
+   * 
+   * Translators that support it read, parse and translate each top-level block of the template
+   * (a line without indentation, together with the lines nested under it) separately, and discard
+   * it before moving to the next one. Memory use then depends on the size of the largest block
+   * rather than on the size of the template. Combined with a {@link StreamingMarkupGenerator}, the
+   * translated blocks are also written out as soon as they are translated.
+   * 
+   * The default implementation reads the whole template and translates it at once.
+   * 
+   * @param template A reader with the EFX template to be translated.
+   * @param output The sink the translated template is written to.
+   * @throws IOException If the reader cannot be read or the output cannot be written.
+   */
+  default void renderTemplateIncrementally(Reader template, Appendable output)
+      throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    final char[] buffer = new char[8192];
+    for (int read = template.read(buffer); read >= 0; read = template.read(buffer)) {
+      sb.append(buffer, 0, read);
+    }
+    renderTemplate(sb.toString(), output);
+  }
+
+  /**
+   * Translate the EFX template stored in the given string, using the given executor to translate
+   * parts of it concurrently.
+   * 
+   * Translators that support it translate the top-level blocks of the template (a line without
+   * indentation, together with the lines nested under it) concurrently, each with a translator of
+   * its own, and combine them into the same output a sequential translation would produce. The
+   * default implementation translates the template sequentially, in the calling thread.
+   * 
+   * @param template A string containing an EFX template to be translated.
+   * @param executor The executor that runs the translations of the blocks.
+   * @return A string containing the translated template.
+   */
+  default String renderTemplateInParallel(String template, Executor executor) {
+    return renderTemplate(template);
+  }
+
+  /**
+   * Translate an EFX template that is about to be edited. The returned state holds the translation
+   * and can be passed to {@link #translateEdit} to translate the template again after an edit.
+   * 
+   * @param template A string containing an EFX template to be translated.
+   * @return The translation, together with what is needed to translate edits efficiently.
+   */
+  default TemplateTranslationState translateForEditing(String template) {
+    return new TemplateTranslationState(TemplateTranslationState.splitLines(template),
+        renderTemplate(template));
+  }
+
+  /**
+   * Translate an EFX template after replacing some of its lines.
+   * 
+   * Translators that support it only translate again the top-level blocks of the template that
+   * are affected by the edit, and reuse the translation of the other blocks from the previous
+   * state. The default implementation translates the whole edited template.
+   * 
+   * @param previous The state returned by the previous translation of the template, before the
+   *        edit.
+   * @param firstLine The first line to replace, starting from 1.
+   * @param lastLine The last line to replace. Use firstLine - 1 to insert lines without replacing
+   *        any.
+   * @param text The text that replaces the lines. An empty text removes them.
+   * @return The translation of the edited template, together with what is needed to translate
+   *         further edits. If the translation fails, the previous state remains valid.
+   */
+  default TemplateTranslationState translateEdit(TemplateTranslationState previous, int firstLine,
+      int lastLine, String text) {
+    final List<String> lines = previous.applyEdit(firstLine, lastLine, text);
+    return new TemplateTranslationState(lines,
+        renderTemplate(TemplateTranslationState.joinLines(lines)));
+  }
+
+  /**
+   * Translate an EFX template as a module, to be linked with other modules by
+   * {@link #linkTemplateModules(List)}.
+   * 
+   * The translation of a module depends only on its name and its source, so modules can be cached
+   * and translated again only when their source changes. The default implementation throws an
+   * {@link UnsupportedOperationException}.
+   * 
+   * @param name The name of the module. Its fragment names start with it.
+   * @param template A string containing the EFX template of the module.
+   * @return The translated module.
+   * @throws IllegalArgumentException If the name cannot be used as a module name.
+   */
+  default TemplateModule compileTemplateModule(String name, String template) {
+    throw new UnsupportedOperationException(
+        "This translator does not support template modules.");
+  }
+
+  /**
+   * Compose an output file from template modules translated by
+   * {@link #compileTemplateModule(String, String)}. The top-level blocks of the modules are
+   * rendered in the order of the modules.
+   * 
+   * @param modules The modules to link. Their names must be distinct.
+   * @return A string containing the translated template.
+   * @throws IllegalArgumentException If two modules have the same name.
+   */
+  default String linkTemplateModules(List<TemplateModule> modules) {
+    throw new UnsupportedOperationException(
+        "This translator does not support template modules.");
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.interfaces;
+
+import java.io.IOException;
+import java.util.List;
+
+import eu.europa.ted.efx.model.templates.Markup;
+
+/**
+ * A {@link MarkupGenerator} that can write the target template file to an {@link Appendable}
+ * piece by piece, instead of composing it as a whole with
+ * {@link MarkupGenerator#composeOutputFile(List, List)}.
+ * 
+ * The template translator calls {@link #beginOutputFile(Appendable)} once, then
+ * {@link #writeFragmentDefinition(Markup, Appendable)} for every fragment as soon as it is
+ * rendered, and finally {@link #endOutputFile(List, Appendable)} with the body of the template.
+ * Fragments therefore never need to be held in memory all at once.
+ */
+public interface StreamingMarkupGenerator extends MarkupGenerator {
+
+  /**
+   * Writes whatever the target template file needs before the fragment definitions.
+   * 
+   * @param output the sink of the target template file.
+   * @throws IOException if the output cannot be written.
+   */
+  void beginOutputFile(final Appendable output) throws IOException;
+
+  /**
+   * Writes a fragment definition, as returned by
+   * {@link MarkupGenerator#composeFragmentDefinition}, to the target template file.
+   * 
+   * @param fragment the fragment definition to write.
+   * @param output the sink of the target template file.
+   * @throws IOException if the output cannot be written.
+   */
+  void writeFragmentDefinition(final Markup fragment, final Appendable output) throws IOException;
+
+  /**
+   * Writes the body (main content) of the template, and whatever the target template file needs
+   * after it.
+   * 
+   * @param content the body (main content) of the template.
+   * @param output the sink of the target template file.
+   * @throws IOException if the output cannot be written.
+   */
+  void endOutputFile(final List<Markup> content, final Appendable output) throws IOException;
+}
@@ -86,4 +86,18 @@ public interface TranslatorDependencyFactory {
    * @return The error listener to be used by the EFX translator.
    */
   public BaseErrorListener createErrorListener();
+
+  /**
+   * Identifies the translations produced with this factory in a persistent translation store.
+   * 
+   * In memory, translations are cached per factory instance. A persistent store outlives the
+   * instances, so it identifies them with this string instead: two factories with the same cache
+   * identity are assumed to produce the same translations. Factories whose output depends on how
+   * they are configured should include that configuration in their cache identity.
+   * 
+   * @return The class name of the factory, by default.
+   */
+  public default String getCacheIdentity() {
+    return this.getClass().getName();
+  }
 }
@@ -7,6 +7,7 @@ import java.util.Stack;
 
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.model.expressions.Expression;
 import eu.europa.ted.efx.model.expressions.TypedExpression;
 import eu.europa.ted.efx.model.types.EfxDataType;
@@ -74,7 +75,7 @@ public class CallStack {
         }
       }
 
-      throw new ParseCancellationException(
+      throw new EfxTranslationException(
           String.format(TYPE_MISMATCH, expectedType.getSimpleName(), actualType.getSimpleName()));
     }
 
@@ -128,7 +129,7 @@ public class CallStack {
     // be passed to the next frame on the stack.
     if (droppedFrame.size() > 0) {
       if (this.frames.empty()) {
-        throw new ParseCancellationException(STACK_UNDERFLOW);
+        throw new EfxTranslationException(STACK_UNDERFLOW);
       }
       this.frames.peek().addAll(droppedFrame);
     }
@@ -141,7 +142,7 @@ public class CallStack {
    */
   public void declareIdentifier(Identifier identifier) {
     if (this.inScope(identifier.name)) {
-      throw new ParseCancellationException(IDENTIFIER_ALREADY_DECLARED + identifier.name);
+      throw new EfxTranslationException(IDENTIFIER_ALREADY_DECLARED + identifier.name);
     }
     this.frames.peek().declareIdentifier(identifier);
   }
@@ -205,7 +206,7 @@ public class CallStack {
   public Class<? extends EfxDataType> getTypeOfIdentifier(String identifierName) {
     Optional<Identifier> identifier = this.getIdentifier(identifierName);
     if (!identifier.isPresent()) {
-      throw new ParseCancellationException(UNDECLARED_IDENTIFIER + identifierName);
+      throw new EfxTranslationException(UNDECLARED_IDENTIFIER + identifierName);
     }
     return identifier.get().dataType;
   }
@@ -224,7 +225,7 @@ public class CallStack {
         () -> getIdentifier(identifierName).ifPresentOrElse(
             variable -> this.push(variable.referenceExpression),
             () -> {
-              throw new ParseCancellationException(UNDECLARED_IDENTIFIER + identifierName);
+              throw new EfxTranslationException(UNDECLARED_IDENTIFIER + identifierName);
             }));
   }
 
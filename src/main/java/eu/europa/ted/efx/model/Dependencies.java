@@ -0,0 +1,105 @@
+package eu.europa.ted.efx.model;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The SDK entities and variables that an EFX expression or template refers to.
+ *
+ * Fields and nodes of the notice being processed are kept apart from those of other notices
+ * (referenced with {@code notice(...)/}), which are listed as external references. Attributes are
+ * listed as EFX attribute references, i.e. {@code BT-00-Text/@attribute}; their field is listed as
+ * a field too. Variables are listed by name, without the {@code $} prefix, and include parameters.
+ *
+ * All the sets are sorted, so that equal dependencies are also listed in the same order.
+ */
+public class Dependencies {
+
+  private final Set<String> fieldIds = new TreeSet<>();
+  private final Set<String> nodeIds = new TreeSet<>();
+  private final Set<String> codelists = new TreeSet<>();
+  private final Set<String> attributes = new TreeSet<>();
+  private final Set<String> variables = new TreeSet<>();
+  private final Set<String> externalReferences = new TreeSet<>();
+
+  public void addFieldId(final String fieldId) {
+    this.fieldIds.add(fieldId);
+  }
+
+  public void addNodeId(final String nodeId) {
+    this.nodeIds.add(nodeId);
+  }
+
+  public void addCodelist(final String codelist) {
+    this.codelists.add(codelist);
+  }
+
+  public void addAttribute(final String fieldId, final String attributeName) {
+    this.attributes.add(fieldId + "/@" + attributeName);
+  }
+
+  public void addVariable(final String variableName) {
+    this.variables.add(variableName);
+  }
+
+  /**
+   * @param id The identifier of a field or node of another notice.
+   */
+  public void addExternalReference(final String id) {
+    this.externalReferences.add(id);
+  }
+
+  public Set<String> getFieldIds() {
+    return Collections.unmodifiableSet(this.fieldIds);
+  }
+
+  public Set<String> getNodeIds() {
+    return Collections.unmodifiableSet(this.nodeIds);
+  }
+
+  public Set<String> getCodelists() {
+    return Collections.unmodifiableSet(this.codelists);
+  }
+
+  public Set<String> getAttributes() {
+    return Collections.unmodifiableSet(this.attributes);
+  }
+
+  public Set<String> getVariables() {
+    return Collections.unmodifiableSet(this.variables);
+  }
+
+  public Set<String> getExternalReferences() {
+    return Collections.unmodifiableSet(this.externalReferences);
+  }
+
+  @Override
+  public String toString() {
+    return "fields=" + this.fieldIds + ", nodes=" + this.nodeIds + ", codelists=" + this.codelists
+        + ", attributes=" + this.attributes + ", variables=" + this.variables + ", external="
+        + this.externalReferences;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.fieldIds, this.nodeIds, this.codelists, this.attributes,
+        this.variables, this.externalReferences);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    Dependencies other = (Dependencies) obj;
+    return this.fieldIds.equals(other.fieldIds) && this.nodeIds.equals(other.nodeIds)
+        && this.codelists.equals(other.codelists) && this.attributes.equals(other.attributes)
+        && this.variables.equals(other.variables)
+        && this.externalReferences.equals(other.externalReferences);
+  }
+}
@@ -0,0 +1,83 @@
+package eu.europa.ted.efx.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the fields of an SDK, so that sets of fields can be represented as bitmaps.
+ *
+ * The bit of a field is its position in the list the index is created with, so the list should
+ * come in a stable order (e.g. the order of the fields in the SDK) for bitmaps to be kept across
+ * runs. A validator can build the bitmap of the fields present in a notice once, and test it
+ * against the bitmap of each {@link FieldPresenceCondition} with {@link #containsAll}.
+ *
+ * Instances are immutable.
+ */
+public final class FieldIndex {
+
+  private final Map<String, Integer> bits;
+
+  /**
+   * @param fieldIds The identifiers of the fields, in the order of their bits.
+   * @throws IllegalArgumentException if a field is listed twice.
+   */
+  public FieldIndex(final List<String> fieldIds) {
+    final Map<String, Integer> bits = new HashMap<>(fieldIds.size() * 2);
+    for (String fieldId : fieldIds) {
+      if (bits.putIfAbsent(fieldId, bits.size()) != null) {
+        throw new IllegalArgumentException(String.format("Field '%s' is listed twice.", fieldId));
+      }
+    }
+    this.bits = Collections.unmodifiableMap(bits);
+  }
+
+  public int size() {
+    return this.bits.size();
+  }
+
+  /**
+   * @param fieldId The identifier of a field.
+   * @return The bit of the field, or -1 if the field is not in the index.
+   */
+  public int bitOf(final String fieldId) {
+    return this.bits.getOrDefault(fieldId, -1);
+  }
+
+  /**
+   * Builds the bitmap of the given fields. Fields that are not in the index have no bit and are
+   * left out.
+   *
+   * @param fieldIds The identifiers of the fields.
+   * @return A new bitmap with the bits of the given fields set.
+   */
+  public BitSet toBitmap(final Collection<String> fieldIds) {
+    final BitSet bitmap = new BitSet(this.bits.size());
+    for (String fieldId : fieldIds) {
+      final Integer bit = this.bits.get(fieldId);
+      if (bit != null) {
+        bitmap.set(bit);
+      }
+    }
+    return bitmap;
+  }
+
+  /**
+   * Tests whether a bitmap has all the bits of another, without allocating anything.
+   *
+   * @param present The bitmap of the fields present in a notice.
+   * @param required The bitmap of the fields that a condition requires.
+   * @return True if all the required fields are present.
+   */
+  public static boolean containsAll(final BitSet present, final BitSet required) {
+    for (int bit = required.nextSetBit(0); bit >= 0; bit = required.nextSetBit(bit + 1)) {
+      if (!present.get(bit)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
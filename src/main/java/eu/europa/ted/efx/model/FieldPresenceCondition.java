@@ -0,0 +1,105 @@
+package eu.europa.ted.efx.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A necessary condition, over the presence of fields in a notice, for an EFX boolean expression to
+ * evaluate to true, and another one for it to evaluate to false.
+ *
+ * Each condition is a set of fields that must all be present in the notice. If one of them is
+ * missing, the expression cannot have the corresponding value, so there is no need to evaluate it:
+ * a rule asserting the expression cannot fail when a field of {@link #getRequiredWhenFalse()} is
+ * missing. The converse does not hold: the expression can still take either value when all the
+ * fields are present.
+ *
+ * The conditions are derived from the structure of the expression only, so they are conservative:
+ * an empty set means that nothing is known. Fields of other notices are never required.
+ *
+ * Instances are immutable.
+ */
+public final class FieldPresenceCondition {
+
+  public static final FieldPresenceCondition UNKNOWN =
+      new FieldPresenceCondition(Collections.emptySet(), Collections.emptySet());
+
+  private final Set<String> requiredWhenTrue;
+  private final Set<String> requiredWhenFalse;
+
+  /**
+   * @param requiredWhenTrue The fields that must be present for the expression to be true.
+   * @param requiredWhenFalse The fields that must be present for the expression to be false.
+   */
+  public FieldPresenceCondition(final Collection<String> requiredWhenTrue,
+      final Collection<String> requiredWhenFalse) {
+    this.requiredWhenTrue = Collections.unmodifiableSet(new TreeSet<>(requiredWhenTrue));
+    this.requiredWhenFalse = Collections.unmodifiableSet(new TreeSet<>(requiredWhenFalse));
+  }
+
+  public Set<String> getRequiredWhenTrue() {
+    return this.requiredWhenTrue;
+  }
+
+  public Set<String> getRequiredWhenFalse() {
+    return this.requiredWhenFalse;
+  }
+
+  /**
+   * @param index The index numbering the fields of the SDK.
+   * @return The bitmap of the fields that must be present for the expression to be true.
+   */
+  public BitSet getRequiredWhenTrue(final FieldIndex index) {
+    return index.toBitmap(this.requiredWhenTrue);
+  }
+
+  /**
+   * @param index The index numbering the fields of the SDK.
+   * @return The bitmap of the fields that must be present for the expression to be false.
+   */
+  public BitSet getRequiredWhenFalse(final FieldIndex index) {
+    return index.toBitmap(this.requiredWhenFalse);
+  }
+
+  /**
+   * @param presentFieldIds The fields present in a notice.
+   * @return False if the expression is certainly not true for the notice.
+   */
+  public boolean canBeTrue(final Set<String> presentFieldIds) {
+    return presentFieldIds.containsAll(this.requiredWhenTrue);
+  }
+
+  /**
+   * @param presentFieldIds The fields present in a notice.
+   * @return False if the expression is certainly not false for the notice.
+   */
+  public boolean canBeFalse(final Set<String> presentFieldIds) {
+    return presentFieldIds.containsAll(this.requiredWhenFalse);
+  }
+
+  @Override
+  public String toString() {
+    return "whenTrue=" + this.requiredWhenTrue + ", whenFalse=" + this.requiredWhenFalse;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.requiredWhenTrue, this.requiredWhenFalse);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    FieldPresenceCondition other = (FieldPresenceCondition) obj;
+    return this.requiredWhenTrue.equals(other.requiredWhenTrue)
+        && this.requiredWhenFalse.equals(other.requiredWhenFalse);
+  }
+}
@@ -2,8 +2,7 @@ package eu.europa.ted.efx.model.expressions;
 
 import java.lang.reflect.Constructor;
 
-import org.antlr.v4.runtime.misc.ParseCancellationException;
-
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.model.ParsedEntity;
 
 public interface Expression extends ParsedEntity {
@@ -30,7 +29,7 @@ public interface Expression extends ParsedEntity {
         return constructor.newInstance(script);
       }
     } catch (Exception e) {
-      throw new ParseCancellationException(e);
+      throw new EfxTranslationException(e);
     }
   }
 
@@ -1,16 +1,16 @@
 package eu.europa.ted.efx.model.templates;
 
-import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.lang3.tuple.Pair;
 
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.interfaces.MarkupGenerator;
 import eu.europa.ted.efx.model.Context;
 import eu.europa.ted.efx.model.variables.Variable;
@@ -25,10 +25,16 @@ public class ContentBlock {
   private final Queue<ContentBlock> children = new LinkedList<>();
   private final int number;
   private final VariableList variables;
+  private int childCount = 0;
+  private int maxChildNumber = 0;
 
   private ContentBlock() {
+    this("block");
+  }
+
+  private ContentBlock(final String id) {
     this.parent = null;
-    this.id = "block";
+    this.id = id;
     this.indentationLevel = -1;
     this.content = new Markup("");
     this.context = null;
@@ -51,24 +57,58 @@ public class ContentBlock {
     return new ContentBlock();
   }
 
+  /**
+   * Creates a root block whose children are identified by the given prefix instead of "block".
+   * 
+   * @param id the prefix of the identifiers of the children of the root block.
+   * @return the new root block.
+   */
+  public static ContentBlock newRootBlock(final String id) {
+    return new ContentBlock(id);
+  }
+
+  /**
+   * Creates a root block that continues the numbering of another root block, whose children have
+   * been released.
+   * 
+   * @param childCount the number of children added to the other root block.
+   * @param maxChildNumber the highest outline number of the children of the other root block.
+   * @return the new root block.
+   */
+  public static ContentBlock newRootBlock(final int childCount, final int maxChildNumber) {
+    final ContentBlock rootBlock = new ContentBlock();
+    rootBlock.childCount = childCount;
+    rootBlock.maxChildNumber = maxChildNumber;
+    return rootBlock;
+  }
+
   public ContentBlock addChild(final int number, final Markup content, final Context context,
       final VariableList variables) {
     // number < 0 means "autogenerate", number == 0 means "no number", number > 0 means "use this
     // number"
-    final int outlineNumber = number >= 0 ? number
-        : children.stream().map(b -> b.number).max(Comparator.naturalOrder()).orElse(0) + 1;
+    final int outlineNumber = number >= 0 ? number : this.maxChildNumber + 1;
 
-    String newBlockId = String.format("%s%02d", this.id, this.children.size() + 1);
+    String newBlockId = String.format("%s%02d", this.id, ++this.childCount);
     ContentBlock newBlock =
         new ContentBlock(this, newBlockId, outlineNumber, content, context, variables);
     this.children.add(newBlock);
+    this.maxChildNumber = Math.max(this.maxChildNumber, outlineNumber);
     return newBlock;
   }
 
+  /**
+   * Forgets the children added so far, once they have been rendered, so that they can be garbage
+   * collected. Children added afterwards are identified and numbered as if the released children
+   * were still there.
+   */
+  public void releaseChildren() {
+    this.children.clear();
+  }
+
   public ContentBlock addSibling(final int number, final Markup content, final Context context,
       final VariableList variables) {
     if (this.parent == null) {
-      throw new ParseCancellationException("Cannot add sibling to root block");
+      throw new EfxTranslationException("Cannot add sibling to root block");
     }
     return this.parent.addChild(number, content, context, variables);
   }
@@ -88,6 +128,21 @@ public class ContentBlock {
     return this.children;
   }
 
+  /**
+   * @return the number of children added to this block, including released ones.
+   */
+  public int getChildCount() {
+    return this.childCount;
+  }
+
+  /**
+   * @return the highest outline number of the children added to this block, including released
+   *         ones.
+   */
+  public int getMaxChildNumber() {
+    return this.maxChildNumber;
+  }
+
   public String getOutlineNumber() {
     if (this.number == 0 || this.children.size() == 0) {
       return "";
@@ -150,7 +205,15 @@ public class ContentBlock {
   }
 
   public void renderTemplate(MarkupGenerator markupGenerator, List<Markup> templates) {
-    templates.add(markupGenerator.composeFragmentDefinition(this.id, this.getOutlineNumber(),
+    this.renderTemplate(markupGenerator, (Consumer<Markup>) templates::add);
+  }
+
+  /**
+   * Renders the fragment definition of this block and of all the blocks nested under it, handing
+   * each one over to the given consumer as soon as it is rendered.
+   */
+  public void renderTemplate(MarkupGenerator markupGenerator, Consumer<Markup> templates) {
+    templates.accept(markupGenerator.composeFragmentDefinition(this.id, this.getOutlineNumber(),
         this.renderContent(markupGenerator), this.getTemplateParameters()));
     for (ContentBlock child : this.children) {
       child.renderTemplate(markupGenerator, templates);
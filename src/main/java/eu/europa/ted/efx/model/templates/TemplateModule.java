@@ -0,0 +1,169 @@
+package eu.europa.ted.efx.model.templates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * An EFX template translated on its own, ready to be linked with other modules into an output
+ * file.
+ *
+ * A module holds the fragment definitions of its blocks and the markup that invokes its top-level
+ * blocks from the body of the output file. The names of its fragments start with the name of the
+ * module, so that the fragments of different modules do not clash once linked. The outline
+ * numbers of its blocks do not depend on other modules either, so a module can be translated once
+ * and linked any number of times.
+ *
+ * Instances are immutable.
+ */
+public final class TemplateModule {
+
+  private static final Pattern NAME = Pattern.compile("[A-Za-z_]([A-Za-z0-9_]*[A-Za-z_])?");
+
+  private final String name;
+  private final List<Markup> invocations;
+  private final List<Markup> fragments;
+
+  /**
+   * @param name the name of the module, used as the prefix of its fragment names.
+   * @param invocations the markup that invokes the top-level blocks of the module.
+   * @param fragments the fragment definitions of the module.
+   */
+  public TemplateModule(final String name, final List<Markup> invocations,
+      final List<Markup> fragments) {
+    this.name = checkName(name);
+    this.invocations = Collections.unmodifiableList(new ArrayList<>(invocations));
+    this.fragments = Collections.unmodifiableList(new ArrayList<>(fragments));
+  }
+
+  /**
+   * Checks that the given string can be used as the name of a module: letters, digits and
+   * underscores, neither starting nor ending with a digit. As the fragment names of a module are
+   * made of its name followed by digits, the fragments of modules with different names can then
+   * never have the same name.
+   *
+   * @param name the name to check.
+   * @return the name.
+   * @throws IllegalArgumentException if the name cannot be used.
+   */
+  public static String checkName(final String name) {
+    if (name == null || !NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException(String.format("Invalid template module name '%s'.", name));
+    }
+    return name;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public List<Markup> getInvocations() {
+    return this.invocations;
+  }
+
+  public List<Markup> getFragments() {
+    return this.fragments;
+  }
+
+  // #region Serialisation ----------------------------------------------------
+
+  /**
+   * Encodes the module as a string, so that it can be kept in a
+   * {@link eu.europa.ted.efx.cache.TranslationCache}. Each part is prefixed by its length.
+   *
+   * @return a string that {@link #decode(String)} turns back into an equal module.
+   */
+  public String encode() {
+    final StringBuilder sb = new StringBuilder();
+    append(sb, this.name);
+    sb.append(this.invocations.size()).append(':');
+    for (Markup invocation : this.invocations) {
+      append(sb, invocation.script);
+    }
+    sb.append(this.fragments.size()).append(':');
+    for (Markup fragment : this.fragments) {
+      append(sb, fragment.script);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Decodes a module encoded by {@link #encode()}.
+   *
+   * @param encoded the encoded module.
+   * @return the module.
+   * @throws IllegalArgumentException if the string is not an encoded module.
+   */
+  public static TemplateModule decode(final String encoded) {
+    final int[] position = {0};
+    try {
+      final String name = take(encoded, position);
+      final List<Markup> invocations = new ArrayList<>();
+      for (int i = takeLength(encoded, position); i > 0; i--) {
+        invocations.add(new Markup(take(encoded, position)));
+      }
+      final List<Markup> fragments = new ArrayList<>();
+      for (int i = takeLength(encoded, position); i > 0; i--) {
+        fragments.add(new Markup(take(encoded, position)));
+      }
+      if (position[0] != encoded.length()) {
+        throw new IllegalArgumentException("Unexpected data after the encoded template module.");
+      }
+      return new TemplateModule(name, invocations, fragments);
+    } catch (IndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid encoded template module.", e);
+    }
+  }
+
+  private static void append(final StringBuilder sb, final String value) {
+    sb.append(value.length()).append(':').append(value);
+  }
+
+  private static int takeLength(final String encoded, final int[] position) {
+    final int colon = encoded.indexOf(':', position[0]);
+    if (colon < 0) {
+      throw new IllegalArgumentException("Invalid encoded template module.");
+    }
+    final int length = Integer.parseInt(encoded.substring(position[0], colon));
+    position[0] = colon + 1;
+    return length;
+  }
+
+  private static String take(final String encoded, final int[] position) {
+    final int length = takeLength(encoded, position);
+    final String value = encoded.substring(position[0], position[0] + length);
+    position[0] += length;
+    return value;
+  }
+
+  // #endregion Serialisation
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.name, scripts(this.invocations), scripts(this.fragments));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    TemplateModule other = (TemplateModule) obj;
+    return this.name.equals(other.name)
+        && scripts(this.invocations).equals(scripts(other.invocations))
+        && scripts(this.fragments).equals(scripts(other.fragments));
+  }
+
+  private static List<String> scripts(final List<Markup> markup) {
+    final List<String> scripts = new ArrayList<>(markup.size());
+    for (Markup item : markup) {
+      scripts.add(item.script);
+    }
+    return scripts;
+  }
+}
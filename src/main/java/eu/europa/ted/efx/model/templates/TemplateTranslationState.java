@@ -0,0 +1,176 @@
+package eu.europa.ted.efx.model.templates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of translating a template that is being edited, kept so that the template can be
+ * translated again after an edit, reusing the parts of the translation that the edit did not
+ * affect.
+ * 
+ * Besides the lines of the template and its translation, the state holds the translation of each
+ * top-level block of the template (a line without indentation together with the lines nested
+ * under it), if the translator that produced it translates blocks separately.
+ * 
+ * Instances are immutable.
+ */
+public final class TemplateTranslationState {
+
+  /**
+   * The translation of a top-level block of the template.
+   */
+  public static final class Block {
+    private final String source;
+    private final Object entryState;
+    private final Object exitState;
+    private final List<Markup> invocations;
+    private final List<Markup> fragments;
+
+    /**
+     * @param source the lines of the block, each one followed by a line break.
+     * @param entryState the state of the translator when the block was reached. Together with the
+     *        source, it determines the translation of the block.
+     * @param exitState the state of the translator after the block was translated.
+     * @param invocations the markup that invokes the fragments of the block from the body of the
+     *        output file.
+     * @param fragments the fragment definitions of the block.
+     */
+    public Block(final String source, final Object entryState, final Object exitState,
+        final List<Markup> invocations, final List<Markup> fragments) {
+      this.source = source;
+      this.entryState = entryState;
+      this.exitState = exitState;
+      this.invocations = Collections.unmodifiableList(new ArrayList<>(invocations));
+      this.fragments = Collections.unmodifiableList(new ArrayList<>(fragments));
+    }
+
+    public String getSource() {
+      return this.source;
+    }
+
+    public Object getEntryState() {
+      return this.entryState;
+    }
+
+    public Object getExitState() {
+      return this.exitState;
+    }
+
+    public List<Markup> getInvocations() {
+      return this.invocations;
+    }
+
+    public List<Markup> getFragments() {
+      return this.fragments;
+    }
+  }
+
+  private final List<String> lines;
+  private final List<Block> blocks;
+  private final Object owner;
+  private final String translation;
+
+  /**
+   * Creates a state that holds no block translations. Editing it will translate the whole
+   * template again.
+   * 
+   * @param lines the lines of the template.
+   * @param translation the translation of the template.
+   */
+  public TemplateTranslationState(final List<String> lines, final String translation) {
+    this(lines, Collections.emptyList(), null, translation);
+  }
+
+  /**
+   * @param lines the lines of the template.
+   * @param blocks the translations of the top-level blocks of the template, in order.
+   * @param owner identifies the configuration of the translator that translated the blocks. Blocks
+   *        are only reused by translators with an equal configuration.
+   * @param translation the translation of the template.
+   */
+  public TemplateTranslationState(final List<String> lines, final List<Block> blocks,
+      final Object owner, final String translation) {
+    this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+    this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+    this.owner = owner;
+    this.translation = translation;
+  }
+
+  public List<String> getLines() {
+    return this.lines;
+  }
+
+  public List<Block> getBlocks() {
+    return this.blocks;
+  }
+
+  public Object getOwner() {
+    return this.owner;
+  }
+
+  /**
+   * @return the translated template.
+   */
+  public String getTranslation() {
+    return this.translation;
+  }
+
+  /**
+   * @return the template, each line followed by a line break.
+   */
+  public String getTemplate() {
+    return joinLines(this.lines);
+  }
+
+  /**
+   * Applies an edit to the lines of the template.
+   * 
+   * @param firstLine the first line to replace, starting from 1.
+   * @param lastLine the last line to replace. Use firstLine - 1 to insert lines before the first
+   *        line without replacing any.
+   * @param text the text that replaces the lines. An empty text removes the lines.
+   * @return the lines of the edited template.
+   */
+  public List<String> applyEdit(final int firstLine, final int lastLine, final String text) {
+    if (firstLine < 1 || lastLine < firstLine - 1 || lastLine > this.lines.size()) {
+      throw new IllegalArgumentException(String.format(
+          "Invalid line range %d-%d for a template of %d lines.", firstLine, lastLine,
+          this.lines.size()));
+    }
+    final List<String> edited = new ArrayList<>(this.lines.subList(0, firstLine - 1));
+    edited.addAll(splitLines(text));
+    edited.addAll(this.lines.subList(lastLine, this.lines.size()));
+    return edited;
+  }
+
+  /**
+   * Splits a text into lines. A line break at the end of the text does not start a new line.
+   * 
+   * @param text the text to split.
+   * @return the lines of the text, without line breaks.
+   */
+  public static List<String> splitLines(final String text) {
+    if (text.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<String> lines = new ArrayList<>(Arrays.asList(text.split("\r\n|\r|\n", -1)));
+    if (lines.get(lines.size() - 1).isEmpty()) {
+      lines.remove(lines.size() - 1);
+    }
+    return lines;
+  }
+
+  /**
+   * @param lines the lines to join.
+   * @return the lines, each one followed by a line break.
+   */
+  public static String joinLines(final List<String> lines) {
+    final StringBuilder sb = new StringBuilder();
+    for (String line : lines) {
+      sb.append(line).append('\n');
+    }
+    return sb.toString();
+  }
+}
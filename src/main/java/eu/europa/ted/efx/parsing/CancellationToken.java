@@ -0,0 +1,208 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import eu.europa.ted.efx.exceptions.TranslationCancelledException;
+
+/**
+ * Bounds the time spent translating, by cancelling the translation explicitly or when a deadline
+ * passes.
+ * 
+ * Cancellation is cooperative. While a token is bound to the current thread (see
+ * {@link #bind()}), the lexers and parsers created by the EFX translators check it as they match
+ * tokens and as they predict alternatives, including during ANTLR's full-context prediction. The
+ * parse tree walkers returned by {@link #newWalker()} check it at every node, which covers the
+ * preprocessors as well as the translation itself. A cancelled translation ends with a
+ * {@link TranslationCancelledException}.
+ * 
+ * Lexers and parsers created while no token is bound do not check anything, and translation
+ * without a token costs the same as before.
+ * 
+ * Instances are thread-safe: a token can be cancelled from any thread.
+ */
+public final class CancellationToken {
+
+  private static final ThreadLocal<CancellationToken> current = new ThreadLocal<>();
+
+  /**
+   * The value of {@link System#nanoTime()} at which the deadline passes, meaningful only if
+   * {@link #hasDeadline} is true.
+   */
+  private final long deadline;
+  private final boolean hasDeadline;
+  private volatile boolean cancelled = false;
+
+  private CancellationToken(final long deadline, final boolean hasDeadline) {
+    this.deadline = deadline;
+    this.hasDeadline = hasDeadline;
+  }
+
+  /**
+   * @return A token without a deadline, cancelled only by {@link #cancel()}.
+   */
+  public static CancellationToken create() {
+    return new CancellationToken(0, false);
+  }
+
+  /**
+   * @param timeout The time after which the token is cancelled, starting now.
+   * @return A token that is cancelled when the timeout elapses, or by {@link #cancel()}.
+   */
+  public static CancellationToken withTimeout(final Duration timeout) {
+    return withTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param timeout The time after which the token is cancelled, starting now.
+   * @param unit The unit of the timeout.
+   * @return A token that is cancelled when the timeout elapses, or by {@link #cancel()}.
+   */
+  public static CancellationToken withTimeout(final long timeout, final TimeUnit unit) {
+    return new CancellationToken(System.nanoTime() + unit.toNanos(timeout), true);
+  }
+
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * @return True if the token was cancelled or its deadline passed.
+   */
+  public boolean isCancelled() {
+    return this.cancelled || this.isDeadlineExceeded();
+  }
+
+  private boolean isDeadlineExceeded() {
+    return this.hasDeadline && System.nanoTime() - this.deadline >= 0;
+  }
+
+  /**
+   * @throws TranslationCancelledException If the token was cancelled or its deadline passed.
+   */
+  public void throwIfCancelled() {
+    if (this.cancelled) {
+      throw new TranslationCancelledException(false);
+    }
+    if (this.isDeadlineExceeded()) {
+      throw new TranslationCancelledException(true);
+    }
+  }
+
+  // #region Thread binding ---------------------------------------------------
+
+  /**
+   * Restores the token that was bound to the thread before {@link CancellationToken#bind()}.
+   */
+  public static final class Scope implements AutoCloseable {
+    private final CancellationToken previous;
+
+    private Scope(final CancellationToken previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      if (this.previous == null) {
+        current.remove();
+      } else {
+        current.set(this.previous);
+      }
+    }
+  }
+
+  /**
+   * Binds this token to the current thread, until the returned scope is closed. Use it with
+   * try-with-resources around the translation to bound.
+   * 
+   * @return The scope to close once the translation is over.
+   */
+  public Scope bind() {
+    final Scope scope = new Scope(current.get());
+    current.set(this);
+    return scope;
+  }
+
+  /**
+   * @return The token bound to the current thread, or null if there is none.
+   */
+  public static CancellationToken current() {
+    return current.get();
+  }
+
+  /**
+   * Checks the token bound to the current thread, if any.
+   * 
+   * @throws TranslationCancelledException If the token was cancelled or its deadline passed.
+   */
+  public static void checkpoint() {
+    final CancellationToken token = current.get();
+    if (token != null) {
+      token.throwIfCancelled();
+    }
+  }
+
+  /**
+   * Wraps a task that is to run in another thread on behalf of the current one, so that it is
+   * bound to the same token as the current thread, if any.
+   * 
+   * @param <T> The type of the result of the task.
+   * @param task The task.
+   * @return The wrapped task.
+   */
+  @SuppressWarnings("try")
+  public static <T> Supplier<T> propagate(final Supplier<T> task) {
+    final CancellationToken token = current.get();
+    if (token == null) {
+      return task;
+    }
+    return () -> {
+      try (Scope ignored = token.bind()) {
+        return task.get();
+      }
+    };
+  }
+
+  // #endregion Thread binding
+
+  /**
+   * Creates a parse tree walker that checks the token bound to the current thread, if any, before
+   * visiting each node.
+   * 
+   * @return A new walker.
+   */
+  public static ParseTreeWalker newWalker() {
+    final CancellationToken token = current.get();
+    return token == null ? new ParseTreeWalker() : new CheckingWalker(token);
+  }
+
+  private static final class CheckingWalker extends ParseTreeWalker {
+    private final CancellationToken token;
+
+    CheckingWalker(final CancellationToken token) {
+      this.token = token;
+    }
+
+    @Override
+    public void walk(final ParseTreeListener listener, final ParseTree tree) {
+      this.token.throwIfCancelled();
+      super.walk(listener, tree);
+    }
+  }
+}
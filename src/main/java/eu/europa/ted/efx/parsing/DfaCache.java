@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+/**
+ * The prediction caches (DFAs) of one EFX lexer or parser.
+ * 
+ * The generated lexers and parsers keep their DFAs in static fields that can never be released.
+ * Instead, {@link DfaCaches} connects each lexer and parser to the DFAs held here. These grow as
+ * new input is parsed, and can be discarded with {@link #reset()}.
+ * 
+ * A reset replaces the DFAs with new, empty ones. Lexers and parsers that are already running keep
+ * using the DFAs they started with, so in-flight translations are not affected. The old DFAs are
+ * garbage collected once they are no longer in use.
+ */
+public class DfaCache {
+
+  /**
+   * Approximate sizes, in bytes, used to estimate the memory used by the DFAs. They correspond to
+   * a 64-bit JVM with compressed references.
+   */
+  private static final int DFA_STATE_SIZE = 64;
+  private static final int ATN_CONFIG_SIZE = 40;
+  private static final int ARRAY_HEADER_SIZE = 16;
+  private static final int REFERENCE_SIZE = 4;
+  private static final int PREDICTION_CONTEXT_SIZE = 48;
+
+  /**
+   * The DFAs and the prediction context cache are replaced together, so that parsers always use a
+   * consistent pair.
+   */
+  static final class Generation {
+    final DFA[] decisionToDFA;
+    final PredictionContextCache contextCache = new PredictionContextCache();
+
+    Generation(final ATN atn) {
+      this.decisionToDFA = new DFA[atn.getNumberOfDecisions()];
+      for (int i = 0; i < this.decisionToDFA.length; i++) {
+        this.decisionToDFA[i] = new DFA(atn.getDecisionState(i), i);
+      }
+    }
+  }
+
+  private final String name;
+  private final ATN atn;
+  private volatile Generation current;
+  private final AtomicLong resetCount = new AtomicLong();
+
+  DfaCache(final String name, final ATN atn) {
+    this.name = name;
+    this.atn = atn;
+    this.current = new Generation(atn);
+  }
+
+  /**
+   * @return The name of the lexer or parser class that uses this cache.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  public int getDecisionCount() {
+    return this.current.decisionToDFA.length;
+  }
+
+  /**
+   * @return The number of DFA states currently held by this cache.
+   */
+  public int getStateCount() {
+    int count = 0;
+    for (DFA dfa : this.current.decisionToDFA) {
+      synchronized (dfa.states) {
+        count += dfa.states.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Estimates the memory retained by this cache. The estimate counts the DFA states, their ATN
+   * configurations and transitions, and the cached prediction contexts. It is meant for monitoring
+   * and for comparing caches, not as an exact measurement.
+   * 
+   * @return The approximate number of bytes retained by this cache.
+   */
+  public long getEstimatedMemory() {
+    final Generation generation = this.current;
+    long bytes = (long) generation.contextCache.size() * PREDICTION_CONTEXT_SIZE;
+    for (DFA dfa : generation.decisionToDFA) {
+      synchronized (dfa.states) {
+        for (DFAState state : dfa.states.keySet()) {
+          bytes += DFA_STATE_SIZE;
+          if (state.configs != null) {
+            bytes += ARRAY_HEADER_SIZE + (long) state.configs.size() * (ATN_CONFIG_SIZE + REFERENCE_SIZE);
+          }
+          if (state.edges != null) {
+            bytes += ARRAY_HEADER_SIZE + (long) state.edges.length * REFERENCE_SIZE;
+          }
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * @return The number of times this cache has been reset.
+   */
+  public long getResetCount() {
+    return this.resetCount.get();
+  }
+
+  /**
+   * Discards all DFA states. Lexers and parsers created afterwards start with empty DFAs.
+   */
+  public void reset() {
+    this.current = new Generation(this.atn);
+    this.resetCount.incrementAndGet();
+  }
+
+  Generation getCurrentGeneration() {
+    return this.current;
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+
+/**
+ * Manages the {@link DfaCache} of every EFX lexer and parser, one per generated class (and
+ * therefore per grammar version).
+ * 
+ * The EFX translators pass every lexer and parser they create through {@link #attach(Lexer)} or
+ * {@link #attach(Parser)}, so that they use these caches instead of the static caches of the
+ * generated classes.
+ * 
+ * Lexers and parsers attached while a {@link CancellationToken} is bound to the current thread
+ * check that token as they work.
+ * 
+ * By default the caches grow without bound, as the static caches would. They can be reset:
+ * <ul>
+ * <li>manually, with {@link DfaCache#reset()} or {@link #resetAll()},</li>
+ * <li>when they exceed a number of DFA states, see {@link #setMaximumStates(int)},</li>
+ * <li>periodically, see {@link #schedulePeriodicReset(long, TimeUnit)}.</li>
+ * </ul>
+ */
+public final class DfaCaches {
+
+  /**
+   * The size threshold is checked once every this many lexers or parsers attached, to keep the
+   * cost of counting DFA states negligible.
+   */
+  static final int SIZE_CHECK_INTERVAL = 64;
+
+  private static final Map<Class<?>, DfaCache> caches = new ConcurrentHashMap<>();
+
+  private static volatile int maximumStates = 0;
+  private static final AtomicLong attachCount = new AtomicLong();
+
+  private static ScheduledExecutorService scheduler;
+  private static ScheduledFuture<?> periodicReset;
+
+  private DfaCaches() {}
+
+  /**
+   * Makes the given lexer use the managed cache of its class.
+   * 
+   * @param <L> The type of the lexer.
+   * @param lexer A newly created lexer.
+   * @return The same lexer.
+   */
+  public static <L extends Lexer> L attach(final L lexer) {
+    final DfaCache.Generation generation = getCurrentGeneration(lexer);
+    final CancellationToken token = CancellationToken.current();
+    lexer.setInterpreter(token == null
+        ? new LexerATNSimulator(lexer, lexer.getATN(), generation.decisionToDFA,
+            generation.contextCache)
+        : new CheckingLexerATNSimulator(lexer, lexer.getATN(), generation.decisionToDFA,
+            generation.contextCache, token));
+    return lexer;
+  }
+
+  /**
+   * Makes the given parser use the managed cache of its class.
+   * 
+   * @param <P> The type of the parser.
+   * @param parser A newly created parser.
+   * @return The same parser.
+   */
+  public static <P extends Parser> P attach(final P parser) {
+    final DfaCache.Generation generation = getCurrentGeneration(parser);
+    final CancellationToken token = CancellationToken.current();
+    parser.setInterpreter(token == null
+        ? new ParserATNSimulator(parser, parser.getATN(), generation.decisionToDFA,
+            generation.contextCache)
+        : new CheckingParserATNSimulator(parser, parser.getATN(), generation.decisionToDFA,
+            generation.contextCache, token));
+    return parser;
+  }
+
+  /**
+   * @return The caches of all the lexers and parsers used so far.
+   */
+  public static List<DfaCache> getAll() {
+    return new ArrayList<>(caches.values());
+  }
+
+  /**
+   * @param recognizerClass The class of a generated lexer or parser.
+   * @return Its cache, or null if it has not been used yet.
+   */
+  public static DfaCache get(final Class<? extends Recognizer<?, ?>> recognizerClass) {
+    return caches.get(recognizerClass);
+  }
+
+  /**
+   * Resets the caches of all lexers and parsers.
+   */
+  public static void resetAll() {
+    caches.values().forEach(DfaCache::reset);
+  }
+
+  /**
+   * Sets the maximum number of DFA states a single cache may hold. A cache that exceeds it is
+   * reset. The check is done periodically, when lexers and parsers are created, so the limit can be
+   * exceeded temporarily.
+   * 
+   * @param maximum The maximum number of DFA states per cache, or 0 for no limit (the default).
+   */
+  public static void setMaximumStates(final int maximum) {
+    if (maximum < 0) {
+      throw new IllegalArgumentException("The maximum number of DFA states cannot be negative.");
+    }
+    maximumStates = maximum;
+  }
+
+  public static int getMaximumStates() {
+    return maximumStates;
+  }
+
+  /**
+   * Resets all caches at a fixed rate, from a daemon thread. Replaces any previously scheduled
+   * reset.
+   * 
+   * @param period The time between two resets.
+   * @param unit The unit of the period.
+   */
+  public static synchronized void schedulePeriodicReset(final long period, final TimeUnit unit) {
+    cancelPeriodicReset();
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "efx-dfa-cache-reset");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    periodicReset = scheduler.scheduleAtFixedRate(DfaCaches::resetAll, period, period, unit);
+  }
+
+  /**
+   * Stops the periodic reset scheduled with {@link #schedulePeriodicReset(long, TimeUnit)}, if any.
+   */
+  public static synchronized void cancelPeriodicReset() {
+    if (periodicReset != null) {
+      periodicReset.cancel(false);
+      periodicReset = null;
+    }
+  }
+
+  private static DfaCache.Generation getCurrentGeneration(final Recognizer<?, ?> recognizer) {
+    final DfaCache cache = caches.computeIfAbsent(recognizer.getClass(),
+        c -> new DfaCache(c.getName(), recognizer.getATN()));
+    final int maximum = maximumStates;
+    if (maximum > 0 && attachCount.incrementAndGet() % SIZE_CHECK_INTERVAL == 0
+        && cache.getStateCount() > maximum) {
+      cache.reset();
+    }
+    return cache.getCurrentGeneration();
+  }
+
+  // #region Cancellation -----------------------------------------------------
+
+  /**
+   * Checks a {@link CancellationToken} before matching each token.
+   */
+  private static final class CheckingLexerATNSimulator extends LexerATNSimulator {
+    private final CancellationToken token;
+
+    CheckingLexerATNSimulator(final Lexer recog, final ATN atn, final DFA[] decisionToDFA,
+        final PredictionContextCache sharedContextCache, final CancellationToken token) {
+      super(recog, atn, decisionToDFA, sharedContextCache);
+      this.token = token;
+    }
+
+    @Override
+    public int match(final CharStream input, final int mode) {
+      this.token.throwIfCancelled();
+      return super.match(input, mode);
+    }
+  }
+
+  /**
+   * Checks a {@link CancellationToken} before each prediction, and at each token considered by
+   * predictions that are not in the DFA cache. The latter include full-context predictions, which
+   * can look far ahead.
+   */
+  private static final class CheckingParserATNSimulator extends ParserATNSimulator {
+    private final CancellationToken token;
+
+    CheckingParserATNSimulator(final Parser parser, final ATN atn, final DFA[] decisionToDFA,
+        final PredictionContextCache sharedContextCache, final CancellationToken token) {
+      super(parser, atn, decisionToDFA, sharedContextCache);
+      this.token = token;
+    }
+
+    @Override
+    public int adaptivePredict(final TokenStream input, final int decision,
+        final ParserRuleContext outerContext) {
+      this.token.throwIfCancelled();
+      return super.adaptivePredict(input, decision, outerContext);
+    }
+
+    @Override
+    protected ATNConfigSet computeReachSet(final ATNConfigSet closure, final int t,
+        final boolean fullCtx) {
+      this.token.throwIfCancelled();
+      return super.computeReachSet(closure, t, fullCtx);
+    }
+  }
+
+  // #endregion Cancellation
+}
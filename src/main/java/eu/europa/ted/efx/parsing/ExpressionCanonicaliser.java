@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Builds the canonical form of a parsed EFX expression, so that expressions that differ only in
+ * their layout are recognised as the same expression.
+ * 
+ * The canonical form is made of the tokens of the expression separated by a single space. On top
+ * of that, redundant parentheses are removed and string literals are written with single quotes
+ * where this does not require any escaping. Parentheses are redundant if they enclose a single
+ * token, if they are themselves enclosed in parentheses, or if they are delimited on both sides by
+ * brackets or commas (around the whole expression block or a function argument, for instance).
+ * 
+ * The canonical form is itself a valid expression, with the same meaning as the original one.
+ */
+public final class ExpressionCanonicaliser {
+
+  private static final Set<String> OPENING_DELIMITERS = Set.of("${", "{", "(", "[", ",");
+  private static final Set<String> CLOSING_DELIMITERS = Set.of("}", ")", "]", ",");
+
+  private ExpressionCanonicaliser() {}
+
+  /**
+   * @param tree The parse tree of the expression. It must not contain syntax errors.
+   * @param isParenthesizedExpression Tells which rules are parenthesized expressions, i.e. an
+   *        opening parenthesis, an expression and a closing parenthesis.
+   * @param stringTokenType The type of the string literal tokens.
+   * @param lexer Splits a string into tokens with the same lexer that produced the tree. Used to
+   *        check that the canonical form is read back as the same tokens.
+   * @return The canonical form of the expression.
+   */
+  public static String canonicalise(final ParseTree tree,
+      final Predicate<ParseTree> isParenthesizedExpression, final int stringTokenType,
+      final Function<String, List<? extends Token>> lexer) {
+    final List<Token> tokens = new ArrayList<>();
+    collectTokens(tree, isParenthesizedExpression, tokens);
+
+    final List<String> texts = new ArrayList<>(tokens.size());
+    for (Token token : tokens) {
+      texts.add(token.getType() == stringTokenType ? canonicalString(token.getText())
+          : token.getText().trim());
+    }
+
+    final String canonical = String.join(" ", texts);
+    if (readsBackAs(lexer.apply(canonical), tokens)) {
+      return canonical;
+    }
+
+    // Some tokens cannot be separated by whitespace. Keep them together as they were.
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < tokens.size(); i++) {
+      if (i > 0 && tokens.get(i).getStartIndex() > tokens.get(i - 1).getStopIndex() + 1) {
+        sb.append(' ');
+      }
+      sb.append(texts.get(i));
+    }
+    return sb.toString();
+  }
+
+  private static void collectTokens(final ParseTree node,
+      final Predicate<ParseTree> isParenthesizedExpression, final List<Token> tokens) {
+    if (node instanceof TerminalNode) {
+      final Token token = ((TerminalNode) node).getSymbol();
+      if (token.getType() != Token.EOF) {
+        tokens.add(token);
+      }
+      return;
+    }
+    final boolean redundant = isParenthesizedExpression.test(node)
+        && isRedundant((ParserRuleContext) node, isParenthesizedExpression);
+    final int first = redundant ? 1 : 0;
+    final int last = redundant ? node.getChildCount() - 2 : node.getChildCount() - 1;
+    for (int i = first; i <= last; i++) {
+      collectTokens(node.getChild(i), isParenthesizedExpression, tokens);
+    }
+  }
+
+  private static boolean isRedundant(final ParserRuleContext parenthesized,
+      final Predicate<ParseTree> isParenthesizedExpression) {
+    if (isParenthesizedExpression.test(parenthesized.getParent())) {
+      return true;
+    }
+    ParseTree inner = parenthesized.getChild(1);
+    while (isParenthesizedExpression.test(inner)) {
+      inner = inner.getChild(1);
+    }
+    if (inner.getSourceInterval().length() == 1) {
+      return true;
+    }
+
+    // Find the closest ancestor that has other children, and look at the tokens on each side.
+    ParseTree node = parenthesized;
+    ParseTree parent = node.getParent();
+    while (parent != null && parent.getChildCount() == 1) {
+      node = parent;
+      parent = parent.getParent();
+    }
+    if (parent == null) {
+      return false;
+    }
+    int index = 0;
+    while (parent.getChild(index) != node) {
+      index++;
+    }
+    return index > 0 && index < parent.getChildCount() - 1
+        && isDelimiter(parent.getChild(index - 1), OPENING_DELIMITERS)
+        && isDelimiter(parent.getChild(index + 1), CLOSING_DELIMITERS);
+  }
+
+  private static boolean isDelimiter(final ParseTree node, final Set<String> delimiters) {
+    return node instanceof TerminalNode && delimiters.contains(node.getText().trim());
+  }
+
+  /**
+   * Uses single quotes for a string literal written with double quotes, unless its content
+   * contains quotes or escape sequences.
+   */
+  private static String canonicalString(final String literal) {
+    if (literal.startsWith("\"")) {
+      final String content = literal.substring(1, literal.length() - 1);
+      if (content.indexOf('\'') < 0 && content.indexOf('"') < 0 && content.indexOf('\\') < 0) {
+        return "'" + content + "'";
+      }
+    }
+    return literal;
+  }
+
+  private static boolean readsBackAs(final List<? extends Token> actual,
+      final List<Token> expected) {
+    int i = 0;
+    for (Token token : actual) {
+      if (token.getChannel() != Token.DEFAULT_CHANNEL || token.getType() == Token.EOF) {
+        continue;
+      }
+      if (i >= expected.size() || token.getType() != expected.get(i).getType()) {
+        return false;
+      }
+      i++;
+    }
+    return i == expected.size();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A {@link CharStream} that reads a file through a memory mapping, without copying or decoding
+ * it.
+ * 
+ * This is only possible when every character of the file is encoded as a single byte, that is,
+ * when the file is pure ASCII, which EFX templates usually are. Then the index of a character is
+ * also its offset in the file. Files that contain other characters are decoded into memory, like
+ * {@link CharStreams#fromPath(Path)} does. Small files are always read into memory, as mapping
+ * them costs more than it saves.
+ */
+public final class MappedCharStream implements CharStream {
+
+  /**
+   * Files smaller than this are read into memory rather than mapped.
+   */
+  static final long MAPPING_THRESHOLD = 16 * 1024;
+
+  private final ByteBuffer buffer;
+  private final int size;
+  private final String name;
+  private int position = 0;
+
+  private MappedCharStream(final ByteBuffer buffer, final String name) {
+    this.buffer = buffer;
+    this.size = buffer.limit();
+    this.name = name;
+  }
+
+  /**
+   * Opens a character stream over the given UTF-8 file.
+   * 
+   * @param path The file to read.
+   * @return A {@link MappedCharStream} if the file is large enough and pure ASCII, or a character
+   *         stream holding the decoded content of the file otherwise.
+   * @throws IOException If the file cannot be read.
+   */
+  public static CharStream open(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (size < MAPPING_THRESHOLD || size > Integer.MAX_VALUE) {
+        return CharStreams.fromPath(path);
+      }
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (!isAscii(buffer)) {
+        return CharStreams.fromPath(path);
+      }
+      return new MappedCharStream(buffer, path.toString());
+    }
+  }
+
+  private static boolean isAscii(final ByteBuffer buffer) {
+    final int limit = buffer.limit();
+    for (int i = 0; i < limit; i++) {
+      if (buffer.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void consume() {
+    if (position >= size) {
+      assert LA(1) == IntStream.EOF;
+      throw new IllegalStateException("cannot consume EOF");
+    }
+    position++;
+  }
+
+  @Override
+  public int LA(final int i) {
+    final int offset;
+    if (i < 0) {
+      offset = position + i;
+      return offset < 0 ? IntStream.EOF : buffer.get(offset);
+    }
+    if (i == 0) {
+      return 0; // undefined
+    }
+    offset = position + i - 1;
+    return offset >= size ? IntStream.EOF : buffer.get(offset);
+  }
+
+  @Override
+  public int mark() {
+    return -1;
+  }
+
+  @Override
+  public void release(final int marker) {
+    // Everything is always available.
+  }
+
+  @Override
+  public int index() {
+    return position;
+  }
+
+  @Override
+  public void seek(final int index) {
+    position = index;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String getSourceName() {
+    return name == null || name.isEmpty() ? IntStream.UNKNOWN_SOURCE_NAME : name;
+  }
+
+  @Override
+  public String getText(final Interval interval) {
+    final int start = Math.min(interval.a, size);
+    final int length = Math.min(interval.b - interval.a + 1, size - start);
+    if (length <= 0) {
+      return "";
+    }
+    final byte[] bytes = new byte[length];
+    final ByteBuffer view = buffer.duplicate();
+    view.position(start);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  @Override
+  public String toString() {
+    return getText(Interval.of(0, size - 1));
+  }
+}
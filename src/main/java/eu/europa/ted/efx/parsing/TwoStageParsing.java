@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Runs the EFX parsers, optionally using two-stage parsing.
+ * 
+ * By default, parsers use ANTLR's full LL prediction. When two-stage parsing is enabled, each parse
+ * is first attempted with the faster SLL prediction mode and an error strategy that gives up at
+ * the first syntax error. Only if that fails is the input parsed again with full LL prediction and
+ * the parser's own error handling. SLL either produces the same parse tree as LL or fails, so the
+ * result is the same either way, and genuine syntax errors are still reported by the second
+ * stage.
+ * 
+ * Two-stage parsing is disabled by default. The counters can be used to check how often the
+ * second stage is needed for a given workload.
+ */
+public final class TwoStageParsing {
+
+  private static volatile boolean enabled = false;
+
+  private static final AtomicLong sllParseCount = new AtomicLong();
+  private static final AtomicLong fallbackCount = new AtomicLong();
+
+  private TwoStageParsing() {}
+
+  /**
+   * @param enabled True to parse with SLL prediction first and fall back to full LL prediction
+   *        only when needed. False to always use full LL prediction.
+   */
+  public static void setEnabled(final boolean enabled) {
+    TwoStageParsing.enabled = enabled;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return The number of parses that succeeded with SLL prediction.
+   */
+  public static long getSllParseCount() {
+    return sllParseCount.get();
+  }
+
+  /**
+   * @return The number of parses that failed with SLL prediction and were repeated with full LL
+   *         prediction.
+   */
+  public static long getFallbackCount() {
+    return fallbackCount.get();
+  }
+
+  public static void resetCounters() {
+    sllParseCount.set(0);
+    fallbackCount.set(0);
+  }
+
+  /**
+   * Invokes the given start rule on the given parser, using two-stage parsing if enabled.
+   * 
+   * @param <P> The type of the parser.
+   * @param <T> The type of the context returned by the start rule.
+   * @param parser The parser, freshly created on its token stream.
+   * @param startRule The start rule to invoke, e.g. {@code EfxParser::singleExpression}.
+   * @return The parse tree.
+   */
+  public static <P extends Parser, T extends ParserRuleContext> T parse(final P parser,
+      final Function<P, T> startRule) {
+    if (!enabled) {
+      return startRule.apply(parser);
+    }
+
+    final ANTLRErrorStrategy errorHandler = parser.getErrorHandler();
+    final List<? extends ANTLRErrorListener> errorListeners =
+        new ArrayList<>(parser.getErrorListeners());
+    final PredictionMode predictionMode = parser.getInterpreter().getPredictionMode();
+
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.setErrorHandler(new BailErrorStrategy());
+    parser.removeErrorListeners();
+    try {
+      final T tree = startRule.apply(parser);
+      sllParseCount.incrementAndGet();
+      return tree;
+    } catch (ParseCancellationException e) {
+      // Errors reported by the lexer are thrown by its own error listener and are not a reason to
+      // try again. Only failures of the bail-out strategy are.
+      if (!(e.getCause() instanceof RecognitionException)) {
+        throw e;
+      }
+      fallbackCount.incrementAndGet();
+      parser.reset();
+      parser.getInterpreter().setPredictionMode(predictionMode);
+      parser.setErrorHandler(errorHandler);
+      errorListeners.forEach(parser::addErrorListener);
+      return startRule.apply(parser);
+    } finally {
+      parser.getInterpreter().setPredictionMode(predictionMode);
+      parser.setErrorHandler(errorHandler);
+      if (parser.getErrorListeners().isEmpty()) {
+        errorListeners.forEach(parser::addErrorListener);
+      }
+    }
+  }
+}
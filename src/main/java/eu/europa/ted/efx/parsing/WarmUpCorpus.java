@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 European Union
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by the European
+ * Commission – subsequent versions of the EUPL (the "Licence"); You may not use this work except in
+ * compliance with the Licence. You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence
+ * is distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the Licence for the specific language governing permissions and limitations under
+ * the Lic
+ */
+package eu.europa.ted.efx.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A set of EFX expressions and templates used to warm up the EFX lexers and parsers.
+ * 
+ * ANTLR builds its prediction caches (DFAs) lazily, while parsing. Until they are populated,
+ * parsing is considerably slower. Translating a representative corpus right after startup (see
+ * {@link eu.europa.ted.efx.EfxTranslator#warmUp}) populates these caches before real traffic
+ * arrives.
+ * 
+ * The DFA states themselves are internal to the ANTLR runtime and cannot be serialised. A corpus,
+ * however, can be saved to a file or bundled as a resource, and replaying it rebuilds the same
+ * DFA states deterministically. Corpora are bound to the SDK version whose grammar they were
+ * recorded with.
+ * 
+ * Instances are not thread-safe.
+ */
+public class WarmUpCorpus {
+
+  private static final int MAGIC = 0x45465857; // "EFXW"
+  private static final int FORMAT_VERSION = 1;
+
+  /**
+   * Limits on the lengths read from a stream, so that a corrupt corpus fails with an
+   * {@link IOException} rather than with an {@link OutOfMemoryError}.
+   */
+  private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+  private static final int MAX_PARAMETER_COUNT = 1024;
+
+  /**
+   * Strings are read in chunks of this size, so that a length beyond the end of the stream fails
+   * before the whole string has been allocated.
+   */
+  private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+  public enum Kind {
+    EXPRESSION, TEMPLATE
+  }
+
+  public static final class Entry {
+    private final Kind kind;
+    private final String source;
+    private final List<String> parameters;
+
+    Entry(final Kind kind, final String source, final List<String> parameters) {
+      this.kind = kind;
+      this.source = source;
+      this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    public Kind getKind() {
+      return this.kind;
+    }
+
+    public String getSource() {
+      return this.source;
+    }
+
+    public List<String> getParameters() {
+      return this.parameters;
+    }
+  }
+
+  private final String sdkVersion;
+  private final List<Entry> entries = new ArrayList<>();
+
+  public WarmUpCorpus(final String sdkVersion) {
+    this.sdkVersion = Objects.requireNonNull(sdkVersion);
+  }
+
+  public String getSdkVersion() {
+    return this.sdkVersion;
+  }
+
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(this.entries);
+  }
+
+  public WarmUpCorpus addExpression(final String expression, final String... parameters) {
+    this.entries.add(new Entry(Kind.EXPRESSION, expression, Arrays.asList(parameters.clone())));
+    return this;
+  }
+
+  public WarmUpCorpus addTemplate(final String template) {
+    this.entries.add(new Entry(Kind.TEMPLATE, template, Collections.emptyList()));
+    return this;
+  }
+
+  // #region Serialisation ----------------------------------------------------
+
+  public void save(final Path path) throws IOException {
+    try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(path))) {
+      this.save(stream);
+    }
+  }
+
+  /**
+   * Writes the corpus to the given stream. The stream is not closed.
+   * 
+   * @param stream The stream to write to.
+   * @throws IOException If the stream cannot be written.
+   */
+  public void save(final OutputStream stream) throws IOException {
+    final DataOutputStream output = new DataOutputStream(stream);
+    output.writeInt(MAGIC);
+    output.writeInt(FORMAT_VERSION);
+    writeString(output, this.sdkVersion);
+    output.writeInt(this.entries.size());
+    for (Entry entry : this.entries) {
+      output.writeByte(entry.kind.ordinal());
+      writeString(output, entry.source);
+      output.writeInt(entry.parameters.size());
+      for (String parameter : entry.parameters) {
+        writeString(output, parameter);
+      }
+    }
+    output.flush();
+  }
+
+  public static WarmUpCorpus load(final Path path) throws IOException {
+    try (InputStream stream = new BufferedInputStream(Files.newInputStream(path))) {
+      return load(stream);
+    }
+  }
+
+  /**
+   * Reads a corpus written by {@link #save(OutputStream)}. The stream is not closed.
+   * 
+   * @param stream The stream to read from.
+   * @return The corpus.
+   * @throws IOException If the stream cannot be read or does not contain a corpus.
+   */
+  public static WarmUpCorpus load(final InputStream stream) throws IOException {
+    final DataInputStream input = new DataInputStream(stream);
+    if (input.readInt() != MAGIC) {
+      throw new IOException("Not an EFX warm-up corpus.");
+    }
+    final int formatVersion = input.readInt();
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException(
+          String.format("Unsupported EFX warm-up corpus format %d.", formatVersion));
+    }
+    final WarmUpCorpus corpus = new WarmUpCorpus(readString(input));
+    final int count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      final int kindOrdinal = input.readUnsignedByte();
+      if (kindOrdinal >= Kind.values().length) {
+        throw new IOException("Invalid EFX warm-up corpus entry.");
+      }
+      final Kind kind = Kind.values()[kindOrdinal];
+      final String source = readString(input);
+      final String[] parameters =
+          new String[readLength(input, MAX_PARAMETER_COUNT, "parameter count")];
+      for (int j = 0; j < parameters.length; j++) {
+        parameters[j] = readString(input);
+      }
+      corpus.entries.add(new Entry(kind, source, Arrays.asList(parameters)));
+    }
+    return corpus;
+  }
+
+  /**
+   * Loads the corpus bundled as a class path resource for the given SDK version. The resource is
+   * expected at {@code efx-warmup/<sdkVersion>.bin}.
+   * 
+   * @param sdkVersion The SDK version.
+   * @return The corpus, or an empty corpus if there is no such resource.
+   * @throws IOException If the resource cannot be read.
+   */
+  public static WarmUpCorpus loadResource(final String sdkVersion) throws IOException {
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader() != null
+        ? Thread.currentThread().getContextClassLoader()
+        : WarmUpCorpus.class.getClassLoader();
+    try (InputStream stream = classLoader.getResourceAsStream(getResourceName(sdkVersion))) {
+      if (stream == null) {
+        return new WarmUpCorpus(sdkVersion);
+      }
+      return load(new BufferedInputStream(stream));
+    }
+  }
+
+  public static String getResourceName(final String sdkVersion) {
+    return "efx-warmup/" + sdkVersion + ".bin";
+  }
+
+  private static void writeString(final DataOutputStream output, final String value)
+      throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(final DataInputStream input) throws IOException {
+    final int length = readLength(input, MAX_STRING_LENGTH, "string length");
+    final ByteArrayOutputStream bytes =
+        new ByteArrayOutputStream(Math.min(length, READ_CHUNK_SIZE));
+    final byte[] chunk = new byte[Math.min(length, READ_CHUNK_SIZE)];
+    for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+      final int size = Math.min(remaining, chunk.length);
+      input.readFully(chunk, 0, size);
+      bytes.write(chunk, 0, size);
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  private static int readLength(final DataInputStream input, final int maximum,
+      final String name) throws IOException {
+    final int length = input.readInt();
+    if (length < 0 || length > maximum) {
+      throw new IOException(
+          String.format("Invalid EFX warm-up corpus: %s %d is out of bounds.", name, length));
+    }
+    return length;
+  }
+
+  // #endregion Serialisation
+}
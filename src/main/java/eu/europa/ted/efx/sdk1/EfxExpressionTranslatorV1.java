@@ -5,14 +5,17 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
-import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
@@ -20,6 +23,11 @@ import org.apache.commons.lang3.StringUtils;
 
 import eu.europa.ted.eforms.sdk.component.SdkComponent;
 import eu.europa.ted.eforms.sdk.component.SdkComponentType;
+import eu.europa.ted.efx.Diagnostic;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.exceptions.DiagnosticCollector;
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
+import eu.europa.ted.efx.exceptions.ThrowingErrorListener;
 import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
 import eu.europa.ted.efx.interfaces.ScriptGenerator;
 import eu.europa.ted.efx.interfaces.SymbolResolver;
@@ -28,6 +36,8 @@ import eu.europa.ted.efx.model.Context;
 import eu.europa.ted.efx.model.Context.FieldContext;
 import eu.europa.ted.efx.model.Context.NodeContext;
 import eu.europa.ted.efx.model.ContextStack;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.FieldPresenceCondition;
 import eu.europa.ted.efx.model.expressions.Expression;
 import eu.europa.ted.efx.model.expressions.TypedExpression;
 import eu.europa.ted.efx.model.expressions.iteration.IteratorExpression;
@@ -53,6 +63,10 @@ import eu.europa.ted.efx.model.types.EfxDataType;
 import eu.europa.ted.efx.model.types.FieldTypes;
 import eu.europa.ted.efx.model.variables.Parameter;
 import eu.europa.ted.efx.model.variables.Variable;
+import eu.europa.ted.efx.parsing.CancellationToken;
+import eu.europa.ted.efx.parsing.DfaCaches;
+import eu.europa.ted.efx.parsing.ExpressionCanonicaliser;
+import eu.europa.ted.efx.parsing.TwoStageParsing;
 import eu.europa.ted.efx.sdk1.EfxParser.*;
 
 /**
@@ -122,14 +136,97 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
     this.efxContext = new ContextStack(symbols);
   }
 
+  /**
+   * Translates the given expression. The translator itself is not modified, so the same instance can
+   * be reused for any number of translations and shared between threads. All the state needed
+   * during the translation is held by a separate instance obtained from {@link #newTranslation()}.
+   */
   @Override
   public String translateExpression(final String expression, final String... parameters) {
-    this.expressionParameters.addAll(Arrays.asList(parameters));
+    return this.newTranslation().translate(expression, parameters);
+  }
+
+  /**
+   * Creates the object that carries the state of a single translation (call stack, context stack,
+   * expression parameters etc.). The returned instance shares the dependencies of this translator
+   * but none of its state.
+   * 
+   * Subclasses must override this method to return an instance of their own type. Otherwise the
+   * translation would be made by an instance of this class, without the behaviour of the subclass.
+   *
+   * @return A new translator instance to be used for exactly one translation.
+   * @throws IllegalStateException if this is an instance of a subclass that does not override
+   *         this method.
+   */
+  protected EfxExpressionTranslatorV1 newTranslation() {
+    if (this.getClass() != EfxExpressionTranslatorV1.class) {
+      throw new IllegalStateException(String.format(
+          "%s must override newTranslation() to return an instance of its own type.",
+          this.getClass().getName()));
+    }
+    return new EfxExpressionTranslatorV1(this.symbols, this.script, this.errorListener);
+  }
+
+  /**
+   * Discards any state left behind by a previous translation. Called at the beginning of every
+   * translation.
+   */
+  protected void reset() {
+    this.stack = new CallStack();
+    this.efxContext = new ContextStack(this.symbols);
+    this.expressionParameters.clear();
+  }
+
+  /**
+   * Translates the given expressions reusing the same lexer, token stream and parser for the whole
+   * batch.
+   */
+  @Override
+  public List<TranslationResult> translateExpressions(final List<String> expressions,
+      final List<String[]> expressionParameters) {
+    if (expressions.size() != expressionParameters.size()) {
+      throw new IllegalArgumentException(
+          "The number of parameter lists must match the number of expressions.");
+    }
+    return this.newTranslation().translateAll(expressions, expressionParameters);
+  }
+
+  private List<TranslationResult> translateAll(final List<String> expressions,
+      final List<String[]> expressionParameters) {
+    final List<TranslationResult> results = new ArrayList<>(expressions.size());
+    EfxLexer lexer = null;
+    CommonTokenStream tokens = null;
+    EfxParser parser = null;
+    for (int i = 0; i < expressions.size(); i++) {
+      final String expression = expressions.get(i);
+      try {
+        final CharStream input = CharStreams.fromString(expression);
+        if (parser == null) {
+          lexer = DfaCaches.attach(new EfxLexer(input));
+          tokens = new CommonTokenStream(lexer);
+          parser = this.createParser(lexer, tokens);
+        } else {
+          lexer.setInputStream(input);
+          tokens.setTokenSource(lexer);
+          parser.setTokenStream(tokens);
+        }
+        results.add(TranslationResult.success(expression,
+            this.translate(parser, expressionParameters.get(i))));
+      } catch (RuntimeException e) {
+        results.add(TranslationResult.failure(expression, e));
+      }
+    }
+    return results;
+  }
 
+  private String translate(final String expression, final String... parameters) {
     final EfxLexer lexer =
-        new EfxLexer(CharStreams.fromString(expression));
-    final CommonTokenStream tokens = new CommonTokenStream(lexer);
-    final EfxParser parser = new EfxParser(tokens);
+        DfaCaches.attach(new EfxLexer(CharStreams.fromString(expression)));
+    return this.translate(this.createParser(lexer, new CommonTokenStream(lexer)), parameters);
+  }
+
+  private EfxParser createParser(final EfxLexer lexer, final CommonTokenStream tokens) {
+    final EfxParser parser = DfaCaches.attach(new EfxParser(tokens));
 
     if (errorListener != null) {
       lexer.removeErrorListeners();
@@ -138,14 +235,390 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
       parser.addErrorListener(errorListener);
     }
 
-    final ParseTree tree = parser.singleExpression();
-    final ParseTreeWalker walker = new ParseTreeWalker();
+    return parser;
+  }
+
+  private String translate(final EfxParser parser, final String... parameters) {
+    this.reset();
+    this.expressionParameters.addAll(Arrays.asList(parameters));
+
+    final ParseTree tree = TwoStageParsing.parse(parser, EfxParser::singleExpression);
+    final ParseTreeWalker walker = CancellationToken.newWalker();
 
     walker.walk(this, tree);
 
     return getTranslatedScript();
   }
 
+  // #region Syntax validation ------------------------------------------------
+
+  @Override
+  public List<Diagnostic> validateExpressionSyntax(final String expression) {
+    return validateSyntax(CharStreams.fromString(expression), EfxParser::singleExpression);
+  }
+
+  /**
+   * Lexes and parses the given input, collecting syntax errors instead of throwing them. The parse
+   * tree is not walked.
+   * 
+   * @param input The EFX source to validate.
+   * @param entryRule The grammar rule that the whole input must match.
+   * @return The syntax errors found.
+   */
+  protected static List<Diagnostic> validateSyntax(final CharStream input,
+      final Function<EfxParser, ? extends ParserRuleContext> entryRule) {
+    final DiagnosticCollector collector = new DiagnosticCollector();
+    TwoStageParsing.parse(newParser(input, collector), entryRule);
+    return collector.getDiagnostics();
+  }
+
+  private static EfxParser newParser(final CharStream input, final BaseErrorListener listener) {
+    final EfxLexer lexer = DfaCaches.attach(new EfxLexer(input));
+    final EfxParser parser = DfaCaches.attach(new EfxParser(new CommonTokenStream(lexer)));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(listener);
+    parser.removeErrorListeners();
+    parser.addErrorListener(listener);
+    return parser;
+  }
+
+  // #endregion Syntax validation
+
+  // #region Canonicalisation -------------------------------------------------
+
+  @Override
+  public String canonicaliseExpression(final String expression) {
+    final ParseTree tree =
+        TwoStageParsing.parse(newParser(CharStreams.fromString(expression),
+            ThrowingErrorListener.INSTANCE), EfxParser::singleExpression);
+    return ExpressionCanonicaliser.canonicalise(tree,
+        EfxExpressionTranslatorV1::isParenthesizedExpression, EfxLexer.STRING,
+        EfxExpressionTranslatorV1::tokenize);
+  }
+
+  private static boolean isParenthesizedExpression(final ParseTree node) {
+    return node instanceof ParenthesizedBooleanExpressionContext
+        || node instanceof ParenthesizedNumericExpressionContext
+        || node instanceof ParenthesizedDurationExpressionContext;
+  }
+
+  private static List<Token> tokenize(final String text) {
+    final EfxLexer lexer = DfaCaches.attach(new EfxLexer(CharStreams.fromString(text)));
+    lexer.removeErrorListeners();
+    final CommonTokenStream tokens = new CommonTokenStream(lexer);
+    tokens.fill();
+    return tokens.getTokens();
+  }
+
+  // #endregion Canonicalisation
+
+  // #region Dependencies -----------------------------------------------------
+
+  @Override
+  public Dependencies extractExpressionDependencies(final String expression) {
+    return extractDependencies(CharStreams.fromString(expression), EfxParser::singleExpression);
+  }
+
+  /**
+   * Parses the given input and lists the fields, nodes, codelists, attributes, variables and
+   * external references it refers to. No symbol is resolved, so the identifiers are listed as
+   * written.
+   * 
+   * @param input The EFX source.
+   * @param entryRule The grammar rule that the whole input must match.
+   * @return The dependencies of the input.
+   */
+  protected static Dependencies extractDependencies(final CharStream input,
+      final Function<EfxParser, ? extends ParserRuleContext> entryRule) {
+    final ParseTree tree =
+        TwoStageParsing.parse(newParser(input, ThrowingErrorListener.INSTANCE), entryRule);
+    final DependencyExtractor extractor = new DependencyExtractor();
+    CancellationToken.newWalker().walk(extractor, tree);
+    return extractor.dependencies;
+  }
+
+  /**
+   * Records the references found in a parse tree.
+   */
+  private static class DependencyExtractor extends EfxBaseListener {
+
+    private final Dependencies dependencies = new Dependencies();
+
+    @Override
+    public void enterSingleExpression(SingleExpressionContext ctx) {
+      if (ctx.FieldId() != null) {
+        this.dependencies.addFieldId(ctx.FieldId().getText());
+      } else {
+        this.dependencies.addNodeId(ctx.NodeId().getText());
+      }
+    }
+
+    @Override
+    public void enterSimpleFieldReference(SimpleFieldReferenceContext ctx) {
+      if (isInOtherNotice(ctx)) {
+        this.dependencies.addExternalReference(ctx.FieldId().getText());
+      } else {
+        this.dependencies.addFieldId(ctx.FieldId().getText());
+      }
+    }
+
+    @Override
+    public void enterSimpleNodeReference(SimpleNodeReferenceContext ctx) {
+      if (isInOtherNotice(ctx)) {
+        this.dependencies.addExternalReference(ctx.NodeId().getText());
+      } else {
+        this.dependencies.addNodeId(ctx.NodeId().getText());
+      }
+    }
+
+    @Override
+    public void enterAttributeReference(AttributeReferenceContext ctx) {
+      if (!isInOtherNotice(ctx)) {
+        this.dependencies.addAttribute(
+            getFieldIdFromChildSimpleFieldReferenceContext(ctx.fieldReference()),
+            ctx.Identifier().getText());
+      }
+    }
+
+    @Override
+    public void enterCodelistReference(CodelistReferenceContext ctx) {
+      this.dependencies.addCodelist(ctx.codeListId.getText());
+    }
+
+    @Override
+    public void enterVariableReference(VariableReferenceContext ctx) {
+      this.dependencies.addVariable(getVariableName(ctx));
+    }
+
+    /**
+     * The label of the value of a field depends on the field.
+     */
+    @Override
+    public void enterShorthandIndirectLabelReference(ShorthandIndirectLabelReferenceContext ctx) {
+      this.dependencies.addFieldId(ctx.FieldId().getText());
+    }
+
+    /**
+     * @return True if the closest reference to a notice above the given context is a reference to
+     *         another notice, rather than the identifier of that notice.
+     */
+    private static boolean isInOtherNotice(final ParserRuleContext ctx) {
+      for (ParserRuleContext parent = ctx.getParent(); parent != null; parent =
+          parent.getParent()) {
+        if (parent instanceof NoticeReferenceContext) {
+          return false;
+        }
+        if (parent instanceof FieldReferenceInOtherNoticeContext) {
+          return ((FieldReferenceInOtherNoticeContext) parent).noticeReference() != null;
+        }
+        if (parent instanceof NodeReferenceInOtherNoticeContext) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  // #endregion Dependencies
+
+  // #region Field presence ---------------------------------------------------
+
+  @Override
+  public FieldPresenceCondition deriveFieldPresenceCondition(final String expression) {
+    final SingleExpressionContext tree = TwoStageParsing.parse(
+        newParser(CharStreams.fromString(expression), ThrowingErrorListener.INSTANCE),
+        EfxParser::singleExpression);
+    return FieldPresenceAnalyser.analyse(tree);
+  }
+
+  /**
+   * Derives the fields that must be present for a boolean expression to be true, or false, from
+   * its parse tree, the same way the EFX-2 translator does. Symbols are not resolved, so field
+   * references are only recognised through the untyped alternatives of the grammar.
+   *
+   * Type casts are left out: a cast value is not necessarily empty when the field is missing.
+   * Whatever the analyser does not recognise requires nothing, which keeps the result conservative.
+   */
+  private static class FieldPresenceAnalyser {
+
+    /**
+     * Contexts whose value is empty when any of the fields they refer to is missing, i.e. paths
+     * to a field, with the fields referred to in their predicates.
+     */
+    private static final Set<Class<? extends ParserRuleContext>> PATH_CONTEXTS = Set.of(
+        UntypedFieldReferenceExpressionContext.class, UntypedSequenceExpressionContext.class,
+        UntypedStringExpressionContext.class, UntypedNumericExpressionContext.class,
+        UntypedDateExpressionContext.class, UntypedTimeExpressionContext.class,
+        UntypedDurationExpressionContext.class, ScalarFromFieldReferenceContext.class,
+        ScalarFromAttributeReferenceContext.class, SequenceFromFieldReferenceContext.class,
+        SequenceFromAttributeReferenceContext.class, PathFromReferenceContext.class,
+        AttributeReferenceContext.class, FieldReferenceContext.class, FieldContextContext.class,
+        AbsoluteFieldReferenceContext.class, FieldReferenceInOtherNoticeContext.class,
+        FieldReferenceWithVariableContextOverrideContext.class,
+        FieldReferenceWithNodeContextOverrideContext.class,
+        FieldReferenceWithFieldContextOverrideContext.class,
+        FieldReferenceWithPredicateContext.class, FieldReferenceWithAxisContext.class);
+
+    /**
+     * Sequences read from a field reference, which are paths when no type cast is applied.
+     */
+    private static final Set<Class<? extends ParserRuleContext>> SEQUENCE_CONTEXTS = Set.of(
+        StringTypeCastFieldReferenceContext.class, BooleanTypeCastFieldReferenceContext.class,
+        NumericTypeCastFieldReferenceContext.class, DateTypeCastFieldReferenceContext.class,
+        TimeTypeCastFieldReferenceContext.class, DurationTypeCastFieldReferenceContext.class);
+
+    /**
+     * An expression is only evaluated where its context exists, so a field used as context is
+     * required whatever the value of the expression.
+     */
+    static FieldPresenceCondition analyse(final SingleExpressionContext ctx) {
+      final Set<String> context = ctx.FieldId() != null ? Set.of(ctx.FieldId().getText())
+          : Collections.emptySet();
+      final FieldPresenceCondition condition =
+          ctx.expressionBlock() instanceof StandardExpressionBlockContext
+              ? conditionOf(((StandardExpressionBlockContext) ctx.expressionBlock()).expression()
+                  .booleanExpression())
+              : FieldPresenceCondition.UNKNOWN;
+      return new FieldPresenceCondition(union(context, condition.getRequiredWhenTrue()),
+          union(context, condition.getRequiredWhenFalse()));
+    }
+
+    private static FieldPresenceCondition conditionOf(final ParseTree tree) {
+      if (tree instanceof ParenthesizedBooleanExpressionContext) {
+        return conditionOf(((ParenthesizedBooleanExpressionContext) tree).booleanExpression());
+      }
+      if (tree instanceof BooleanFunctionExpressionContext
+          && tree.getChild(0) instanceof NotFunctionContext) {
+        return negation(conditionOf(((NotFunctionContext) tree.getChild(0)).booleanExpression()));
+      }
+      if (tree instanceof PresenceConditionContext) {
+        final PresenceConditionContext ctx = (PresenceConditionContext) tree;
+        final FieldPresenceCondition presence = new FieldPresenceCondition(
+            requiredForValue(ctx.pathFromReference()), Collections.emptySet());
+        return ctx.modifier != null ? negation(presence) : presence;
+      }
+      if (tree instanceof EmptinessConditionContext) {
+        // Both "is empty" and "is not empty" compare the value to an empty string.
+        return new FieldPresenceCondition(
+            requiredForValue(((EmptinessConditionContext) tree).stringExpression()),
+            Collections.emptySet());
+      }
+      if (tree instanceof QuantifiedExpressionContext) {
+        final QuantifiedExpressionContext ctx = (QuantifiedExpressionContext) tree;
+        return quantification(ctx.iteratorList(), ctx.Some() != null,
+            conditionOf(ctx.booleanExpression()));
+      }
+      if (tree instanceof ConditionalBooleanExpressionContext) {
+        final ConditionalBooleanExpressionContext ctx = (ConditionalBooleanExpressionContext) tree;
+        final FieldPresenceCondition condition = conditionOf(ctx.booleanExpression(0));
+        final FieldPresenceCondition whenTrue = conditionOf(ctx.booleanExpression(1));
+        final FieldPresenceCondition whenFalse = conditionOf(ctx.booleanExpression(2));
+        return new FieldPresenceCondition(
+            intersection(union(condition.getRequiredWhenTrue(), whenTrue.getRequiredWhenTrue()),
+                union(condition.getRequiredWhenFalse(), whenFalse.getRequiredWhenTrue())),
+            intersection(union(condition.getRequiredWhenTrue(), whenTrue.getRequiredWhenFalse()),
+                union(condition.getRequiredWhenFalse(), whenFalse.getRequiredWhenFalse())));
+      }
+      if (tree instanceof LogicalAndConditionContext || tree instanceof LogicalOrConditionContext) {
+        final FieldPresenceCondition left = conditionOf(tree.getChild(0));
+        final FieldPresenceCondition right = conditionOf(tree.getChild(2));
+        return tree instanceof LogicalAndConditionContext
+            ? new FieldPresenceCondition(
+                union(left.getRequiredWhenTrue(), right.getRequiredWhenTrue()),
+                intersection(left.getRequiredWhenFalse(), right.getRequiredWhenFalse()))
+            : new FieldPresenceCondition(
+                intersection(left.getRequiredWhenTrue(), right.getRequiredWhenTrue()),
+                union(left.getRequiredWhenFalse(), right.getRequiredWhenFalse()));
+      }
+      if (tree instanceof BooleanExpressionContext
+          && (hasToken(tree, EfxParser.Comparison) || hasToken(tree, EfxParser.In))) {
+        // Comparisons, "in" and "is unique in" conditions are false when an operand is empty.
+        final Set<String> required = new TreeSet<>();
+        for (int i = 0; i < tree.getChildCount(); i++) {
+          required.addAll(requiredForValue(tree.getChild(i)));
+        }
+        final FieldPresenceCondition comparison =
+            new FieldPresenceCondition(required, Collections.emptySet());
+        return hasToken(tree, EfxParser.Not) ? negation(comparison) : comparison;
+      }
+      return FieldPresenceCondition.UNKNOWN;
+    }
+
+    /**
+     * An existential quantification is false, and a universal one is true, when there is nothing
+     * to iterate over. Otherwise all the sequences iterated over are non-empty.
+     */
+    private static FieldPresenceCondition quantification(final IteratorListContext iterators,
+        final boolean existential, final FieldPresenceCondition satisfies) {
+      final Set<String> required = new TreeSet<>();
+      for (IteratorExpressionContext iterator : iterators.iteratorExpression()) {
+        final ParseTree typedIterator = iterator.getChild(0);
+        for (int i = 0; i < typedIterator.getChildCount(); i++) {
+          required.addAll(requiredForValue(typedIterator.getChild(i)));
+        }
+      }
+      return existential
+          ? new FieldPresenceCondition(union(required, satisfies.getRequiredWhenTrue()),
+              Collections.emptySet())
+          : new FieldPresenceCondition(Collections.emptySet(),
+              union(required, satisfies.getRequiredWhenFalse()));
+    }
+
+    /**
+     * @return The fields that must be present for the value of the given context to be non-empty.
+     */
+    private static Set<String> requiredForValue(final ParseTree tree) {
+      if (tree instanceof SimpleFieldReferenceContext) {
+        return Set.of(((SimpleFieldReferenceContext) tree).FieldId().getText());
+      }
+      if (tree instanceof PredicateContext) {
+        return conditionOf(((PredicateContext) tree).booleanExpression()).getRequiredWhenTrue();
+      }
+      if (tree instanceof FieldReferenceInOtherNoticeContext
+          && ((FieldReferenceInOtherNoticeContext) tree).noticeReference() != null) {
+        return Collections.emptySet();
+      }
+      if (!PATH_CONTEXTS.contains(tree.getClass()) && !(SEQUENCE_CONTEXTS.contains(tree.getClass())
+          && tree.getChildCount() == 1)) {
+        return Collections.emptySet();
+      }
+      final Set<String> required = new TreeSet<>();
+      for (int i = 0; i < tree.getChildCount(); i++) {
+        required.addAll(requiredForValue(tree.getChild(i)));
+      }
+      return required;
+    }
+
+    private static FieldPresenceCondition negation(final FieldPresenceCondition condition) {
+      return new FieldPresenceCondition(condition.getRequiredWhenFalse(),
+          condition.getRequiredWhenTrue());
+    }
+
+    private static boolean hasToken(final ParseTree tree, final int tokenType) {
+      for (int i = 0; i < tree.getChildCount(); i++) {
+        if (tree.getChild(i) instanceof TerminalNode
+            && ((TerminalNode) tree.getChild(i)).getSymbol().getType() == tokenType) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Set<String> union(final Set<String> one, final Set<String> two) {
+      final Set<String> union = new TreeSet<>(one);
+      union.addAll(two);
+      return union;
+    }
+
+    private static Set<String> intersection(final Set<String> one, final Set<String> two) {
+      final Set<String> intersection = new TreeSet<>(one);
+      intersection.retainAll(two);
+      return intersection;
+    }
+  }
+
+  // #endregion Field presence
+
   private <T extends Expression> T translateParameter(final String parameterValue,
       final Class<T> parameterType) {
     final EfxExpressionTranslatorV1 translator =
@@ -153,10 +626,10 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
             this.errorListener);
 
     final EfxLexer lexer =
-        new EfxLexer(
-            CharStreams.fromString(BEGIN_EXPRESSION_BLOCK + parameterValue + END_EXPRESSION_BLOCK));
+        DfaCaches.attach(new EfxLexer(
+            CharStreams.fromString(BEGIN_EXPRESSION_BLOCK + parameterValue + END_EXPRESSION_BLOCK)));
     final CommonTokenStream tokens = new CommonTokenStream(lexer);
-    final EfxParser parser = new EfxParser(tokens);
+    final EfxParser parser = DfaCaches.attach(new EfxParser(tokens));
 
     if (errorListener != null) {
       lexer.removeErrorListeners();
@@ -165,8 +638,8 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
       parser.addErrorListener(errorListener);
     }
 
-    final ParseTree tree = parser.parameterValue();
-    final ParseTreeWalker walker = new ParseTreeWalker();
+    final ParseTree tree = TwoStageParsing.parse(parser, EfxParser::parameterValue);
+    final ParseTreeWalker walker = CancellationToken.newWalker();
 
     walker.walk(translator, tree);
 
@@ -179,11 +652,11 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
    * @return The translated code, trimmed
    */
   private String getTranslatedScript() {
-    final StringBuilder sb = new StringBuilder(this.stack.size() * 100);
+    final LinkedList<String> scripts = new LinkedList<>();
     while (!this.stack.empty()) {
-      sb.insert(0, '\n').insert(0, this.stack.pop(Expression.class).getScript());
+      scripts.addFirst(this.stack.pop(Expression.class).getScript());
     }
-    return sb.toString().trim();
+    return String.join("\n", scripts).trim();
   }
 
   /**
@@ -307,7 +780,7 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
     ScalarExpression right = this.stack.pop(ScalarExpression.class);
     ScalarExpression left = this.stack.pop(ScalarExpression.class);
     if (!left.getClass().isAssignableFrom(right.getClass()) && !right.getClass().isAssignableFrom(left.getClass()) && !left.getDataType().isAssignableFrom(right.getDataType()) && !right.getDataType().isAssignableFrom(left.getDataType()) && !right.getDataType().isAssignableFrom(left.getDataType()) && !left.getDataType().isAssignableFrom(right.getDataType())) {
-      throw new ParseCancellationException(TYPE_MISMATCH_CANNOT_COMPARE_VALUES_OF_DIFFERENT_TYPES
+      throw new EfxTranslationException(TYPE_MISMATCH_CANNOT_COMPARE_VALUES_OF_DIFFERENT_TYPES
           + left.getClass() + " and " + right.getClass());
     }
     this.stack.push(this.script.composeComparisonOperation(left, ctx.operator.getText(), right));
@@ -1205,7 +1678,7 @@ public class EfxExpressionTranslatorV1 extends EfxBaseListener
 
   private void exitParameterDeclaration(String parameterName, Class<? extends TypedExpression> parameterType) {
     if (this.expressionParameters.isEmpty()) {
-      throw new ParseCancellationException("No parameter passed for " + parameterName);
+      throw new EfxTranslationException("No parameter passed for " + parameterName);
     }
 
     Parameter parameter = new Parameter(parameterName,
@@ -4,13 +4,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.slf4j.Logger;
@@ -18,6 +20,8 @@ import org.slf4j.LoggerFactory;
 
 import eu.europa.ted.eforms.sdk.component.SdkComponent;
 import eu.europa.ted.eforms.sdk.component.SdkComponentType;
+import eu.europa.ted.efx.Diagnostic;
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.interfaces.EfxTemplateTranslator;
 import eu.europa.ted.efx.interfaces.MarkupGenerator;
 import eu.europa.ted.efx.interfaces.ScriptGenerator;
@@ -25,6 +29,7 @@ import eu.europa.ted.efx.interfaces.SymbolResolver;
 import eu.europa.ted.efx.model.Context;
 import eu.europa.ted.efx.model.Context.FieldContext;
 import eu.europa.ted.efx.model.Context.NodeContext;
+import eu.europa.ted.efx.model.Dependencies;
 import eu.europa.ted.efx.model.expressions.Expression;
 import eu.europa.ted.efx.model.expressions.TypedExpression;
 import eu.europa.ted.efx.model.expressions.path.PathExpression;
@@ -37,9 +42,14 @@ import eu.europa.ted.efx.model.expressions.sequence.TimeSequenceExpression;
 import eu.europa.ted.efx.model.templates.ContentBlock;
 import eu.europa.ted.efx.model.templates.ContentBlockStack;
 import eu.europa.ted.efx.model.templates.Markup;
+import eu.europa.ted.efx.model.templates.TemplateModule;
 import eu.europa.ted.efx.model.types.EfxDataType;
 import eu.europa.ted.efx.model.variables.Variable;
 import eu.europa.ted.efx.model.variables.VariableList;
+import eu.europa.ted.efx.parsing.CancellationToken;
+import eu.europa.ted.efx.parsing.DfaCaches;
+import eu.europa.ted.efx.parsing.MappedCharStream;
+import eu.europa.ted.efx.parsing.TwoStageParsing;
 import eu.europa.ted.efx.sdk1.EfxParser.AssetIdContext;
 import eu.europa.ted.efx.sdk1.EfxParser.AssetTypeContext;
 import eu.europa.ted.efx.sdk1.EfxParser.ContextDeclarationBlockContext;
@@ -103,7 +113,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
    */
   MarkupGenerator markup;
 
-  final ContentBlock rootBlock = ContentBlock.newRootBlock();
+  ContentBlock rootBlock = ContentBlock.newRootBlock();
 
   /**
    * The block stack is used to keep track of the indentation of template lines and adjust the EFX
@@ -113,6 +123,13 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
    */
   ContentBlockStack blockStack = new ContentBlockStack();
 
+  /**
+   * True when the output file is composed by the caller of {@link #walk(CharStream)} rather than
+   * by {@link #exitTemplateFile(TemplateFileContext)}, as when the template is translated as a
+   * module.
+   */
+  private boolean incremental;
+
   @SuppressWarnings("unused")
   private EfxTemplateTranslatorV1() {
     super();
@@ -132,7 +149,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
   @Override
   public String renderTemplate(final Path pathname) throws IOException {
 
-    return renderTemplate(CharStreams.fromPath(pathname));
+    return renderTemplate(MappedCharStream.open(pathname));
   }
 
   /**
@@ -143,17 +160,57 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
     return renderTemplate(CharStreams.fromString(template));
   }
 
+  @Override
+  public List<Diagnostic> validateTemplateSyntax(final String template) {
+    return validateSyntax(CharStreams.fromString(template), EfxParser::templateFile);
+  }
+
+  @Override
+  public Dependencies extractTemplateDependencies(final String template) {
+    return extractDependencies(CharStreams.fromString(template), EfxParser::templateFile);
+  }
+
   @Override
   public String renderTemplate(final InputStream stream) throws IOException {
     return renderTemplate(CharStreams.fromStream(stream));
   }
 
   private String renderTemplate(final CharStream charStream) {
+    return this.newTranslation().render(charStream);
+  }
+
+  @Override
+  protected EfxTemplateTranslatorV1 newTranslation() {
+    if (this.getClass() != EfxTemplateTranslatorV1.class) {
+      throw new IllegalStateException(String.format(
+          "%s must override newTranslation() to return an instance of its own type.",
+          this.getClass().getName()));
+    }
+    return new EfxTemplateTranslatorV1(this.markup, this.symbols, this.script, this.errorListener);
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    this.indentWith = Indent.UNDETERMINED;
+    this.indentSpaces = -1;
+    this.rootBlock = ContentBlock.newRootBlock();
+    this.blockStack = new ContentBlockStack();
+    this.incremental = false;
+  }
+
+  private String render(final CharStream charStream) {
+    this.reset();
+    this.walk(charStream);
+    return getTranslatedMarkup();
+  }
+
+  private void walk(final CharStream charStream) {
     logger.debug("Rendering template");
 
-    final EfxLexer lexer = new EfxLexer(charStream);
+    final EfxLexer lexer = DfaCaches.attach(new EfxLexer(charStream));
     final CommonTokenStream tokens = new CommonTokenStream(lexer);
-    final EfxParser parser = new EfxParser(tokens);
+    final EfxParser parser = DfaCaches.attach(new EfxParser(tokens));
 
     if (errorListener != null) {
       lexer.removeErrorListeners();
@@ -162,14 +219,12 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
       parser.addErrorListener(errorListener);
     }
 
-    final ParseTree tree = parser.templateFile();
+    final ParseTree tree = TwoStageParsing.parse(parser, EfxParser::templateFile);
 
-    final ParseTreeWalker walker = new ParseTreeWalker();
+    final ParseTreeWalker walker = CancellationToken.newWalker();
     walker.walk(this, tree);
 
     logger.debug("Finished rendering template");
-
-    return getTranslatedMarkup();
   }
 
   /**
@@ -183,16 +238,62 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
   private String getTranslatedMarkup() {
     logger.debug("Getting translated markup.");
 
-    final StringBuilder sb = new StringBuilder(64);
+    final LinkedList<String> scripts = new LinkedList<>();
     while (!this.stack.empty()) {
-      sb.insert(0, '\n').insert(0, this.stack.pop(Markup.class).script);
+      scripts.addFirst(this.stack.pop(Markup.class).script);
     }
 
     logger.debug("Finished getting translated markup.");
 
-    return sb.toString().trim();
+    return String.join("\n", scripts).trim();
   }
 
+  // #region Modules ----------------------------------------------------------
+
+  @Override
+  public TemplateModule compileTemplateModule(final String name, final String template) {
+    return this.newTranslation().compile(TemplateModule.checkName(name),
+        CharStreams.fromString(template));
+  }
+
+  /**
+   * Translates a template as a module. The blocks of the template are identified by the name of
+   * the module instead of "block", and numbered as if the template was on its own.
+   */
+  private TemplateModule compile(final String name, final CharStream charStream) {
+    this.reset();
+    this.incremental = true;
+    this.rootBlock = ContentBlock.newRootBlock(name);
+
+    this.walk(charStream);
+
+    final List<Markup> invocations = new ArrayList<>();
+    final List<Markup> fragments = new ArrayList<>();
+    for (ContentBlock rootBlock : this.rootBlock.getChildren()) {
+      invocations.add(rootBlock.renderCallTemplate(markup));
+      rootBlock.renderTemplate(markup, fragments);
+    }
+    return new TemplateModule(name, invocations, fragments);
+  }
+
+  @Override
+  public String linkTemplateModules(final List<TemplateModule> modules) {
+    final Set<String> names = new HashSet<>();
+    final List<Markup> templateCalls = new ArrayList<>();
+    final List<Markup> templates = new ArrayList<>();
+    for (TemplateModule module : modules) {
+      if (!names.add(module.getName())) {
+        throw new IllegalArgumentException(
+            String.format("Template module '%s' is linked more than once.", module.getName()));
+      }
+      templateCalls.addAll(module.getInvocations());
+      templates.addAll(module.getFragments());
+    }
+    return this.markup.composeOutputFile(templateCalls, templates).script.trim();
+  }
+
+  // #endregion Modules
+
   // #region Template File ----------------------------------------------------
 
   @Override
@@ -202,6 +303,10 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
 
   @Override
   public void exitTemplateFile(TemplateFileContext ctx) {
+    if (this.incremental) {
+      return;
+    }
+
     this.blockStack.pop();
 
     List<Markup> templateCalls = new ArrayList<>();
@@ -407,7 +512,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
                 StringSequenceExpression.class)));
         break;
       default:
-        throw new ParseCancellationException(String.format(
+        throw new EfxTranslationException(String.format(
             "Unexpected field type '%s'. Expected a field of either type 'code' or 'indicator'.",
             fieldType));
     }
@@ -454,7 +559,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
   public void exitShorthandIndirectLabelReferenceFromContextField(
       ShorthandIndirectLabelReferenceFromContextFieldContext ctx) {
     if (!this.efxContext.isFieldContext()) {
-      throw new ParseCancellationException(
+      throw new EfxTranslationException(
           "The #value shorthand syntax can only be used if a field is declared as context.");
     }
     this.shorthandIndirectLabelReference(this.efxContext.symbol());
@@ -536,7 +641,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
   public void exitShorthandFieldValueReferenceFromContextField(
       ShorthandFieldValueReferenceFromContextFieldContext ctx) {
     if (!this.efxContext.isFieldContext()) {
-      throw new ParseCancellationException(
+      throw new EfxTranslationException(
           "The $value shorthand syntax can only be used when a field is declared as the context.");
     }
     this.stack.push(this.script.composeFieldValueReference(
@@ -576,10 +681,10 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
     final int indentLevel = this.getIndentLevel(ctx);
     final int indentChange = indentLevel - this.blockStack.currentIndentationLevel();
     if (indentChange > 1) {
-      throw new ParseCancellationException(INDENTATION_LEVEL_SKIPPED);
+      throw new EfxTranslationException(INDENTATION_LEVEL_SKIPPED);
     } else if (indentChange == 1) {
       if (this.blockStack.isEmpty()) {
-        throw new ParseCancellationException(START_INDENT_AT_ZERO);
+        throw new EfxTranslationException(START_INDENT_AT_ZERO);
       }
       this.stack.pushStackFrame(); // Create a stack frame for the new template line.
     } else if (indentChange < 0) {
@@ -613,10 +718,10 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
     this.stack.clear(); // Variable scope boundary. Clear declared variables
 
     if (indentChange > 1) {
-      throw new ParseCancellationException(INDENTATION_LEVEL_SKIPPED);
+      throw new EfxTranslationException(INDENTATION_LEVEL_SKIPPED);
     } else if (indentChange == 1) {
       if (this.blockStack.isEmpty()) {
-        throw new ParseCancellationException(START_INDENT_AT_ZERO);
+        throw new EfxTranslationException(START_INDENT_AT_ZERO);
       }
       this.blockStack.pushChild(outlineNumber, content,
           this.relativizeContext(lineContext, this.blockStack.currentContext()), variables);
@@ -658,7 +763,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
 
   private int getIndentLevel(TemplateLineContext ctx) {
     if (ctx.MixedIndent() != null) {
-      throw new ParseCancellationException(MIXED_INDENTATION);
+      throw new EfxTranslationException(MIXED_INDENTATION);
     }
 
     if (ctx.Spaces() != null) {
@@ -666,11 +771,11 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
         this.indentWith = Indent.SPACES;
         this.indentSpaces = ctx.Spaces().getText().length();
       } else if (this.indentWith == Indent.TABS) {
-        throw new ParseCancellationException(MIXED_INDENTATION);
+        throw new EfxTranslationException(MIXED_INDENTATION);
       }
 
       if (ctx.Spaces().getText().length() % this.indentSpaces != 0) {
-        throw new ParseCancellationException(
+        throw new EfxTranslationException(
             String.format(INCONSISTENT_INDENTATION_SPACES, this.indentSpaces));
       }
       return ctx.Spaces().getText().length() / this.indentSpaces;
@@ -678,7 +783,7 @@ public class EfxTemplateTranslatorV1 extends EfxExpressionTranslatorV1
       if (this.indentWith == Indent.UNDETERMINED) {
         this.indentWith = Indent.TABS;
       } else if (this.indentWith == Indent.SPACES) {
-        throw new ParseCancellationException(MIXED_INDENTATION);
+        throw new EfxTranslationException(MIXED_INDENTATION);
       }
 
       return ctx.Tabs().getText().length();
@@ -2,21 +2,30 @@ package eu.europa.ted.efx.sdk2;
 
 import static java.util.Map.entry;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
-import org.antlr.v4.runtime.TokenStreamRewriter;
+import org.antlr.v4.runtime.TokenSource;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
@@ -24,7 +33,10 @@ import org.antlr.v4.runtime.tree.TerminalNode;
 import org.apache.commons.lang3.StringUtils;
 
 import eu.europa.ted.eforms.sdk.component.SdkComponent;
+import eu.europa.ted.efx.Diagnostic;
 import eu.europa.ted.eforms.sdk.component.SdkComponentType;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
 import eu.europa.ted.efx.interfaces.ScriptGenerator;
 import eu.europa.ted.efx.interfaces.SymbolResolver;
@@ -33,6 +45,8 @@ import eu.europa.ted.efx.model.Context;
 import eu.europa.ted.efx.model.Context.FieldContext;
 import eu.europa.ted.efx.model.Context.NodeContext;
 import eu.europa.ted.efx.model.ContextStack;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.FieldPresenceCondition;
 import eu.europa.ted.efx.model.expressions.Expression;
 import eu.europa.ted.efx.model.expressions.TypedExpression;
 import eu.europa.ted.efx.model.expressions.iteration.IteratorExpression;
@@ -59,6 +73,12 @@ import eu.europa.ted.efx.model.types.EfxDataType;
 import eu.europa.ted.efx.model.types.FieldTypes;
 import eu.europa.ted.efx.model.variables.Parameter;
 import eu.europa.ted.efx.model.variables.Variable;
+import eu.europa.ted.efx.exceptions.DiagnosticCollector;
+import eu.europa.ted.efx.exceptions.ThrowingErrorListener;
+import eu.europa.ted.efx.parsing.CancellationToken;
+import eu.europa.ted.efx.parsing.DfaCaches;
+import eu.europa.ted.efx.parsing.ExpressionCanonicaliser;
+import eu.europa.ted.efx.parsing.TwoStageParsing;
 import eu.europa.ted.efx.sdk2.EfxParser.*;
 
 /**
@@ -118,6 +138,12 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
 
   private LinkedList<String> expressionParameters = new LinkedList<>();
 
+  /**
+   * The rules being walked, innermost first. Only tracked when collecting diagnostics, to locate
+   * the errors raised by the translator.
+   */
+  private Deque<ParserRuleContext> rulesBeingWalked;
+
   protected EfxExpressionTranslatorV2() {}
 
   public EfxExpressionTranslatorV2(final SymbolResolver symbolResolver,
@@ -129,29 +155,587 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
     this.efxContext = new ContextStack(symbols);
   }
 
+  /**
+   * Translates the given expression. The translator itself is not modified, so the same instance can
+   * be reused for any number of translations and shared between threads. All the state needed
+   * during the translation is held by a separate instance obtained from {@link #newTranslation()}.
+   */
   @Override
   public String translateExpression(final String expression, final String... parameters) {
-    this.expressionParameters.addAll(Arrays.asList(parameters));
+    return this.newTranslation().translate(expression, parameters);
+  }
 
-    // New in EFX-2: expression preprocessing
-    final ExpressionPreprocessor preprocessor = this.new ExpressionPreprocessor(expression);
-    final String preprocessedExpression = preprocessor.processExpression();
+  /**
+   * Creates the object that carries the state of a single translation (call stack, context stack,
+   * expression parameters etc.). The returned instance shares the dependencies of this translator
+   * but none of its state.
+   * 
+   * Subclasses must override this method to return an instance of their own type. Otherwise the
+   * translation would be made by an instance of this class, without the behaviour of the subclass.
+   *
+   * @return A new translator instance to be used for exactly one translation.
+   * @throws IllegalStateException if this is an instance of a subclass that does not override
+   *         this method.
+   */
+  protected EfxExpressionTranslatorV2 newTranslation() {
+    if (this.getClass() != EfxExpressionTranslatorV2.class) {
+      throw new IllegalStateException(String.format(
+          "%s must override newTranslation() to return an instance of its own type.",
+          this.getClass().getName()));
+    }
+    return new EfxExpressionTranslatorV2(this.symbols, this.script, this.errorListener);
+  }
 
-    // Now parse the preprocessed expression
-    final EfxLexer lexer =
-        new EfxLexer(CharStreams.fromString(preprocessedExpression));
+  /**
+   * Discards any state left behind by a previous translation. Called at the beginning of every
+   * translation.
+   */
+  protected void reset() {
+    this.stack = new CallStack();
+    this.efxContext = new ContextStack(this.symbols);
+    this.expressionParameters.clear();
+  }
+
+  /**
+   * Translates the given expressions reusing the same lexers, token streams and parsers for the
+   * whole batch.
+   */
+  @Override
+  public List<TranslationResult> translateExpressions(final List<String> expressions,
+      final List<String[]> expressionParameters) {
+    if (expressions.size() != expressionParameters.size()) {
+      throw new IllegalArgumentException(
+          "The number of parameter lists must match the number of expressions.");
+    }
+    return this.newTranslation().translateAll(expressions, expressionParameters);
+  }
+
+  private List<TranslationResult> translateAll(final List<String> expressions,
+      final List<String[]> expressionParameters) {
+    final List<TranslationResult> results = new ArrayList<>(expressions.size());
+    ExpressionPreprocessor preprocessor = null;
+    for (int i = 0; i < expressions.size(); i++) {
+      final String expression = expressions.get(i);
+      try {
+        if (preprocessor == null) {
+          preprocessor = this.new ExpressionPreprocessor(expression);
+        } else {
+          preprocessor.reset(CharStreams.fromString(expression));
+        }
+        results.add(TranslationResult.success(expression,
+            this.translate(preprocessor, expressionParameters.get(i))));
+      } catch (RuntimeException e) {
+        results.add(TranslationResult.failure(expression, e));
+      }
+    }
+    return results;
+  }
+
+  // #region Diagnostics ------------------------------------------------------
+
+  @Override
+  public TranslationResult checkExpression(final String expression, final String... parameters) {
+    final EfxExpressionTranslatorV2 translation = this.newDiagnosticTranslation();
+    return translation.diagnose(expression, () -> translation.translate(expression, parameters));
+  }
+
+  /**
+   * Checks the given expressions reusing the same lexers, token streams and parsers for the whole
+   * batch.
+   */
+  @Override
+  public List<TranslationResult> checkExpressions(final List<String> expressions) {
+    final EfxExpressionTranslatorV2 translation = this.newDiagnosticTranslation();
+    final List<TranslationResult> results = new ArrayList<>(expressions.size());
+    final ExpressionPreprocessor[] preprocessor = {null};
+    for (String expression : expressions) {
+      results.add(translation.diagnose(expression, () -> {
+        if (preprocessor[0] == null) {
+          preprocessor[0] = translation.new ExpressionPreprocessor(expression);
+        } else {
+          preprocessor[0].reset(CharStreams.fromString(expression));
+        }
+        return translation.translate(preprocessor[0]);
+      }));
+    }
+    return results;
+  }
+
+  /**
+   * Creates a translation that records syntax errors with a {@link DiagnosticCollector} instead of
+   * throwing them, and keeps track of the rules being walked.
+   */
+  protected EfxExpressionTranslatorV2 newDiagnosticTranslation() {
+    final EfxExpressionTranslatorV2 translation = this.newTranslation();
+    translation.errorListener = new DiagnosticCollector();
+    translation.rulesBeingWalked = new ArrayDeque<>();
+    return translation;
+  }
+
+  /**
+   * Runs a translation created by {@link #newDiagnosticTranslation()}. Syntax errors are collected
+   * by the error listener, and the parse tree is not walked if there are any. An error in the EFX
+   * raised while walking (a {@link ParseCancellationException}, which is what translators and
+   * symbol resolvers throw) is recorded as a semantic error, located at the start of the innermost
+   * rule being walked. Any other exception is a failure of the translator itself and is rethrown.
+   * 
+   * At most one semantic error is reported: the walk stops at the first one, as the state of the
+   * translation (the stack of translated expressions in particular) cannot be relied upon after
+   * it. All the syntax errors are reported, though.
+   */
+  protected TranslationResult diagnose(final String source, final Supplier<String> translation) {
+    final DiagnosticCollector collector = (DiagnosticCollector) this.errorListener;
+    collector.clear();
+    this.rulesBeingWalked.clear();
+    String result = null;
+    try {
+      result = translation.get();
+    } catch (ParseCancellationException e) {
+      final ParserRuleContext rule = this.rulesBeingWalked.peek();
+      final String message = e.getMessage() != null ? e.getMessage() : e.toString();
+      collector.add(rule == null ? new Diagnostic(Diagnostic.Kind.SEMANTIC, 0, 0, message)
+          : new Diagnostic(Diagnostic.Kind.SEMANTIC, rule.getStart().getLine(),
+              rule.getStart().getCharPositionInLine(), message));
+    }
+    return collector.hasDiagnostics() ? TranslationResult.failure(source, collector.getDiagnostics())
+        : TranslationResult.success(source, result);
+  }
+
+  /**
+   * @return True if errors were collected while parsing, in which case the parse tree must not be
+   *         walked.
+   */
+  protected boolean hasSyntaxErrors() {
+    return this.errorListener instanceof DiagnosticCollector
+        && ((DiagnosticCollector) this.errorListener).hasDiagnostics();
+  }
+
+  /**
+   * Sets the kind of the errors reported by the error listener from now on, if it collects them.
+   */
+  protected void reportErrorsAs(final Diagnostic.Kind kind) {
+    if (this.errorListener instanceof DiagnosticCollector) {
+      ((DiagnosticCollector) this.errorListener).reportAs(kind);
+    }
+  }
+
+  @Override
+  public void enterEveryRule(ParserRuleContext ctx) {
+    if (this.rulesBeingWalked != null) {
+      this.rulesBeingWalked.push(ctx);
+    }
+  }
+
+  @Override
+  public void exitEveryRule(ParserRuleContext ctx) {
+    if (this.rulesBeingWalked != null) {
+      this.rulesBeingWalked.pop();
+    }
+  }
+
+  // #endregion Diagnostics
+
+  // #region Syntax validation ------------------------------------------------
+
+  @Override
+  public List<Diagnostic> validateExpressionSyntax(final String expression) {
+    return validateSyntax(CharStreams.fromString(expression), EfxParser::singleExpression);
+  }
+
+  /**
+   * Lexes and parses the given input, collecting syntax errors instead of throwing them. The parse
+   * tree is not walked.
+   * 
+   * @param input The EFX source to validate.
+   * @param entryRule The grammar rule that the whole input must match.
+   * @return The syntax errors found.
+   */
+  protected static List<Diagnostic> validateSyntax(final CharStream input,
+      final Function<EfxParser, ? extends ParserRuleContext> entryRule) {
+    final DiagnosticCollector collector = new DiagnosticCollector();
+    TwoStageParsing.parse(newParser(input, collector), entryRule);
+    return collector.getDiagnostics();
+  }
+
+  private static EfxParser newParser(final CharStream input, final BaseErrorListener listener) {
+    final EfxLexer lexer = DfaCaches.attach(new EfxLexer(input));
+    final EfxParser parser = DfaCaches.attach(new EfxParser(new CommonTokenStream(lexer)));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(listener);
+    parser.removeErrorListeners();
+    parser.addErrorListener(listener);
+    return parser;
+  }
+
+  // #endregion Syntax validation
+
+  // #region Canonicalisation -------------------------------------------------
+
+  @Override
+  public String canonicaliseExpression(final String expression) {
+    final ParseTree tree =
+        TwoStageParsing.parse(newParser(CharStreams.fromString(expression),
+            ThrowingErrorListener.INSTANCE), EfxParser::singleExpression);
+    return ExpressionCanonicaliser.canonicalise(tree,
+        EfxExpressionTranslatorV2::isParenthesizedExpression, EfxLexer.STRING,
+        EfxExpressionTranslatorV2::tokenize);
+  }
+
+  private static boolean isParenthesizedExpression(final ParseTree node) {
+    return node instanceof ParenthesizedBooleanExpressionContext
+        || node instanceof ParenthesizedNumericExpressionContext
+        || node instanceof ParenthesizedDurationExpressionContext;
+  }
+
+  private static List<Token> tokenize(final String text) {
+    final EfxLexer lexer = DfaCaches.attach(new EfxLexer(CharStreams.fromString(text)));
+    lexer.removeErrorListeners();
     final CommonTokenStream tokens = new CommonTokenStream(lexer);
-    final EfxParser parser = new EfxParser(tokens);
+    tokens.fill();
+    return tokens.getTokens();
+  }
 
-    if (errorListener != null) {
-      lexer.removeErrorListeners();
-      lexer.addErrorListener(errorListener);
-      parser.removeErrorListeners();
-      parser.addErrorListener(errorListener);
+  // #endregion Canonicalisation
+
+  // #region Dependencies -----------------------------------------------------
+
+  @Override
+  public Dependencies extractExpressionDependencies(final String expression) {
+    return extractDependencies(CharStreams.fromString(expression), EfxParser::singleExpression);
+  }
+
+  /**
+   * Parses the given input and lists the fields, nodes, codelists, attributes, variables and
+   * external references it refers to. No symbol is resolved, so the identifiers are listed as
+   * written.
+   * 
+   * @param input The EFX source.
+   * @param entryRule The grammar rule that the whole input must match.
+   * @return The dependencies of the input.
+   */
+  protected static Dependencies extractDependencies(final CharStream input,
+      final Function<EfxParser, ? extends ParserRuleContext> entryRule) {
+    final ParseTree tree =
+        TwoStageParsing.parse(newParser(input, ThrowingErrorListener.INSTANCE), entryRule);
+    final DependencyExtractor extractor = new DependencyExtractor();
+    CancellationToken.newWalker().walk(extractor, tree);
+    return extractor.dependencies;
+  }
+
+  /**
+   * Records the references found in a parse tree.
+   */
+  private static class DependencyExtractor extends EfxBaseListener {
+
+    private final Dependencies dependencies = new Dependencies();
+
+    @Override
+    public void enterSingleExpression(SingleExpressionContext ctx) {
+      if (ctx.FieldId() != null) {
+        this.dependencies.addFieldId(ctx.FieldId().getText());
+      } else {
+        this.dependencies.addNodeId(ctx.NodeId().getText());
+      }
+    }
+
+    @Override
+    public void enterSimpleFieldReference(SimpleFieldReferenceContext ctx) {
+      if (isInOtherNotice(ctx)) {
+        this.dependencies.addExternalReference(ctx.FieldId().getText());
+      } else {
+        this.dependencies.addFieldId(ctx.FieldId().getText());
+      }
+    }
+
+    @Override
+    public void enterSimpleNodeReference(SimpleNodeReferenceContext ctx) {
+      if (isInOtherNotice(ctx)) {
+        this.dependencies.addExternalReference(ctx.NodeId().getText());
+      } else {
+        this.dependencies.addNodeId(ctx.NodeId().getText());
+      }
+    }
+
+    @Override
+    public void enterAttributeReference(AttributeReferenceContext ctx) {
+      if (!isInOtherNotice(ctx)) {
+        this.dependencies.addAttribute(
+            getFieldIdFromChildSimpleFieldReferenceContext(ctx.fieldReference()),
+            StringUtils.substringAfter(ctx.Attribute().getText(), ATTRIBUTE_PREFIX));
+      }
     }
 
-    final ParseTree tree = parser.singleExpression();
-    final ParseTreeWalker walker = new ParseTreeWalker();
+    @Override
+    public void enterCodelistReference(CodelistReferenceContext ctx) {
+      this.dependencies
+          .addCodelist(StringUtils.substringAfter(ctx.CodelistId().getText(), CODELIST_PREFIX));
+    }
+
+    @Override
+    public void enterVariableReference(VariableReferenceContext ctx) {
+      this.dependencies.addVariable(getVariableName(ctx));
+    }
+
+    /**
+     * The label of the value of a field depends on the field.
+     */
+    @Override
+    public void enterShorthandIndirectLabelReference(ShorthandIndirectLabelReferenceContext ctx) {
+      this.dependencies.addFieldId(ctx.FieldId().getText());
+    }
+
+    /**
+     * @return True if the closest reference to a notice above the given context is a reference to
+     *         another notice, rather than the identifier of that notice.
+     */
+    private static boolean isInOtherNotice(final ParserRuleContext ctx) {
+      for (ParserRuleContext parent = ctx.getParent(); parent != null; parent =
+          parent.getParent()) {
+        if (parent instanceof NoticeReferenceContext) {
+          return false;
+        }
+        if (parent instanceof FieldReferenceInOtherNoticeContext) {
+          return ((FieldReferenceInOtherNoticeContext) parent).noticeReference() != null;
+        }
+        if (parent instanceof NodeReferenceInOtherNoticeContext) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  // #endregion Dependencies
+
+  // #region Field presence ---------------------------------------------------
+
+  @Override
+  public FieldPresenceCondition deriveFieldPresenceCondition(final String expression) {
+    final SingleExpressionContext tree = TwoStageParsing.parse(
+        newParser(CharStreams.fromString(expression), ThrowingErrorListener.INSTANCE),
+        EfxParser::singleExpression);
+    return FieldPresenceAnalyser.analyse(tree);
+  }
+
+  /**
+   * Derives the fields that must be present for a boolean expression to be true, or false, from
+   * its parse tree. Symbols are not resolved, so the tree is the one of the original expression,
+   * where field references are late-bound.
+   *
+   * The analysis relies on how expressions are translated: a comparison involving the value of a
+   * missing field compares an empty sequence, which is false whatever the operator, and so is a
+   * comparison to an empty string made by an emptiness condition. Whatever the analyser does not
+   * recognise requires nothing, which keeps the result conservative.
+   */
+  private static class FieldPresenceAnalyser {
+
+    /**
+     * Contexts whose value is empty when any of the fields they refer to is missing, i.e. paths
+     * to a field, with the fields referred to in their predicates.
+     */
+    private static final Set<Class<? extends ParserRuleContext>> PATH_CONTEXTS = Set.of(
+        LateBoundExpressionContext.class, LateBoundScalarContext.class,
+        LateBoundSequenceContext.class, ScalarFromFieldReferenceContext.class,
+        ScalarFromAttributeReferenceContext.class, SequenceFromFieldReferenceContext.class,
+        SequenceFromAttributeReferenceContext.class, PathFromReferenceContext.class,
+        AttributeReferenceContext.class, FieldReferenceContext.class,
+        AbsoluteFieldReferenceContext.class, FieldReferenceInOtherNoticeContext.class,
+        FieldReferenceWithVariableContextOverrideContext.class,
+        FieldReferenceWithNodeContextOverrideContext.class,
+        FieldReferenceWithFieldContextOverrideContext.class,
+        FieldReferenceWithPredicateContext.class, FieldReferenceWithAxisContext.class);
+
+    /**
+     * An expression is only evaluated where its context exists, so a field used as context is
+     * required whatever the value of the expression.
+     */
+    static FieldPresenceCondition analyse(final SingleExpressionContext ctx) {
+      final Set<String> context = ctx.FieldId() != null ? Set.of(ctx.FieldId().getText())
+          : Collections.emptySet();
+      final FieldPresenceCondition condition =
+          ctx.expressionBlock() instanceof StandardExpressionBlockContext
+              ? conditionOf(((StandardExpressionBlockContext) ctx.expressionBlock()).expression()
+                  .booleanExpression())
+              : FieldPresenceCondition.UNKNOWN;
+      return new FieldPresenceCondition(union(context, condition.getRequiredWhenTrue()),
+          union(context, condition.getRequiredWhenFalse()));
+    }
+
+    private static FieldPresenceCondition conditionOf(final ParseTree tree) {
+      if (tree instanceof ParenthesizedBooleanExpressionContext) {
+        return conditionOf(((ParenthesizedBooleanExpressionContext) tree).booleanExpression());
+      }
+      if (tree instanceof BooleanFunctionExpressionContext
+          && tree.getChild(0) instanceof NotFunctionContext) {
+        return negation(conditionOf(((NotFunctionContext) tree.getChild(0)).booleanExpression()));
+      }
+      if (tree instanceof PresenceConditionContext) {
+        final FieldPresenceCondition presence = new FieldPresenceCondition(
+            requiredForValue(((PresenceConditionContext) tree).pathFromReference()),
+            Collections.emptySet());
+        return hasToken(tree, EfxParser.Not) ? negation(presence) : presence;
+      }
+      if (tree instanceof EmptinessConditionContext
+          || tree instanceof PpLateBoundEmptinessConditionContext) {
+        // Both "is empty" and "is not empty" compare the value to an empty string.
+        return new FieldPresenceCondition(requiredForValue(tree.getChild(0)),
+            Collections.emptySet());
+      }
+      if (tree instanceof QuantifiedExpressionContext) {
+        final QuantifiedExpressionContext ctx = (QuantifiedExpressionContext) tree;
+        return quantification(ctx.iteratorList(), ctx.Some() != null,
+            conditionOf(ctx.booleanExpression()));
+      }
+      if (tree instanceof PpLateBoundQuantifiedExpressionContext) {
+        final PpLateBoundQuantifiedExpressionContext ctx =
+            (PpLateBoundQuantifiedExpressionContext) tree;
+        return quantification(ctx.iteratorList(), ctx.Some() != null,
+            FieldPresenceCondition.UNKNOWN);
+      }
+      if (tree instanceof ConditionalBooleanExpressionContext) {
+        final ConditionalBooleanExpressionContext ctx = (ConditionalBooleanExpressionContext) tree;
+        final FieldPresenceCondition condition = conditionOf(ctx.booleanExpression(0));
+        final FieldPresenceCondition whenTrue = conditionOf(ctx.booleanExpression(1));
+        final FieldPresenceCondition whenFalse = conditionOf(ctx.booleanExpression(2));
+        return new FieldPresenceCondition(
+            intersection(union(condition.getRequiredWhenTrue(), whenTrue.getRequiredWhenTrue()),
+                union(condition.getRequiredWhenFalse(), whenFalse.getRequiredWhenTrue())),
+            intersection(union(condition.getRequiredWhenTrue(), whenTrue.getRequiredWhenFalse()),
+                union(condition.getRequiredWhenFalse(), whenFalse.getRequiredWhenFalse())));
+      }
+      if (!(tree instanceof BooleanExpressionContext)) {
+        return FieldPresenceCondition.UNKNOWN;
+      }
+      if (hasToken(tree, EfxParser.And) || hasToken(tree, EfxParser.Or)) {
+        final FieldPresenceCondition left = conditionOf(tree.getChild(0));
+        final FieldPresenceCondition right = conditionOf(tree.getChild(2));
+        return hasToken(tree, EfxParser.And)
+            ? new FieldPresenceCondition(
+                union(left.getRequiredWhenTrue(), right.getRequiredWhenTrue()),
+                intersection(left.getRequiredWhenFalse(), right.getRequiredWhenFalse()))
+            : new FieldPresenceCondition(
+                intersection(left.getRequiredWhenTrue(), right.getRequiredWhenTrue()),
+                union(left.getRequiredWhenFalse(), right.getRequiredWhenFalse()));
+      }
+      if (hasToken(tree, EfxParser.Comparison) || hasToken(tree, EfxParser.In)) {
+        // Comparisons, "in" and "is unique in" conditions are false when an operand is empty.
+        final Set<String> required = new TreeSet<>();
+        for (int i = 0; i < tree.getChildCount(); i++) {
+          required.addAll(requiredForValue(tree.getChild(i)));
+        }
+        final FieldPresenceCondition comparison =
+            new FieldPresenceCondition(required, Collections.emptySet());
+        return hasToken(tree, EfxParser.Not) ? negation(comparison) : comparison;
+      }
+      return FieldPresenceCondition.UNKNOWN;
+    }
+
+    /**
+     * An existential quantification is false, and a universal one is true, when there is nothing
+     * to iterate over. Otherwise all the sequences iterated over are non-empty.
+     */
+    private static FieldPresenceCondition quantification(final IteratorListContext iterators,
+        final boolean existential, final FieldPresenceCondition satisfies) {
+      final Set<String> required = new TreeSet<>();
+      for (IteratorExpressionContext iterator : iterators.iteratorExpression()) {
+        final ParseTree typedIterator = iterator.getChild(0);
+        for (int i = 0; i < typedIterator.getChildCount(); i++) {
+          required.addAll(requiredForValue(typedIterator.getChild(i)));
+        }
+      }
+      return existential
+          ? new FieldPresenceCondition(union(required, satisfies.getRequiredWhenTrue()),
+              Collections.emptySet())
+          : new FieldPresenceCondition(Collections.emptySet(),
+              union(required, satisfies.getRequiredWhenFalse()));
+    }
+
+    /**
+     * @return The fields that must be present for the value of the given context to be non-empty.
+     */
+    private static Set<String> requiredForValue(final ParseTree tree) {
+      if (tree instanceof SimpleFieldReferenceContext) {
+        return Set.of(((SimpleFieldReferenceContext) tree).FieldId().getText());
+      }
+      if (tree instanceof PredicateContext) {
+        return conditionOf(((PredicateContext) tree).booleanExpression()).getRequiredWhenTrue();
+      }
+      if (tree instanceof FieldReferenceInOtherNoticeContext
+          && ((FieldReferenceInOtherNoticeContext) tree).noticeReference() != null) {
+        return Collections.emptySet();
+      }
+      if (tree instanceof LateBoundScalarContext
+          && ((LateBoundScalarContext) tree).lateBoundScalar().size() > 1) {
+        return Collections.emptySet(); // Arithmetic operation.
+      }
+      if (!PATH_CONTEXTS.contains(tree.getClass())) {
+        return Collections.emptySet();
+      }
+      final Set<String> required = new TreeSet<>();
+      for (int i = 0; i < tree.getChildCount(); i++) {
+        required.addAll(requiredForValue(tree.getChild(i)));
+      }
+      return required;
+    }
+
+    private static FieldPresenceCondition negation(final FieldPresenceCondition condition) {
+      return new FieldPresenceCondition(condition.getRequiredWhenFalse(),
+          condition.getRequiredWhenTrue());
+    }
+
+    private static boolean hasToken(final ParseTree tree, final int tokenType) {
+      for (int i = 0; i < tree.getChildCount(); i++) {
+        if (tree.getChild(i) instanceof TerminalNode
+            && ((TerminalNode) tree.getChild(i)).getSymbol().getType() == tokenType) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Set<String> union(final Set<String> one, final Set<String> two) {
+      final Set<String> union = new TreeSet<>(one);
+      union.addAll(two);
+      return union;
+    }
+
+    private static Set<String> intersection(final Set<String> one, final Set<String> two) {
+      final Set<String> intersection = new TreeSet<>(one);
+      intersection.retainAll(two);
+      return intersection;
+    }
+  }
+
+  // #endregion Field presence
+
+  private String translate(final String expression, final String... parameters) {
+    return this.translate(this.new ExpressionPreprocessor(expression), parameters);
+  }
+
+  private String translate(final ExpressionPreprocessor preprocessor,
+      final String... parameters) {
+    this.reset();
+    this.expressionParameters.addAll(Arrays.asList(parameters));
+
+    // New in EFX-2: expression preprocessing
+    ParseTree tree = preprocessor.processExpression();
+    if (this.hasSyntaxErrors()) {
+      return "";
+    }
+
+    // If type casts were inserted, parse the preprocessed tokens again. Otherwise the parse tree
+    // produced by the preprocessor is the one we need. Any expression referring to a field, variable
+    // or parameter without a type cast takes the first branch, so it is still parsed twice: only
+    // the second lexing is saved.
+    if (preprocessor.hasTypeCasts()) {
+      this.reportErrorsAs(Diagnostic.Kind.SEMANTIC);
+      tree = preprocessor.parsePreprocessed(EfxParser::singleExpression);
+      if (this.hasSyntaxErrors()) {
+        return "";
+      }
+    }
+
+    final ParseTreeWalker walker = CancellationToken.newWalker();
 
     walker.walk(this, tree);
 
@@ -165,10 +749,10 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
             this.errorListener);
 
     final EfxLexer lexer =
-        new EfxLexer(
-            CharStreams.fromString(BEGIN_EXPRESSION_BLOCK + parameterValue + END_EXPRESSION_BLOCK));
+        DfaCaches.attach(new EfxLexer(
+            CharStreams.fromString(BEGIN_EXPRESSION_BLOCK + parameterValue + END_EXPRESSION_BLOCK)));
     final CommonTokenStream tokens = new CommonTokenStream(lexer);
-    final EfxParser parser = new EfxParser(tokens);
+    final EfxParser parser = DfaCaches.attach(new EfxParser(tokens));
 
     if (errorListener != null) {
       lexer.removeErrorListeners();
@@ -177,8 +761,8 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       parser.addErrorListener(errorListener);
     }
 
-    final ParseTree tree = parser.parameterValue();
-    final ParseTreeWalker walker = new ParseTreeWalker();
+    final ParseTree tree = TwoStageParsing.parse(parser, EfxParser::parameterValue);
+    final ParseTreeWalker walker = CancellationToken.newWalker();
 
     walker.walk(translator, tree);
 
@@ -191,11 +775,11 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
    * @return The translated code, trimmed
    */
   private String getTranslatedScript() {
-    final StringBuilder sb = new StringBuilder(this.stack.size() * 100);
+    final LinkedList<String> scripts = new LinkedList<>();
     while (!this.stack.empty()) {
-      sb.insert(0, '\n').insert(0, this.stack.pop(Expression.class).getScript());
+      scripts.addFirst(this.stack.pop(Expression.class).getScript());
     }
-    return sb.toString().trim();
+    return String.join("\n", scripts).trim();
   }
 
   /**
@@ -1269,7 +1853,7 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
 
   private void exitParameterDeclaration(String parameterName, Class<? extends TypedExpression> parameterType) {
     if (this.expressionParameters.isEmpty()) {
-      throw new ParseCancellationException("No parameter passed for " + parameterName);
+      throw new EfxTranslationException("No parameter passed for " + parameterName);
     }
 
     Parameter parameter = new Parameter(parameterName,
@@ -1737,6 +2321,14 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       entry(EfxDataType.Date.class, dateTypeName), //
       entry(EfxDataType.Time.class, timeTypeName));
 
+  private static final Map<String, Integer> typeNameToTokenType = Map.ofEntries(
+      entry(textTypeName, EfxLexer.Text), //
+      entry(booleanTypeName, EfxLexer.Indicator), //
+      entry(numericTypeName, EfxLexer.Number), //
+      entry(dateTypeName, EfxLexer.Date), //
+      entry(timeTypeName, EfxLexer.Time), //
+      entry(durationTypeName, EfxLexer.Measure));
+
   /**
    * The EFX expression pre-processor is used to remove expression ambiguities
    * that cannot be addressed by the EFX grammar itself. The EFX grammar tries to
@@ -1761,8 +2353,17 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
     final EfxLexer lexer;
     final CommonTokenStream tokens;
     final EfxParser parser;
-    final TokenStreamRewriter rewriter;
-    final CallStack stack = new CallStack();
+    CallStack stack = new CallStack();
+
+    /**
+     * Parses the preprocessed tokens. Created on first use and reused afterwards.
+     */
+    private EfxParser preprocessedParser;
+
+    /**
+     * The type casts to insert, by index of the token they must be inserted before.
+     */
+    private final Map<Integer, List<String>> typeCasts = new HashMap<>();
     
     ExpressionPreprocessor(String expression) {
       this(CharStreams.fromString(expression));
@@ -1774,10 +2375,9 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       this.symbols = EfxExpressionTranslatorV2.this.symbols;
       this.errorListener = EfxExpressionTranslatorV2.this.errorListener;
 
-      this.lexer = new EfxLexer(charStream);
+      this.lexer = DfaCaches.attach(new EfxLexer(charStream));
       this.tokens = new CommonTokenStream(lexer);
-      this.parser = new EfxParser(tokens);
-      this.rewriter = new TokenStreamRewriter(tokens);
+      this.parser = DfaCaches.attach(new EfxParser(tokens));
 
       if (this.errorListener != null) {
         lexer.removeErrorListeners();
@@ -1787,11 +2387,110 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       }
     }
 
-    String processExpression() {
-      final ParseTree tree = parser.singleExpression();
-      final ParseTreeWalker walker = new ParseTreeWalker();
-      walker.walk(this, tree);
-      return this.rewriter.getText();
+    /**
+     * Prepares the preprocessor for a new input, reusing its lexer and parser.
+     */
+    void reset(final CharStream charStream) {
+      this.lexer.setInputStream(charStream);
+      this.tokens.setTokenSource(this.lexer);
+      this.parser.setTokenStream(this.tokens);
+      this.stack = new CallStack();
+      this.typeCasts.clear();
+    }
+
+    /**
+     * Parses the expression and finds the type casts that need to be inserted.
+     * 
+     * @return The parse tree of the original expression. If {@link #hasTypeCasts()} returns false,
+     *         this is also the parse tree of the preprocessed expression and can be translated
+     *         directly.
+     */
+    ParseTree processExpression() {
+      final ParseTree tree = TwoStageParsing.parse(parser, EfxParser::singleExpression);
+      if (!EfxExpressionTranslatorV2.this.hasSyntaxErrors()) {
+        final ParseTreeWalker walker = CancellationToken.newWalker();
+        walker.walk(this, tree);
+      }
+      return tree;
+    }
+
+    @Override
+    public void enterEveryRule(ParserRuleContext ctx) {
+      EfxExpressionTranslatorV2.this.enterEveryRule(ctx);
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext ctx) {
+      EfxExpressionTranslatorV2.this.exitEveryRule(ctx);
+    }
+
+    /**
+     * @return True if type casts need to be inserted, in which case the tokens returned by
+     *         {@link #getPreprocessedTokens()} need to be parsed again.
+     */
+    boolean hasTypeCasts() {
+      return !this.typeCasts.isEmpty();
+    }
+
+    /**
+     * Returns the tokens of the preprocessed expression: the tokens produced by the lexer, with the
+     * tokens of the type casts inserted where needed. The input is therefore lexed only once, even
+     * when it needs to be parsed again.
+     * 
+     * @return A token source that can be used to parse the preprocessed expression.
+     */
+    TokenSource getPreprocessedTokens() {
+      this.tokens.fill();
+      final List<Token> result = new ArrayList<>(this.tokens.size() + 3 * this.typeCasts.size());
+      for (Token token : this.tokens.getTokens()) {
+        final List<String> casts = this.typeCasts.get(token.getTokenIndex());
+        if (casts != null) {
+          for (String typeName : casts) {
+            result.add(newToken(EfxLexer.OpenParenthesis, "(", token));
+            result.add(newToken(typeNameToTokenType.get(typeName), typeName, token));
+            result.add(newToken(EfxLexer.CloseParenthesis, ")", token));
+          }
+        }
+        result.add(new CommonToken(token));
+      }
+      return new ListTokenSource(result, this.lexer.getSourceName());
+    }
+
+    /**
+     * Parses the preprocessed tokens with the given start rule.
+     * 
+     * @param startRule The rule that was used to parse the original input.
+     * @return The parse tree of the preprocessed input.
+     */
+    <T extends ParserRuleContext> T parsePreprocessed(final Function<EfxParser, T> startRule) {
+      final CommonTokenStream preprocessedTokens =
+          new CommonTokenStream(this.getPreprocessedTokens());
+      if (this.preprocessedParser == null) {
+        this.preprocessedParser = DfaCaches.attach(new EfxParser(preprocessedTokens));
+        if (this.errorListener != null) {
+          this.preprocessedParser.removeErrorListeners();
+          this.preprocessedParser.addErrorListener(this.errorListener);
+        }
+      } else {
+        this.preprocessedParser.setTokenStream(preprocessedTokens);
+      }
+      return TwoStageParsing.parse(this.preprocessedParser, startRule);
+    }
+
+    /**
+     * Registers a type cast to be inserted before the given token. A cast inserted later is placed
+     * before any cast already inserted before the same token.
+     */
+    void insertTypeCast(final Token token, final String typeName) {
+      this.typeCasts.computeIfAbsent(token.getTokenIndex(), k -> new LinkedList<>())
+          .add(0, typeName);
+    }
+
+    private Token newToken(final int type, final String text, final Token position) {
+      final CommonToken token = new CommonToken(type, text);
+      token.setLine(position.getLine());
+      token.setCharPositionInLine(position.getCharPositionInLine());
+      return token;
     }
 
     @Override
@@ -1804,7 +2503,7 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       String fieldType = eFormsToEfxTypeMap.get(this.symbols.getTypeOfField(fieldId));
 
       // Insert the type cast
-      this.rewriter.insertBefore(ctx.getStart(), "(" + fieldType + ")");
+      this.insertTypeCast(ctx.getStart(), fieldType);
     }
 
     @Override
@@ -1814,7 +2513,7 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       }
 
       // Insert the type cast. For attributes, the type is always text.
-      this.rewriter.insertBefore(ctx.getStart(), "(" + textTypeName + ")");
+      this.insertTypeCast(ctx.getStart(), textTypeName);
     }
 
     @Override
@@ -1829,7 +2528,7 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
 
       if (fieldType != null) {
         // Insert the type cast
-        this.rewriter.insertBefore(ctx.getStart(), "(" + fieldType + ")");
+        this.insertTypeCast(ctx.getStart(), fieldType);
       }
     }
 
@@ -1840,7 +2539,7 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
       }
 
       // Insert the type cast
-      this.rewriter.insertBefore(ctx.getStart(), "(" + textTypeName + ")");
+      this.insertTypeCast(ctx.getStart(), textTypeName);
     }
 
     @Override
@@ -1854,7 +2553,7 @@ public class EfxExpressionTranslatorV2 extends EfxBaseListener
 
       if (variableType != null) {
         // Insert the type cast
-        this.rewriter.insertBefore(ctx.Variable().getSymbol(), "(" + variableType + ")");
+        this.insertTypeCast(ctx.Variable().getSymbol(), variableType);
       }
     }
 
@@ -1,17 +1,31 @@
 package eu.europa.ted.efx.sdk2;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.slf4j.Logger;
@@ -19,13 +33,18 @@ import org.slf4j.LoggerFactory;
 
 import eu.europa.ted.eforms.sdk.component.SdkComponent;
 import eu.europa.ted.eforms.sdk.component.SdkComponentType;
+import eu.europa.ted.efx.Diagnostic;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.interfaces.EfxTemplateTranslator;
 import eu.europa.ted.efx.interfaces.MarkupGenerator;
 import eu.europa.ted.efx.interfaces.ScriptGenerator;
+import eu.europa.ted.efx.interfaces.StreamingMarkupGenerator;
 import eu.europa.ted.efx.interfaces.SymbolResolver;
 import eu.europa.ted.efx.model.Context;
 import eu.europa.ted.efx.model.Context.FieldContext;
 import eu.europa.ted.efx.model.Context.NodeContext;
+import eu.europa.ted.efx.model.Dependencies;
 import eu.europa.ted.efx.model.expressions.Expression;
 import eu.europa.ted.efx.model.expressions.TypedExpression;
 import eu.europa.ted.efx.model.expressions.path.NodePathExpression;
@@ -44,10 +63,16 @@ import eu.europa.ted.efx.model.expressions.sequence.TimeSequenceExpression;
 import eu.europa.ted.efx.model.templates.ContentBlock;
 import eu.europa.ted.efx.model.templates.ContentBlockStack;
 import eu.europa.ted.efx.model.templates.Markup;
+import eu.europa.ted.efx.model.templates.TemplateModule;
+import eu.europa.ted.efx.model.templates.TemplateTranslationState;
+import eu.europa.ted.efx.model.templates.TemplateTranslationState.Block;
 import eu.europa.ted.efx.model.types.EfxDataType;
 import eu.europa.ted.efx.model.types.FieldTypes;
 import eu.europa.ted.efx.model.variables.Variable;
 import eu.europa.ted.efx.model.variables.VariableList;
+import eu.europa.ted.efx.parsing.CancellationToken;
+import eu.europa.ted.efx.parsing.MappedCharStream;
+import eu.europa.ted.efx.parsing.TwoStageParsing;
 import eu.europa.ted.efx.sdk2.EfxParser.AssetIdContext;
 import eu.europa.ted.efx.sdk2.EfxParser.AssetTypeContext;
 import eu.europa.ted.efx.sdk2.EfxParser.BooleanVariableInitializerContext;
@@ -107,6 +132,12 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
   private static final String ASSET_TYPE_NODE = getLexerSymbol(EfxLexer.ASSET_TYPE_NODE);
   private static final String ASSET_TYPE_CODE = getLexerSymbol(EfxLexer.Code);
 
+  /**
+   * Matches the beginning of a template line without indentation: an optional outline number
+   * followed by a context declaration block.
+   */
+  private static final Pattern TOP_LEVEL_LINE = Pattern.compile("^(\\d+[ \\t]*)?\\{");
+
   /**
    * Used to control the indentation style used in a template
    */
@@ -122,7 +153,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
    */
   MarkupGenerator markup;
 
-  final ContentBlock rootBlock = ContentBlock.newRootBlock();
+  ContentBlock rootBlock = ContentBlock.newRootBlock();
 
   /**
    * The block stack is used to keep track of the indentation of template lines and adjust the EFX
@@ -132,6 +163,19 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
    */
   ContentBlockStack blockStack = new ContentBlockStack();
 
+  /**
+   * The sink the translated template is written to, when rendering with a
+   * {@link StreamingMarkupGenerator}. Null when the translated template is returned as a string.
+   */
+  private Appendable output;
+
+  /**
+   * True when the output file is composed by the caller of {@link #walk(CharStream)} rather than
+   * by {@link #exitTemplateFile(TemplateFileContext)}, as when the template is translated one
+   * top-level block at a time, or as a module.
+   */
+  private boolean incremental;
+
   @SuppressWarnings("unused")
   private EfxTemplateTranslatorV2() {
     super();
@@ -151,7 +195,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
   @Override
   public String renderTemplate(final Path pathname) throws IOException {
 
-    return renderTemplate(CharStreams.fromPath(pathname));
+    return renderTemplate(MappedCharStream.open(pathname));
   }
 
   /**
@@ -162,38 +206,515 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
     return renderTemplate(CharStreams.fromString(template));
   }
 
+  @Override
+  public List<Diagnostic> validateTemplateSyntax(final String template) {
+    return validateSyntax(CharStreams.fromString(template), EfxParser::templateFile);
+  }
+
+  @Override
+  public Dependencies extractTemplateDependencies(final String template) {
+    return extractDependencies(CharStreams.fromString(template), EfxParser::templateFile);
+  }
+
   @Override
   public String renderTemplate(final InputStream stream) throws IOException {
     return renderTemplate(CharStreams.fromStream(stream));
   }
 
   private String renderTemplate(final CharStream charStream) {
+    return this.newTranslation().render(charStream);
+  }
+
+  @Override
+  public void renderTemplate(final Path pathname, final Appendable output) throws IOException {
+    renderTemplate(MappedCharStream.open(pathname), output);
+  }
+
+  @Override
+  public void renderTemplate(final String template, final Appendable output) throws IOException {
+    renderTemplate(CharStreams.fromString(template), output);
+  }
+
+  @Override
+  public void renderTemplate(final InputStream stream, final Appendable output)
+      throws IOException {
+    renderTemplate(CharStreams.fromStream(stream), output);
+  }
+
+  private void renderTemplate(final CharStream charStream, final Appendable output)
+      throws IOException {
+    if (this.markup instanceof StreamingMarkupGenerator) {
+      this.newTranslation().render(charStream, output);
+    } else {
+      output.append(renderTemplate(charStream));
+    }
+  }
+
+  @Override
+  public void renderTemplateIncrementally(final Reader template, final Appendable output)
+      throws IOException {
+    this.newTranslation().renderIncrementally(template, output);
+  }
+
+  @Override
+  public TranslationResult checkTemplate(final String template) {
+    final EfxTemplateTranslatorV2 translation =
+        (EfxTemplateTranslatorV2) this.newDiagnosticTranslation();
+    return translation.diagnose(template,
+        () -> translation.render(CharStreams.fromString(template)));
+  }
+
+  @Override
+  protected EfxTemplateTranslatorV2 newTranslation() {
+    if (this.getClass() != EfxTemplateTranslatorV2.class) {
+      throw new IllegalStateException(String.format(
+          "%s must override newTranslation() to return an instance of its own type.",
+          this.getClass().getName()));
+    }
+    return new EfxTemplateTranslatorV2(this.markup, this.symbols, this.script, this.errorListener);
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    this.indentWith = Indent.UNDETERMINED;
+    this.indentSpaces = -1;
+    this.rootBlock = ContentBlock.newRootBlock();
+    this.blockStack = new ContentBlockStack();
+    this.output = null;
+    this.incremental = false;
+  }
+
+  private String render(final CharStream charStream) {
+    this.reset();
+    this.walk(charStream);
+    return getTranslatedMarkup();
+  }
+
+  private void render(final CharStream charStream, final Appendable output) throws IOException {
+    this.reset();
+    this.output = output;
+    try {
+      this.walk(charStream);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Translates the template one top-level block at a time. The lines of the template are read
+   * until the next line that starts a top-level block. The lines read so far are then translated
+   * on their own, and the blocks they contain are rendered and released before reading on.
+   * 
+   * Comments, empty lines and indented lines never start a block. Neither can a line joined to the
+   * previous one, as template text cannot contain a '{'.
+   */
+  private void renderIncrementally(final Reader template, final Appendable output)
+      throws IOException {
+    this.reset();
+    this.incremental = true;
+
+    final BufferedReader reader = template instanceof BufferedReader ? (BufferedReader) template
+        : new BufferedReader(template);
+    final StreamingMarkupGenerator streaming = this.markup instanceof StreamingMarkupGenerator
+        ? (StreamingMarkupGenerator) this.markup
+        : null;
+    final List<Markup> templateCalls = new ArrayList<>();
+    final List<Markup> templates = new ArrayList<>();
+    final Consumer<Markup> fragments = streaming == null ? templates::add : fragment -> {
+      try {
+        streaming.writeFragmentDefinition(fragment, output);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+
+    try {
+      if (streaming != null) {
+        streaming.beginOutputFile(output);
+      }
+
+      final StringBuilder chunk = new StringBuilder();
+      int chunkLine = 1;
+      int lineNumber = 0;
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lineNumber++;
+        if (chunk.length() > 0 && TOP_LEVEL_LINE.matcher(line).find()) {
+          this.renderChunk(chunk.toString(), chunkLine, templateCalls, fragments);
+          chunk.setLength(0);
+          chunkLine = lineNumber;
+        }
+        chunk.append(line).append('\n');
+      }
+      if (chunk.length() > 0) {
+        this.renderChunk(chunk.toString(), chunkLine, templateCalls, fragments);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    if (streaming != null) {
+      streaming.endOutputFile(templateCalls, output);
+    } else {
+      output.append(this.markup.composeOutputFile(templateCalls, templates).script.trim());
+    }
+  }
+
+  private void renderChunk(final String chunk, final int firstLine,
+      final List<Markup> templateCalls, final Consumer<Markup> fragments) {
+    // Every chunk starts like a new template file, except for the indentation style and the
+    // numbering of the blocks.
+    super.reset();
+    this.blockStack = new ContentBlockStack();
+
+    this.walk(CharStreams.fromString(chunk), firstLine);
+
+    for (ContentBlock rootBlock : this.rootBlock.getChildren()) {
+      templateCalls.add(rootBlock.renderCallTemplate(markup));
+      rootBlock.renderTemplate(markup, fragments);
+    }
+    this.rootBlock.releaseChildren();
+  }
+
+  // #region Editing ----------------------------------------------------------
+
+  /**
+   * The state of the translator when it reaches a top-level block. Together with the source of the
+   * block, it determines the translation of the block.
+   */
+  private static final class BlockEntryState {
+    private final int rootBlockCount;
+    private final int maxRootBlockNumber;
+    private final Indent indentWith;
+    private final int indentSpaces;
+
+    BlockEntryState(final int rootBlockCount, final int maxRootBlockNumber,
+        final Indent indentWith, final int indentSpaces) {
+      this.rootBlockCount = rootBlockCount;
+      this.maxRootBlockNumber = maxRootBlockNumber;
+      this.indentWith = indentWith;
+      this.indentSpaces = indentSpaces;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(rootBlockCount, maxRootBlockNumber, indentWith, indentSpaces);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (obj == null)
+        return false;
+      if (getClass() != obj.getClass())
+        return false;
+      BlockEntryState other = (BlockEntryState) obj;
+      return rootBlockCount == other.rootBlockCount
+          && maxRootBlockNumber == other.maxRootBlockNumber && indentWith == other.indentWith
+          && indentSpaces == other.indentSpaces;
+    }
+  }
+
+  private BlockEntryState captureBlockEntryState() {
+    return new BlockEntryState(this.rootBlock.getChildCount(), this.rootBlock.getMaxChildNumber(),
+        this.indentWith, this.indentSpaces);
+  }
+
+  private void restoreBlockEntryState(final BlockEntryState state) {
+    this.rootBlock = ContentBlock.newRootBlock(state.rootBlockCount, state.maxRootBlockNumber);
+    this.indentWith = state.indentWith;
+    this.indentSpaces = state.indentSpaces;
+  }
+
+  /**
+   * Blocks translated by one translator can be reused by another only if both use the same
+   * dependencies.
+   */
+  private Object getBlockOwner() {
+    return Arrays.asList(this.markup, this.script, this.symbols);
+  }
+
+  @Override
+  public TemplateTranslationState translateForEditing(final String template) {
+    return this.newTranslation().translateLines(TemplateTranslationState.splitLines(template),
+        null);
+  }
+
+  @Override
+  public TemplateTranslationState translateEdit(final TemplateTranslationState previous,
+      final int firstLine, final int lastLine, final String text) {
+    return this.newTranslation()
+        .translateLines(previous.applyEdit(firstLine, lastLine, text), previous);
+  }
+
+  /**
+   * Translates the given template lines one top-level block at a time, like
+   * {@link #renderIncrementally(Reader, Appendable)} does. The translation of a block is taken
+   * from the previous state instead if the block has the same source and is reached in the same
+   * translator state (same number of preceding root blocks, same outline numbering and same
+   * indentation style), as it then necessarily translates the same.
+   */
+  private TemplateTranslationState translateLines(final List<String> lines,
+      final TemplateTranslationState previous) {
+    this.reset();
+    this.incremental = true;
+
+    final Object owner = this.getBlockOwner();
+    final Map<List<Object>, Block> reusableBlocks = new HashMap<>();
+    if (previous != null && owner.equals(previous.getOwner())) {
+      for (Block block : previous.getBlocks()) {
+        reusableBlocks.put(Arrays.asList(block.getSource(), block.getEntryState()), block);
+      }
+    }
+
+    final List<Block> blocks = new ArrayList<>();
+    final List<Integer> starts = findBlockStarts(lines);
+    for (int i = 0; i < starts.size(); i++) {
+      final String source = getBlockSource(lines, starts, i);
+      final BlockEntryState entryState = this.captureBlockEntryState();
+      Block block = reusableBlocks.get(Arrays.asList(source, entryState));
+      if (block == null) {
+        block = this.translateBlock(source, starts.get(i) + 1, entryState);
+      }
+      this.restoreBlockEntryState((BlockEntryState) block.getExitState());
+      blocks.add(block);
+    }
+
+    return new TemplateTranslationState(lines, blocks, owner, this.composeOutputFile(blocks));
+  }
+
+  /**
+   * Finds the lines that start a top-level block, as {@link #renderIncrementally(Reader, Appendable)}
+   * does. The first line always starts a block.
+   * 
+   * @return the indexes of the first line of each block.
+   */
+  private static List<Integer> findBlockStarts(final List<String> lines) {
+    final List<Integer> starts = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      if (i == 0 || TOP_LEVEL_LINE.matcher(lines.get(i)).find()) {
+        starts.add(i);
+      }
+    }
+    return starts;
+  }
+
+  private static String getBlockSource(final List<String> lines, final List<Integer> starts,
+      final int index) {
+    final int end = index + 1 < starts.size() ? starts.get(index + 1) : lines.size();
+    return TemplateTranslationState.joinLines(lines.subList(starts.get(index), end));
+  }
+
+  /**
+   * Translates a top-level block with a translator of its own, starting from the given state.
+   */
+  private Block translateBlock(final String source, final int firstLine,
+      final BlockEntryState entryState) {
+    final EfxTemplateTranslatorV2 translator = this.newTranslation();
+    translator.reset();
+    translator.incremental = true;
+    translator.restoreBlockEntryState(entryState);
+
+    final List<Markup> invocations = new ArrayList<>();
+    final List<Markup> fragments = new ArrayList<>();
+    translator.renderChunk(source, firstLine, invocations, fragments::add);
+    return new Block(source, entryState, translator.captureBlockEntryState(), invocations,
+        fragments);
+  }
+
+  private String composeOutputFile(final List<Block> blocks) {
+    final List<Markup> templateCalls = new ArrayList<>();
+    final List<Markup> templates = new ArrayList<>();
+    for (Block block : blocks) {
+      templateCalls.addAll(block.getInvocations());
+      templates.addAll(block.getFragments());
+    }
+    return this.markup.composeOutputFile(templateCalls, templates).script.trim();
+  }
+
+  // #endregion Editing
+
+  // #region Modules ----------------------------------------------------------
+
+  @Override
+  public TemplateModule compileTemplateModule(final String name, final String template) {
+    return this.newTranslation().compile(TemplateModule.checkName(name),
+        CharStreams.fromString(template));
+  }
+
+  /**
+   * Translates a template as a module. The blocks of the template are identified by the name of
+   * the module instead of "block", and numbered as if the template was on its own.
+   */
+  private TemplateModule compile(final String name, final CharStream charStream) {
+    this.reset();
+    this.incremental = true;
+    this.rootBlock = ContentBlock.newRootBlock(name);
+
+    this.walk(charStream);
+
+    final List<Markup> invocations = new ArrayList<>();
+    final List<Markup> fragments = new ArrayList<>();
+    for (ContentBlock rootBlock : this.rootBlock.getChildren()) {
+      invocations.add(rootBlock.renderCallTemplate(markup));
+      rootBlock.renderTemplate(markup, fragments);
+    }
+    return new TemplateModule(name, invocations, fragments);
+  }
+
+  @Override
+  public String linkTemplateModules(final List<TemplateModule> modules) {
+    final Set<String> names = new HashSet<>();
+    final List<Markup> templateCalls = new ArrayList<>();
+    final List<Markup> templates = new ArrayList<>();
+    for (TemplateModule module : modules) {
+      if (!names.add(module.getName())) {
+        throw new IllegalArgumentException(
+            String.format("Template module '%s' is linked more than once.", module.getName()));
+      }
+      templateCalls.addAll(module.getInvocations());
+      templates.addAll(module.getFragments());
+    }
+    return this.markup.composeOutputFile(templateCalls, templates).script.trim();
+  }
+
+  // #endregion Modules
+
+  // #region Parallel translation ---------------------------------------------
+
+  @Override
+  public String renderTemplateInParallel(final String template, final Executor executor) {
+    return this.newTranslation()
+        .renderInParallel(TemplateTranslationState.splitLines(template), executor);
+  }
+
+  /**
+   * Translates the top-level blocks of the template concurrently, each with a translator of its
+   * own.
+   * 
+   * A block is translated the same way wherever it is, except for the state the translator is in
+   * when it reaches it: the number of root blocks before it, their highest outline number and the
+   * indentation style. This state is guessed up front from the template lines, and every block is
+   * translated from its guessed state. The blocks are then checked in order: a block whose guessed
+   * state turns out to be wrong is translated again, from the actual state. The output, and the
+   * first error reported, are therefore the same as when translating sequentially.
+   */
+  private String renderInParallel(final List<String> lines, final Executor executor) {
+    this.reset();
+
+    final List<Integer> starts = findBlockStarts(lines);
+    final List<BlockEntryState> guessedStates = new ArrayList<>(starts.size());
+    final List<CompletableFuture<Block>> translations = new ArrayList<>(starts.size());
+    BlockEntryState guessedState = this.captureBlockEntryState();
+    for (int i = 0; i < starts.size(); i++) {
+      final String source = getBlockSource(lines, starts, i);
+      final int firstLine = starts.get(i) + 1;
+      final BlockEntryState entryState = guessedState;
+      guessedStates.add(entryState);
+      translations.add(CompletableFuture.supplyAsync(
+          CancellationToken.propagate(() -> this.translateBlock(source, firstLine, entryState)),
+          executor));
+      guessedState = guessExitState(entryState, source);
+    }
+
+    final List<Block> blocks = new ArrayList<>(starts.size());
+    BlockEntryState entryState = this.captureBlockEntryState();
+    try {
+      for (int i = 0; i < starts.size(); i++) {
+        final Block block = entryState.equals(guessedStates.get(i))
+            ? join(translations.get(i))
+            : this.translateBlock(getBlockSource(lines, starts, i), starts.get(i) + 1, entryState);
+        blocks.add(block);
+        entryState = (BlockEntryState) block.getExitState();
+      }
+    } finally {
+      for (CompletableFuture<Block> translation : translations) {
+        translation.cancel(false);
+      }
+    }
+
+    return this.composeOutputFile(blocks);
+  }
+
+  /**
+   * Guesses the state of the translator after a top-level block, from the text of the block. A
+   * wrong guess only means that the next block is translated twice.
+   */
+  private static BlockEntryState guessExitState(final BlockEntryState entryState,
+      final String source) {
+    int rootBlockCount = entryState.rootBlockCount;
+    int maxRootBlockNumber = entryState.maxRootBlockNumber;
+    Indent indentWith = entryState.indentWith;
+    int indentSpaces = entryState.indentSpaces;
+    for (String line : TemplateTranslationState.splitLines(source)) {
+      final Matcher matcher = TOP_LEVEL_LINE.matcher(line);
+      if (matcher.find()) {
+        final int number =
+            matcher.group(1) != null ? Integer.parseInt(matcher.group(1).trim()) : -1;
+        rootBlockCount++;
+        maxRootBlockNumber =
+            Math.max(maxRootBlockNumber, number >= 0 ? number : maxRootBlockNumber + 1);
+      } else if (indentWith == Indent.UNDETERMINED && !line.trim().isEmpty()
+          && !line.trim().startsWith("//")) {
+        if (line.startsWith("\t")) {
+          indentWith = Indent.TABS;
+        } else if (line.startsWith(" ")) {
+          indentWith = Indent.SPACES;
+          indentSpaces = line.length() - line.replaceAll("^ +", "").length();
+        }
+      }
+    }
+    return new BlockEntryState(rootBlockCount, maxRootBlockNumber, indentWith, indentSpaces);
+  }
+
+  private static <T> T join(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  // #endregion Parallel translation
+
+  private void walk(final CharStream charStream) {
+    this.walk(charStream, 1);
+  }
+
+  private void walk(final CharStream charStream, final int firstLine) {
     logger.debug("Rendering template");
 
     // New in EFX-2: template preprocessing
     final TemplatePreprocessor preprocessor = this.new TemplatePreprocessor(charStream);
-    final String preprocessedTemplate = preprocessor.processTemplate();
-
-    // Now parse the preprocessed template
-    final EfxLexer lexer = new EfxLexer(CharStreams.fromString(preprocessedTemplate));
-    final CommonTokenStream tokens = new CommonTokenStream(lexer);
-    final EfxParser parser = new EfxParser(tokens);
-
-    if (errorListener != null) {
-      lexer.removeErrorListeners();
-      lexer.addErrorListener(errorListener);
-      parser.removeErrorListeners();
-      parser.addErrorListener(errorListener);
+    preprocessor.lexer.setLine(firstLine);
+    ParseTree tree = preprocessor.processTemplate();
+    if (this.hasSyntaxErrors()) {
+      return;
     }
 
-    final ParseTree tree = parser.templateFile();
+    // If type casts were inserted, parse the preprocessed tokens again. Otherwise the parse tree
+    // produced by the preprocessor is the one we need. Any template referring to a field, variable
+    // or parameter without a type cast takes the first branch, so it is still parsed twice: only
+    // the second lexing is saved.
+    if (preprocessor.hasTypeCasts()) {
+      this.reportErrorsAs(Diagnostic.Kind.SEMANTIC);
+      tree = preprocessor.parsePreprocessed(EfxParser::templateFile);
+      if (this.hasSyntaxErrors()) {
+        return;
+      }
+    }
 
-    final ParseTreeWalker walker = new ParseTreeWalker();
+    final ParseTreeWalker walker = CancellationToken.newWalker();
     walker.walk(this, tree);
 
     logger.debug("Finished rendering template");
-
-    return getTranslatedMarkup();
   }
 
   /**
@@ -207,14 +728,14 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
   private String getTranslatedMarkup() {
     logger.debug("Getting translated markup.");
 
-    final StringBuilder sb = new StringBuilder(64);
+    final LinkedList<String> scripts = new LinkedList<>();
     while (!this.stack.empty()) {
-      sb.insert(0, '\n').insert(0, this.stack.pop(Markup.class).script);
+      scripts.addFirst(this.stack.pop(Markup.class).script);
     }
 
     logger.debug("Finished getting translated markup.");
 
-    return sb.toString().trim();
+    return String.join("\n", scripts).trim();
   }
 
   // #region Template File ----------------------------------------------------
@@ -226,8 +747,17 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
 
   @Override
   public void exitTemplateFile(TemplateFileContext ctx) {
+    if (this.incremental) {
+      return;
+    }
+
     this.blockStack.pop();
 
+    if (this.output != null) {
+      this.writeOutputFile((StreamingMarkupGenerator) this.markup, this.output);
+      return;
+    }
+
     List<Markup> templateCalls = new ArrayList<>();
     List<Markup> templates = new ArrayList<>();
     for (ContentBlock rootBlock : this.rootBlock.getChildren()) {
@@ -238,6 +768,30 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
     this.stack.push(file);
   }
 
+  /**
+   * Writes the output file piece by piece, so that fragment definitions are written as soon as
+   * they are rendered rather than collected first.
+   */
+  private void writeOutputFile(final StreamingMarkupGenerator generator, final Appendable output) {
+    try {
+      generator.beginOutputFile(output);
+      List<Markup> templateCalls = new ArrayList<>();
+      for (ContentBlock rootBlock : this.rootBlock.getChildren()) {
+        templateCalls.add(rootBlock.renderCallTemplate(markup));
+        rootBlock.renderTemplate(markup, (Markup fragment) -> {
+          try {
+            generator.writeFragmentDefinition(fragment, output);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+      generator.endOutputFile(templateCalls, output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   // #endregion Template File -------------------------------------------------
   
   // #region Source template blocks -------------------------------------------
@@ -452,7 +1006,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
             quantity));
         break;
       default:
-        throw new ParseCancellationException(String.format(
+        throw new EfxTranslationException(String.format(
             "Unexpected field type '%s'. Expected a field of either type 'code' or 'indicator'.",
             fieldType));
     }
@@ -503,7 +1057,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
   public void exitShorthandIndirectLabelReferenceFromContextField(
       ShorthandIndirectLabelReferenceFromContextFieldContext ctx) {
     if (!this.efxContext.isFieldContext()) {
-      throw new ParseCancellationException(
+      throw new EfxTranslationException(
           "The #value shorthand syntax can only be used if a field is declared as context.");
     }
     this.shorthandIndirectLabelReference(this.efxContext.symbol(), NumericExpression.empty());
@@ -598,7 +1152,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
   public void exitShorthandFieldValueReferenceFromContextField(
       ShorthandFieldValueReferenceFromContextFieldContext ctx) {
     if (!this.efxContext.isFieldContext()) {
-      throw new ParseCancellationException(
+      throw new EfxTranslationException(
           "The $value shorthand syntax can only be used when a field is declared as the context.");
     }
     this.stack.push(this.script.composeFieldValueReference(
@@ -744,7 +1298,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
       this.stack.push(variables);
       this.stack.declareIdentifier(variable);
     } catch (Exception e) {
-      throw new ParseCancellationException(e);
+      throw new EfxTranslationException(e);
     }
   }
 
@@ -769,10 +1323,10 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
     final int indentLevel = this.getIndentLevel(ctx);
     final int indentChange = indentLevel - this.blockStack.currentIndentationLevel();
     if (indentChange > 1) {
-      throw new ParseCancellationException(INDENTATION_LEVEL_SKIPPED);
+      throw new EfxTranslationException(INDENTATION_LEVEL_SKIPPED);
     } else if (indentChange == 1) {
       if (this.blockStack.isEmpty()) {
-        throw new ParseCancellationException(START_INDENT_AT_ZERO);
+        throw new EfxTranslationException(START_INDENT_AT_ZERO);
       }
       this.stack.pushStackFrame(); // Create a stack frame for the new template line.
     } else if (indentChange < 0) {
@@ -805,10 +1359,10 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
     assert this.stack.empty() : "Stack should be empty at this point.";
 
     if (indentChange > 1) {
-      throw new ParseCancellationException(INDENTATION_LEVEL_SKIPPED);
+      throw new EfxTranslationException(INDENTATION_LEVEL_SKIPPED);
     } else if (indentChange == 1) {
       if (this.blockStack.isEmpty()) {
-        throw new ParseCancellationException(START_INDENT_AT_ZERO);
+        throw new EfxTranslationException(START_INDENT_AT_ZERO);
       }
       this.blockStack.pushChild(outlineNumber, content,
           this.relativizeContext(lineContext, this.blockStack.currentContext()), variables);
@@ -850,7 +1404,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
 
   private int getIndentLevel(TemplateLineContext ctx) {
     if (ctx.MixedIndent() != null) {
-      throw new ParseCancellationException(MIXED_INDENTATION);
+      throw new EfxTranslationException(MIXED_INDENTATION);
     }
 
     if (ctx.Spaces() != null) {
@@ -858,11 +1412,11 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
         this.indentWith = Indent.SPACES;
         this.indentSpaces = ctx.Spaces().getText().length();
       } else if (this.indentWith == Indent.TABS) {
-        throw new ParseCancellationException(MIXED_INDENTATION);
+        throw new EfxTranslationException(MIXED_INDENTATION);
       }
 
       if (ctx.Spaces().getText().length() % this.indentSpaces != 0) {
-        throw new ParseCancellationException(
+        throw new EfxTranslationException(
             String.format(INCONSISTENT_INDENTATION_SPACES, this.indentSpaces));
       }
       return ctx.Spaces().getText().length() / this.indentSpaces;
@@ -870,7 +1424,7 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
       if (this.indentWith == Indent.UNDETERMINED) {
         this.indentWith = Indent.TABS;
       } else if (this.indentWith == Indent.SPACES) {
-        throw new ParseCancellationException(MIXED_INDENTATION);
+        throw new EfxTranslationException(MIXED_INDENTATION);
       }
 
       return ctx.Tabs().getText().length();
@@ -920,11 +1474,19 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
       super(template);
     }
 
-    String processTemplate() {
-      final ParseTree tree = parser.templateFile();
-      final ParseTreeWalker walker = new ParseTreeWalker();
-      walker.walk(this, tree);
-      return this.rewriter.getText();
+    /**
+     * Parses the template and finds the type casts that need to be inserted.
+     * 
+     * @return The parse tree of the original template. If {@link #hasTypeCasts()} returns false,
+     *         this is also the parse tree of the preprocessed template.
+     */
+    ParseTree processTemplate() {
+      final ParseTree tree = TwoStageParsing.parse(parser, EfxParser::templateFile);
+      if (!EfxTemplateTranslatorV2.this.hasSyntaxErrors()) {
+        final ParseTreeWalker walker = CancellationToken.newWalker();
+        walker.walk(this, tree);
+      }
+      return tree;
     }
 
     // #region Template Variables ---------------------------------------------
@@ -982,10 +1544,10 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
       final int indentLevel = EfxTemplateTranslatorV2.this.getIndentLevel(ctx);
       final int indentChange = indentLevel - (this.levels.isEmpty() ? 0 : this.levels.peek());
       if (indentChange > 1) {
-        throw new ParseCancellationException(INDENTATION_LEVEL_SKIPPED);
+        throw new EfxTranslationException(INDENTATION_LEVEL_SKIPPED);
       } else if (indentChange == 1) {
         if (this.levels.isEmpty()) {
-          throw new ParseCancellationException(START_INDENT_AT_ZERO);
+          throw new EfxTranslationException(START_INDENT_AT_ZERO);
         }
         this.stack.pushStackFrame(); // Create a stack frame for the new template line.
       } else if (indentChange < 0) {
@@ -1011,10 +1573,10 @@ public class EfxTemplateTranslatorV2 extends EfxExpressionTranslatorV2
       assert this.stack.empty() : "Stack should be empty at this point.";
 
       if (indentChange > 1) {
-        throw new ParseCancellationException(INDENTATION_LEVEL_SKIPPED);
+        throw new EfxTranslationException(INDENTATION_LEVEL_SKIPPED);
       } else if (indentChange == 1) {
         if (this.levels.isEmpty()) {
-          throw new ParseCancellationException(START_INDENT_AT_ZERO);
+          throw new EfxTranslationException(START_INDENT_AT_ZERO);
         }
         this.levels.push(this.levels.peek() + 1);
       } else if (indentChange == 0) {
@@ -10,11 +10,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import org.antlr.v4.runtime.misc.ParseCancellationException;
-
 import eu.europa.ted.eforms.sdk.component.SdkComponent;
 import eu.europa.ted.eforms.sdk.component.SdkComponentType;
 import eu.europa.ted.eforms.xpath.XPathProcessor;
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
 import eu.europa.ted.efx.interfaces.ScriptGenerator;
 import eu.europa.ted.efx.interfaces.TranslatorOptions;
 import eu.europa.ted.efx.model.expressions.Expression;
@@ -251,7 +250,7 @@ public class XPathScriptGenerator implements ScriptGenerator {
       Constructor<T> ctor = type.getConstructor(String.class);
       return ctor.newInstance("(" + expression.getScript() + ")");
     } catch (Exception e) {
-      throw new ParseCancellationException(e);
+      throw new EfxTranslationException(e);
     }
   }
 
@@ -0,0 +1,126 @@
+package eu.europa.ted.efx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.component.EfxTranslatorFactory;
+import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.model.DecimalFormat;
+
+class TranslationProcessorTest {
+  private static final String SDK_VERSION = "eforms-sdk-2.0";
+
+  private static EfxExpressionTranslator getTranslator() throws InstantiationException {
+    return EfxTranslatorFactory.getEfxExpressionTranslator(SDK_VERSION,
+        DependencyFactoryMock.INSTANCE, new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+  }
+
+  /**
+   * Publishes the items of a list synchronously, keeping track of the demand it received.
+   */
+  private static class ListPublisher implements Flow.Publisher<String> {
+    private final Iterator<String> items;
+    private long requested;
+
+    ListPublisher(List<String> items) {
+      this.items = items.iterator();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+          requested += n;
+          for (long i = 0; i < n && items.hasNext(); i++) {
+            subscriber.onNext(items.next());
+          }
+          if (!items.hasNext()) {
+            subscriber.onComplete();
+          }
+        }
+
+        @Override
+        public void cancel() {}
+      });
+    }
+  }
+
+  /**
+   * Requests one result at a time, up to a given number of results.
+   */
+  private static class CollectingSubscriber implements Flow.Subscriber<TranslationResult> {
+    private final List<TranslationResult> results = new ArrayList<>();
+    private final int limit;
+    private Flow.Subscription subscription;
+    private boolean completed;
+
+    CollectingSubscriber(int limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(TranslationResult item) {
+      results.add(item);
+      if (results.size() < limit) {
+        subscription.request(1);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {}
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  @Test
+  void testTranslationProcessor() throws InstantiationException {
+    final EfxExpressionTranslator translator = getTranslator();
+    final ListPublisher publisher = new ListPublisher(List.of("{ND-Root} ${BT-00-Number > 0}",
+        "{ND-Root} ${1 + }", "{ND-Root} ${BT-00-Number > 2}"));
+    final TranslationProcessor processor = TranslationProcessor.forExpressions(translator);
+    final CollectingSubscriber subscriber = new CollectingSubscriber(Integer.MAX_VALUE);
+
+    processor.subscribe(subscriber);
+    publisher.subscribe(processor);
+
+    assertTrue(subscriber.completed);
+    assertEquals(3, subscriber.results.size());
+    assertEquals("PathNode/NumberField/number() > 0", subscriber.results.get(0).getTranslation());
+    assertFalse(subscriber.results.get(1).isSuccessful());
+    assertEquals("PathNode/NumberField/number() > 2", subscriber.results.get(2).getTranslation());
+  }
+
+  @Test
+  void testTranslationProcessor_BackPressure() throws InstantiationException {
+    final EfxExpressionTranslator translator = getTranslator();
+    final ListPublisher publisher = new ListPublisher(IntStream.range(0, 10)
+        .mapToObj(i -> "{ND-Root} ${BT-00-Number > " + i + "}").collect(Collectors.toList()));
+    final TranslationProcessor processor = TranslationProcessor.forExpressions(translator);
+    final CollectingSubscriber subscriber = new CollectingSubscriber(2);
+
+    publisher.subscribe(processor);
+    processor.subscribe(subscriber);
+
+    assertEquals(2, publisher.requested);
+    assertEquals(2, subscriber.results.size());
+    assertFalse(subscriber.completed);
+  }
+}
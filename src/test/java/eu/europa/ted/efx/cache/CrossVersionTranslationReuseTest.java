@@ -0,0 +1,147 @@
+package eu.europa.ted.efx.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.interfaces.MarkupGenerator;
+import eu.europa.ted.efx.interfaces.ScriptGenerator;
+import eu.europa.ted.efx.interfaces.SymbolResolver;
+import eu.europa.ted.efx.interfaces.TranslatorDependencyFactory;
+import eu.europa.ted.efx.interfaces.TranslatorOptions;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.mock.sdk2.SymbolResolverMockV2;
+import eu.europa.ted.efx.model.expressions.path.PathExpression;
+
+class CrossVersionTranslationReuseTest {
+
+  private static final String PREVIOUS_VERSION = "eforms-sdk-2.0";
+  private static final String CURRENT_VERSION = "eforms-sdk-2.1";
+
+  /**
+   * Provides the mock metadata of SDK 2.0 for both versions, except that in the current version
+   * BT-00-Number has moved.
+   */
+  private static class VersionedDependencyFactory implements TranslatorDependencyFactory {
+
+    @Override
+    public SymbolResolver createSymbolResolver(String sdkVersion, String qualifier) {
+      if (!sdkVersion.equals(CURRENT_VERSION)) {
+        return DependencyFactoryMock.INSTANCE.createSymbolResolver(sdkVersion, qualifier);
+      }
+      try {
+        return new SymbolResolverMockV2() {
+          @Override
+          public PathExpression getAbsolutePathOfField(final String fieldId) {
+            final PathExpression path = super.getAbsolutePathOfField(fieldId);
+            return fieldId.equals("BT-00-Number")
+                ? PathExpression.instantiate("/*/PathNode/MovedNumberField", path.getDataType())
+                : path;
+          }
+        };
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public ScriptGenerator createScriptGenerator(String sdkVersion, String qualifier,
+        TranslatorOptions options) {
+      return DependencyFactoryMock.INSTANCE.createScriptGenerator(PREVIOUS_VERSION, qualifier,
+          options);
+    }
+
+    @Override
+    public MarkupGenerator createMarkupGenerator(String sdkVersion, String qualifier,
+        TranslatorOptions options) {
+      return DependencyFactoryMock.INSTANCE.createMarkupGenerator(PREVIOUS_VERSION, qualifier,
+          options);
+    }
+
+    @Override
+    public BaseErrorListener createErrorListener() {
+      return DependencyFactoryMock.INSTANCE.createErrorListener();
+    }
+  }
+
+  private static final TranslatorDependencyFactory FACTORY = new VersionedDependencyFactory();
+
+  private static String translate(final CrossVersionTranslationReuse reuse,
+      final String sdkVersion, final String expression) throws InstantiationException {
+    return translate(reuse, FACTORY, sdkVersion, expression);
+  }
+
+  private static String translate(final CrossVersionTranslationReuse reuse,
+      final TranslatorDependencyFactory factory, final String sdkVersion,
+      final String expression) throws InstantiationException {
+    EfxTranslator.setCrossVersionReuse(reuse);
+    try {
+      return EfxTranslator.translateExpression(factory, sdkVersion, expression);
+    } finally {
+      EfxTranslator.setCrossVersionReuse(null);
+    }
+  }
+
+  @Test
+  void testReuse_UnchangedSymbols() throws InstantiationException {
+    final CrossVersionTranslationReuse reuse = new CrossVersionTranslationReuse();
+    final String previous = translate(reuse, PREVIOUS_VERSION, "{ND-Root} ${BT-00-Text == 'a'}");
+    final String current = translate(reuse, CURRENT_VERSION, "{ND-Root} ${BT-00-Text == 'a'}");
+
+    assertEquals(previous, current);
+    assertEquals(1, reuse.getTranslationCount());
+    assertEquals(1, reuse.getReuseCount());
+  }
+
+  @Test
+  void testReuse_ChangedSymbols() throws InstantiationException {
+    final CrossVersionTranslationReuse reuse = new CrossVersionTranslationReuse();
+    final String previous = translate(reuse, PREVIOUS_VERSION, "{ND-Root} ${BT-00-Number > 0}");
+    final String current = translate(reuse, CURRENT_VERSION, "{ND-Root} ${BT-00-Number > 0}");
+
+    assertNotEquals(previous, current);
+    assertTrue(current.contains("MovedNumberField"));
+    assertEquals(2, reuse.getTranslationCount());
+    assertEquals(0, reuse.getReuseCount());
+  }
+
+  @Test
+  void testReuse_PerFactoryInstance() throws InstantiationException {
+    final CrossVersionTranslationReuse reuse = new CrossVersionTranslationReuse();
+    translate(reuse, PREVIOUS_VERSION, "{ND-Root} ${BT-00-Text == 'a'}");
+    translate(reuse, new VersionedDependencyFactory(), PREVIOUS_VERSION,
+        "{ND-Root} ${BT-00-Text == 'a'}");
+
+    assertEquals(2, reuse.getTranslationCount());
+    assertEquals(0, reuse.getReuseCount());
+  }
+
+  @Test
+  void testSymbolMetadata() throws InstantiationException {
+    final CrossVersionTranslationReuse reuse = new CrossVersionTranslationReuse();
+    final String expression = "{ND-Root} ${BT-00-Number > 0 and BT-00-Code in #accessibility}";
+    translate(reuse, PREVIOUS_VERSION, expression);
+
+    final SymbolMetadata metadata = reuse.getSymbolMetadata(FACTORY, PREVIOUS_VERSION, "",
+        EfxTranslatorOptions.DEFAULT, expression);
+    assertTrue(metadata.getSymbols().containsAll(
+        Set.of("node:ND-Root", "field:BT-00-Number", "field:BT-00-Code", "codelist:accessibility")));
+    assertTrue(metadata.getDescription("field:BT-00-Number").contains("NumberField"));
+  }
+
+  @Test
+  void testDiff() throws InstantiationException {
+    final CrossVersionTranslationReuse reuse = new CrossVersionTranslationReuse();
+    translate(reuse, PREVIOUS_VERSION, "{ND-Root} ${BT-00-Text == 'a'}");
+    translate(reuse, PREVIOUS_VERSION, "{ND-Root} ${BT-00-Number > 0}");
+
+    assertEquals(Set.of("field:BT-00-Number"),
+        reuse.diff(FACTORY, PREVIOUS_VERSION, CURRENT_VERSION, ""));
+  }
+}
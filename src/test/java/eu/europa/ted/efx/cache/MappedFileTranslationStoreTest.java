@@ -0,0 +1,143 @@
+package eu.europa.ted.efx.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.cache.TranslationCacheKey.Kind;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+
+class MappedFileTranslationStoreTest {
+
+  private static TranslationCacheKey key(final String sdkVersion, final String source) {
+    return new TranslationCacheKey(Kind.EXPRESSION, DependencyFactoryMock.INSTANCE, sdkVersion,
+        "", EfxTranslatorOptions.DEFAULT, source);
+  }
+
+  private static Path newStoreFile() throws IOException {
+    final Path path = Files.createTempFile("efx-translations", ".bin");
+    Files.delete(path);
+    path.toFile().deleteOnExit();
+    return path;
+  }
+
+  @Test
+  void testPutAndGet() throws IOException {
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(newStoreFile())) {
+      store.put(key("eforms-sdk-2.0", "1 + 1"), "1 + 1");
+      store.put(key("eforms-sdk-2.0", "'été'"), "'été'");
+
+      assertEquals("1 + 1", store.get(key("eforms-sdk-2.0", "1 + 1")));
+      assertEquals("'été'", store.get(key("eforms-sdk-2.0", "'été'")));
+      assertNull(store.get(key("eforms-sdk-1.0", "1 + 1")));
+      assertEquals(2, store.size());
+    }
+  }
+
+  @Test
+  void testPut_ExistingKeyIsIgnored() throws IOException {
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(newStoreFile())) {
+      store.put(key("eforms-sdk-2.0", "x"), "first");
+      store.put(key("eforms-sdk-2.0", "x"), "second");
+
+      assertEquals("first", store.get(key("eforms-sdk-2.0", "x")));
+      assertEquals(1, store.size());
+    }
+  }
+
+  @Test
+  void testReopen() throws IOException {
+    final Path path = newStoreFile();
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path)) {
+      store.put(key("eforms-sdk-2.0", "x"), "translated");
+    }
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path)) {
+      assertEquals("translated", store.get(key("eforms-sdk-2.0", "x")));
+    }
+  }
+
+  @Test
+  void testGrowth() throws IOException {
+    final Path path = newStoreFile();
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path, 64)) {
+      for (int i = 0; i < 100; i++) {
+        store.put(key("eforms-sdk-2.0", "x" + i), "translation " + i);
+      }
+      for (int i = 0; i < 100; i++) {
+        assertEquals("translation " + i, store.get(key("eforms-sdk-2.0", "x" + i)));
+      }
+    }
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path, 64)) {
+      assertEquals(100, store.size());
+    }
+  }
+
+  @Test
+  void testInvalidFile() throws IOException {
+    final Path path = newStoreFile();
+    Files.writeString(path, "this is not a translation store");
+    assertThrows(IOException.class, () -> new MappedFileTranslationStore(path));
+    assertEquals("this is not a translation store", Files.readString(path));
+  }
+
+  /**
+   * Overwrites part of a closed store file.
+   */
+  private static void overwrite(final Path path, final int offset, final ByteBuffer bytes)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(bytes, offset);
+    }
+  }
+
+  @Test
+  void testCorruptFile_EndBeyondFile() throws IOException {
+    final Path path = newStoreFile();
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path, 64)) {
+      store.put(key("eforms-sdk-2.0", "x"), "translated");
+    }
+    overwrite(path, 8, ByteBuffer.allocate(Long.BYTES).putLong(0, Integer.MAX_VALUE));
+
+    final IOException error =
+        assertThrows(IOException.class, () -> new MappedFileTranslationStore(path, 64));
+    assertTrue(error.getMessage().contains(path.toString()));
+  }
+
+  @Test
+  void testCorruptFile_InvalidRecordLength() throws IOException {
+    final Path path = newStoreFile();
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path, 64)) {
+      store.put(key("eforms-sdk-2.0", "x"), "translated");
+    }
+    // The length of the first record follows the 16 byte header and the 32 byte digest.
+    overwrite(path, 48, ByteBuffer.allocate(Integer.BYTES).putInt(0, -1));
+    assertThrows(IOException.class, () -> new MappedFileTranslationStore(path, 64));
+
+    overwrite(path, 48, ByteBuffer.allocate(Integer.BYTES).putInt(0, 1 << 20));
+    assertThrows(IOException.class, () -> new MappedFileTranslationStore(path, 64));
+  }
+
+  @Test
+  void testTranslationCache_SecondLevel() throws IOException {
+    final Path path = newStoreFile();
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path)) {
+      new TranslationCache(store).get(key("eforms-sdk-2.0", "x"), () -> "translated");
+    }
+    try (MappedFileTranslationStore store = new MappedFileTranslationStore(path)) {
+      final TranslationCache cache = new TranslationCache(store);
+      assertEquals("translated", cache.get(key("eforms-sdk-2.0", "x"), () -> {
+        throw new IllegalStateException("Should have been found in the store");
+      }));
+      assertEquals(0, cache.getMissCount());
+      assertEquals(1, cache.getSecondLevelHitCount());
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package eu.europa.ted.efx.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.cache.TranslationCacheKey.Kind;
+import eu.europa.ted.efx.interfaces.MarkupGenerator;
+import eu.europa.ted.efx.interfaces.ScriptGenerator;
+import eu.europa.ted.efx.interfaces.SymbolResolver;
+import eu.europa.ted.efx.interfaces.TranslatorDependencyFactory;
+import eu.europa.ted.efx.interfaces.TranslatorOptions;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.model.DecimalFormat;
+
+class TranslationCacheTest {
+
+  private static TranslationCacheKey key(final String source, final String... parameters) {
+    return new TranslationCacheKey(Kind.EXPRESSION, DependencyFactoryMock.INSTANCE,
+        "eforms-sdk-2.0", "", EfxTranslatorOptions.DEFAULT, source, parameters);
+  }
+
+  @Test
+  void testKey_EquivalentOptions() {
+    final TranslationCacheKey first = new TranslationCacheKey(Kind.EXPRESSION,
+        DependencyFactoryMock.INSTANCE, "eforms-sdk-2.0", "",
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT, "en", "fr"), "1 + 1");
+    final TranslationCacheKey second = new TranslationCacheKey(Kind.EXPRESSION,
+        DependencyFactoryMock.INSTANCE, "eforms-sdk-2.0", "",
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT, "en", "fr"), "1 + 1");
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+  }
+
+  @Test
+  void testKey_DifferentParameters() {
+    assertNotEquals(key("$p", "1"), key("$p", "2"));
+  }
+
+  @Test
+  void testKey_DifferentFactoryInstances() {
+    final TranslatorDependencyFactory first = new ConfiguredFactory("a");
+    final TranslatorDependencyFactory second = new ConfiguredFactory("a");
+    final TranslatorDependencyFactory third = new ConfiguredFactory("b");
+    final TranslationCacheKey firstKey = new TranslationCacheKey(Kind.EXPRESSION, first,
+        "eforms-sdk-2.0", "", EfxTranslatorOptions.DEFAULT, "1 + 1");
+    final TranslationCacheKey secondKey = new TranslationCacheKey(Kind.EXPRESSION, second,
+        "eforms-sdk-2.0", "", EfxTranslatorOptions.DEFAULT, "1 + 1");
+    final TranslationCacheKey thirdKey = new TranslationCacheKey(Kind.EXPRESSION, third,
+        "eforms-sdk-2.0", "", EfxTranslatorOptions.DEFAULT, "1 + 1");
+
+    assertNotEquals(firstKey, secondKey);
+    assertTrue(Arrays.equals(firstKey.digest(), secondKey.digest()));
+    assertFalse(Arrays.equals(firstKey.digest(), thirdKey.digest()));
+  }
+
+  @Test
+  void testKey_CopiesParameters() {
+    final String[] parameters = {"1"};
+    final TranslationCacheKey key = new TranslationCacheKey(Kind.EXPRESSION,
+        DependencyFactoryMock.INSTANCE, "eforms-sdk-2.0", "", EfxTranslatorOptions.DEFAULT, "$p",
+        parameters);
+    parameters[0] = "2";
+
+    assertEquals(List.of("1"), key.getParameters());
+    assertEquals(key("$p", "1"), key);
+  }
+
+  @Test
+  void testOptions_WithLanguageDoesNotMutate() {
+    final EfxTranslatorOptions french = EfxTranslatorOptions.DEFAULT.withLanguage("fr");
+    assertEquals("en", EfxTranslatorOptions.DEFAULT.getPrimaryLanguage2LetterCode());
+    assertEquals("fr", french.getPrimaryLanguage2LetterCode());
+    assertNotEquals(TranslationCacheKey.fingerprint(EfxTranslatorOptions.DEFAULT),
+        TranslationCacheKey.fingerprint(french));
+  }
+
+  @Test
+  void testGet_HitsAndMisses() {
+    final TranslationCache cache = new TranslationCache();
+    final AtomicInteger loads = new AtomicInteger();
+
+    assertEquals("a", cache.get(key("x"), () -> { loads.incrementAndGet(); return "a"; }));
+    assertEquals("a", cache.get(key("x"), () -> { loads.incrementAndGet(); return "b"; }));
+
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  void testEviction_ByEntries() {
+    final TranslationCache cache = new TranslationCache(2, Long.MAX_VALUE);
+    cache.put(key("a"), "1");
+    cache.put(key("b"), "2");
+    cache.getIfPresent(key("a"));
+    cache.put(key("c"), "3");
+
+    assertEquals(2, cache.size());
+    assertNull(cache.getIfPresent(key("b")));
+    assertEquals("1", cache.getIfPresent(key("a")));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  void testEviction_ByWeight() {
+    final TranslationCache cache = new TranslationCache(100, 9);
+    cache.put(key("aa"), "111");
+    cache.put(key("bb"), "222");
+    cache.put(key("cc"), "333");
+
+    assertEquals(1, cache.size());
+    assertEquals(5, cache.getWeight());
+    assertEquals("333", cache.getIfPresent(key("cc")));
+  }
+
+  @Test
+  void testGet_FailureIsNotCached() {
+    final TranslationCache cache = new TranslationCache();
+    assertThrows(ParseCancellationException.class, () -> cache.get(key("x"), () -> {
+      throw new ParseCancellationException("failed");
+    }));
+    assertEquals("ok", cache.get(key("x"), () -> "ok"));
+  }
+
+  @Test
+  void testGet_ConcurrentRequestsAreCoalesced() throws Exception {
+    final TranslationCache cache = new TranslationCache();
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<String>> results = new ArrayList<>();
+      results.add(executor.submit(() -> cache.get(key("x"), () -> {
+        loads.incrementAndGet();
+        started.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "translated";
+      })));
+      started.await(10, TimeUnit.SECONDS);
+      for (int i = 0; i < 7; i++) {
+        results.add(executor.submit(() -> cache.get(key("x"), () -> {
+          loads.incrementAndGet();
+          return "translated";
+        })));
+      }
+      release.countDown();
+      for (Future<String> result : results) {
+        assertEquals("translated", result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(7, cache.getHitCount());
+  }
+
+  /**
+   * A factory whose translations depend on how it is configured.
+   */
+  private static class ConfiguredFactory implements TranslatorDependencyFactory {
+
+    private final String configuration;
+
+    ConfiguredFactory(final String configuration) {
+      this.configuration = configuration;
+    }
+
+    @Override
+    public SymbolResolver createSymbolResolver(String sdkVersion, String qualifier) {
+      return DependencyFactoryMock.INSTANCE.createSymbolResolver(sdkVersion, qualifier);
+    }
+
+    @Override
+    public ScriptGenerator createScriptGenerator(String sdkVersion, String qualifier,
+        TranslatorOptions options) {
+      return DependencyFactoryMock.INSTANCE.createScriptGenerator(sdkVersion, qualifier, options);
+    }
+
+    @Override
+    public MarkupGenerator createMarkupGenerator(String sdkVersion, String qualifier,
+        TranslatorOptions options) {
+      return DependencyFactoryMock.INSTANCE.createMarkupGenerator(sdkVersion, qualifier, options);
+    }
+
+    @Override
+    public BaseErrorListener createErrorListener() {
+      return DependencyFactoryMock.INSTANCE.createErrorListener();
+    }
+
+    @Override
+    public String getCacheIdentity() {
+      return TranslatorDependencyFactory.super.getCacheIdentity() + ":" + this.configuration;
+    }
+  }
+}
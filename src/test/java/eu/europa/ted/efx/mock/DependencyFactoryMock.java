@@ -33,8 +33,7 @@ public class DependencyFactoryMock implements TranslatorDependencyFactory {
 
   @Override
   public ScriptGenerator createScriptGenerator(String sdkVersion, String qualifier, TranslatorOptions options) {
-    // Default hashCode() implementation is OK here
-    // we just need to distinguish TranslatorOptions instances
+    // EfxTranslatorOptions are compared by value, so equal options share a script generator
     String key = sdkVersion + qualifier + options.hashCode();
     if (!scriptGenerators.containsKey(key)) {
       try {
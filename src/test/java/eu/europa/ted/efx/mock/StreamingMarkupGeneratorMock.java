@@ -0,0 +1,30 @@
+package eu.europa.ted.efx.mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import eu.europa.ted.efx.interfaces.StreamingMarkupGenerator;
+import eu.europa.ted.efx.model.templates.Markup;
+
+/**
+ * Writes the same output as {@link MarkupGeneratorMock#composeOutputFile(List, List)}, one piece at
+ * a time.
+ */
+public class StreamingMarkupGeneratorMock extends MarkupGeneratorMock
+    implements StreamingMarkupGenerator {
+
+  @Override
+  public void beginOutputFile(Appendable output) {}
+
+  @Override
+  public void writeFragmentDefinition(Markup fragment, Appendable output) throws IOException {
+    output.append(fragment.script).append('\n');
+  }
+
+  @Override
+  public void endOutputFile(List<Markup> content, Appendable output) throws IOException {
+    for (int i = 0; i < content.size(); i++) {
+      output.append(i == 0 ? "" : "\n").append(content.get(i).script);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package eu.europa.ted.efx.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.exceptions.TranslationCancelledException;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+
+class CancellationTokenTest {
+
+  private static final String SDK_VERSION = "eforms-sdk-2.0";
+
+  private static String translate(final String expression, final CancellationToken token)
+      throws InstantiationException {
+    return EfxTranslator.translateExpression(DependencyFactoryMock.INSTANCE, SDK_VERSION,
+        expression, EfxTranslatorOptions.DEFAULT, token);
+  }
+
+  @Test
+  void testNotCancelled() throws InstantiationException {
+    assertEquals("PathNode/NumberField/number() > 0",
+        translate("{ND-Root} ${BT-00-Number > 0}", CancellationToken.create()));
+  }
+
+  @Test
+  void testCancelled() {
+    final CancellationToken token = CancellationToken.create();
+    token.cancel();
+
+    final TranslationCancelledException e = assertThrows(TranslationCancelledException.class,
+        () -> translate("{ND-Root} ${BT-00-Number > 0}", token));
+    assertFalse(e.isDeadlineExceeded());
+  }
+
+  @Test
+  void testDeadlineExceeded() {
+    final CancellationToken token = CancellationToken.withTimeout(Duration.ZERO);
+
+    assertTrue(token.isCancelled());
+    final TranslationCancelledException e = assertThrows(TranslationCancelledException.class,
+        () -> translate("{ND-Root} ${BT-00-Number > 0}", token));
+    assertTrue(e.isDeadlineExceeded());
+  }
+
+  @Test
+  void testScope() {
+    final CancellationToken outer = CancellationToken.create();
+    final CancellationToken inner = CancellationToken.create();
+    try (CancellationToken.Scope outerScope = outer.bind()) {
+      try (CancellationToken.Scope innerScope = inner.bind()) {
+        assertSame(inner, CancellationToken.current());
+      }
+      assertSame(outer, CancellationToken.current());
+    }
+    assertNull(CancellationToken.current());
+  }
+
+  @Test
+  void testCancelledParallelTemplate() throws InstantiationException {
+    final CancellationToken token = CancellationToken.create();
+    token.cancel();
+
+    try (CancellationToken.Scope scope = token.bind()) {
+      assertThrows(TranslationCancelledException.class,
+          () -> EfxTranslator.translateTemplateInParallel(DependencyFactoryMock.INSTANCE,
+              SDK_VERSION, "{ND-Root} foo\n{BT-00-Text} bar\n", EfxTranslatorOptions.DEFAULT,
+              ForkJoinPool.commonPool()));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package eu.europa.ted.efx.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.sdk2.EfxLexer;
+import eu.europa.ted.efx.sdk2.EfxParser;
+
+class DfaCachesTest {
+
+  private static String translate(final String expression) throws InstantiationException {
+    return EfxTranslator.translateExpression(DependencyFactoryMock.INSTANCE, "eforms-sdk-2.0",
+        expression);
+  }
+
+  @Test
+  void testStatistics() throws InstantiationException {
+    translate("{ND-Root} ${BT-00-Number > 0}");
+
+    final DfaCache parserCache = DfaCaches.get(EfxParser.class);
+    assertNotNull(parserCache);
+    assertTrue(parserCache.getStateCount() > 0);
+    assertTrue(parserCache.getEstimatedMemory() > 0);
+    assertNotNull(DfaCaches.get(EfxLexer.class));
+  }
+
+  @Test
+  void testReset() throws InstantiationException {
+    translate("{ND-Root} ${BT-00-Number > 0}");
+
+    final DfaCache parserCache = DfaCaches.get(EfxParser.class);
+    final long resets = parserCache.getResetCount();
+    parserCache.reset();
+
+    assertEquals(0, parserCache.getStateCount());
+    assertEquals(resets + 1, parserCache.getResetCount());
+    assertEquals("../NumberField/number() > 0", translate("{BT-00-Text} ${BT-00-Number > 0}"));
+    assertTrue(parserCache.getStateCount() > 0);
+  }
+
+  @Test
+  void testMaximumStates() throws InstantiationException {
+    translate("{ND-Root} ${BT-00-Number > 0}");
+
+    final DfaCache parserCache = DfaCaches.get(EfxParser.class);
+    final long resets = parserCache.getResetCount();
+    DfaCaches.setMaximumStates(1);
+    try {
+      for (int i = 0; i < DfaCaches.SIZE_CHECK_INTERVAL; i++) {
+        translate("{ND-Root} ${BT-00-Number > " + i + "}");
+      }
+    } finally {
+      DfaCaches.setMaximumStates(0);
+    }
+    assertTrue(parserCache.getResetCount() > resets);
+  }
+}
@@ -0,0 +1,80 @@
+package eu.europa.ted.efx.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+
+class MappedCharStreamTest {
+
+  private static Path newFile(final String content) throws IOException {
+    final Path path = Files.createTempFile("efx-template", ".efx");
+    path.toFile().deleteOnExit();
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+  private static String largeTemplate(final String line) {
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < MappedCharStream.MAPPING_THRESHOLD) {
+      sb.append(line).append('\n');
+    }
+    return sb.toString();
+  }
+
+  @Test
+  void testOpen_AsciiFileIsMapped() throws IOException {
+    final String content = largeTemplate("{BT-00-Text} foo");
+    final CharStream mapped = MappedCharStream.open(newFile(content));
+    final CharStream expected = CharStreams.fromString(content);
+
+    assertTrue(mapped instanceof MappedCharStream);
+    assertEquals(expected.size(), mapped.size());
+    for (int i = 0; i < 40; i++) {
+      assertEquals(expected.LA(1), mapped.LA(1));
+      expected.consume();
+      mapped.consume();
+    }
+    assertEquals(expected.LA(-1), mapped.LA(-1));
+    assertEquals(expected.getText(Interval.of(3, 25)), mapped.getText(Interval.of(3, 25)));
+
+    mapped.seek(mapped.size());
+    assertEquals(CharStream.EOF, mapped.LA(1));
+  }
+
+  @Test
+  void testOpen_NonAsciiFileIsDecoded() throws IOException {
+    final String content = largeTemplate("{BT-00-Text} été");
+    final CharStream stream = MappedCharStream.open(newFile(content));
+
+    assertFalse(stream instanceof MappedCharStream);
+    assertEquals(content, stream.toString());
+  }
+
+  @Test
+  void testOpen_SmallFileIsNotMapped() throws IOException {
+    assertFalse(MappedCharStream.open(newFile("{BT-00-Text} foo\n")) instanceof MappedCharStream);
+  }
+
+  @Test
+  void testTranslateMappedTemplate() throws IOException, InstantiationException {
+    // A few lines made large by comments, to keep the translation itself short.
+    final String comment = " // " + "x".repeat((int) MappedCharStream.MAPPING_THRESHOLD / 2);
+    final String template = String.join("\n", "{BT-00-Text} foo ${BT-00-Text}" + comment,
+        "\t{ND-Root} bar" + comment, "{BT-00-Number} baz", "");
+
+    assertEquals(
+        EfxTranslator.translateTemplate(DependencyFactoryMock.INSTANCE, "eforms-sdk-2.0", template),
+        EfxTranslator.translateTemplate(DependencyFactoryMock.INSTANCE, "eforms-sdk-2.0",
+            newFile(template)));
+  }
+}
@@ -0,0 +1,81 @@
+package eu.europa.ted.efx.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+
+class WarmUpCorpusTest {
+
+  private static WarmUpCorpus sampleCorpus() {
+    return new WarmUpCorpus("eforms-sdk-2.0")
+        .addExpression("{ND-Root} ${BT-00-Number > 0}")
+        .addExpression("{ND-Root, number:$p1} ${$p1 == 1}", "1")
+        .addTemplate("{BT-00-Text} ${BT-00-Text}\n")
+        .addExpression("{ND-Root} ${BT-00-Unknown == 'été'}");
+  }
+
+  @Test
+  void testSaveAndLoad() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    sampleCorpus().save(output);
+
+    final WarmUpCorpus corpus = WarmUpCorpus.load(new ByteArrayInputStream(output.toByteArray()));
+
+    assertEquals("eforms-sdk-2.0", corpus.getSdkVersion());
+    final List<WarmUpCorpus.Entry> entries = corpus.getEntries();
+    assertEquals(4, entries.size());
+    assertEquals(WarmUpCorpus.Kind.EXPRESSION, entries.get(1).getKind());
+    assertEquals("{ND-Root, number:$p1} ${$p1 == 1}", entries.get(1).getSource());
+    assertEquals(List.of("1"), entries.get(1).getParameters());
+    assertEquals(WarmUpCorpus.Kind.TEMPLATE, entries.get(2).getKind());
+    assertEquals("{ND-Root} ${BT-00-Unknown == 'été'}", entries.get(3).getSource());
+  }
+
+  @Test
+  void testLoad_InvalidInput() {
+    assertThrows(IOException.class,
+        () -> WarmUpCorpus.load(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8})));
+  }
+
+  @Test
+  void testLoad_InvalidLengths() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new WarmUpCorpus("eforms-sdk-2.0").addExpression("{ND-Root} ${1}", "1").save(output);
+    final byte[] bytes = output.toByteArray();
+    // Magic, format version, SDK version, entry count, entry kind, then the source.
+    final int sourceLength = 8 + 4 + "eforms-sdk-2.0".length() + 4 + 1;
+    final int parameterCount = sourceLength + 4 + "{ND-Root} ${1}".length();
+
+    for (int offset : new int[] {sourceLength, parameterCount}) {
+      for (int value : new int[] {-1, Integer.MAX_VALUE}) {
+        final byte[] corrupt = bytes.clone();
+        ByteBuffer.wrap(corrupt).putInt(offset, value);
+        assertThrows(IOException.class,
+            () -> WarmUpCorpus.load(new ByteArrayInputStream(corrupt)));
+      }
+    }
+
+    // A plausible length that goes beyond the end of the stream.
+    final byte[] truncated = bytes.clone();
+    ByteBuffer.wrap(truncated).putInt(sourceLength, 1 << 20);
+    assertThrows(IOException.class, () -> WarmUpCorpus.load(new ByteArrayInputStream(truncated)));
+  }
+
+  @Test
+  void testLoadResource_Missing() throws IOException {
+    assertEquals(0, WarmUpCorpus.loadResource("eforms-sdk-0.0").getEntries().size());
+  }
+
+  @Test
+  void testWarmUp() throws InstantiationException {
+    // The last entry references an unknown field and fails to translate.
+    assertEquals(3, EfxTranslator.warmUp(DependencyFactoryMock.INSTANCE, sampleCorpus()));
+  }
+}
@@ -1,10 +1,26 @@
 package eu.europa.ted.efx.sdk1;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.Diagnostic;
 import eu.europa.ted.efx.EfxTestsBase;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.component.EfxTranslatorFactory;
+import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.model.DecimalFormat;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.FieldPresenceCondition;
 
 class EfxExpressionTranslatorV1Test extends EfxTestsBase {
   @Override
@@ -1623,4 +1639,163 @@ class EfxExpressionTranslatorV1Test extends EfxTestsBase {
   // #endregion: Compare sequences
 
   // #endregion Sequence Functions
+
+  // #region: Translator reuse ------------------------------------------------
+
+  @Test
+  void testTranslatorReuse_WithParameters() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    assertEquals("1 = 2",
+        translator.translateExpression("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "1", "2"));
+    assertEquals("3 = 4",
+        translator.translateExpression("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "3", "4"));
+  }
+
+  @Test
+  void testTranslatorReuse_AcrossThreads() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    final List<String> expected = IntStream.range(0, 200)
+        .mapToObj(i -> String.format("%d = %d", i, i + 1)).collect(Collectors.toList());
+    final List<String> actual = IntStream.range(0, 200).parallel()
+        .mapToObj(i -> translator.translateExpression(
+            "{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", String.valueOf(i),
+            String.valueOf(i + 1)))
+        .collect(Collectors.toList());
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testTranslateExpressions() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    final List<TranslationResult> results = translator.translateExpressions(
+        List.of("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "{ND-Root} ${1 + }",
+            "{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}"),
+        List.of(new String[] {"1", "2"}, new String[0], new String[] {"3", "4"}));
+
+    assertEquals(3, results.size());
+    assertTrue(results.get(0).isSuccessful());
+    assertEquals("1 = 2", results.get(0).getTranslation());
+    assertFalse(results.get(1).isSuccessful());
+    assertTrue(results.get(1).getError() instanceof ParseCancellationException);
+    assertEquals("3 = 4", results.get(2).getTranslation());
+  }
+
+  // #endregion: Translator reuse
+
+  // #region: Syntax validation -----------------------------------------------
+
+  @Test
+  void testValidateExpressionSyntax() throws InstantiationException {
+    assertTrue(EfxTranslator
+        .validateExpressionSyntax(getSdkVersion(), "{ND-Root} ${BT-99-X > 0}").isEmpty());
+
+    final List<Diagnostic> diagnostics =
+        EfxTranslator.validateExpressionSyntax(getSdkVersion(), "{ND-Root} ${1 + }");
+    assertEquals(1, diagnostics.size());
+    assertEquals(Diagnostic.Kind.SYNTAX, diagnostics.get(0).getKind());
+  }
+
+  // #endregion: Syntax validation
+
+  // #region: Canonicalisation ------------------------------------------------
+
+  @Test
+  void testCanonicaliseExpression() throws InstantiationException {
+    assertEquals("{ ND-Root } ${ 2 * ( 1 + BT-00-Number ) > 3 }", EfxTranslator
+        .canonicaliseExpression(getSdkVersion(), "{ND-Root} ${(2*((1 + BT-00-Number)) > (3))}"));
+  }
+
+  // #endregion: Canonicalisation
+
+  // #region: Dependencies ----------------------------------------------------
+
+  @Test
+  void testExtractDependencies() throws InstantiationException {
+    final Dependencies dependencies = EfxTranslator.extractExpressionDependencies(getSdkVersion(),
+        "{ND-Root} ${BT-00-Number > 0 and BT-00-Code in (accessibility)"
+            + " and BT-00-Text/@Attribute == $x}");
+
+    assertEquals(Set.of("BT-00-Number", "BT-00-Code", "BT-00-Text"), dependencies.getFieldIds());
+    assertEquals(Set.of("ND-Root"), dependencies.getNodeIds());
+    assertEquals(Set.of("accessibility"), dependencies.getCodelists());
+    assertEquals(Set.of("BT-00-Text/@Attribute"), dependencies.getAttributes());
+    assertEquals(Set.of("x"), dependencies.getVariables());
+  }
+
+  @Test
+  void testExtractDependencies_ExternalReferences() throws InstantiationException {
+    final Dependencies dependencies = EfxTranslator.extractExpressionDependencies(getSdkVersion(),
+        "{ND-Root} ${notice(BT-00-Identifier)/BT-00-Text == 'a'}");
+
+    assertEquals(Set.of("BT-00-Identifier"), dependencies.getFieldIds());
+    assertEquals(Set.of("BT-00-Text"), dependencies.getExternalReferences());
+  }
+
+  // #endregion: Dependencies
+
+  // #region: Field presence --------------------------------------------------
+
+  private FieldPresenceCondition deriveFieldPresenceCondition(final String expression)
+      throws InstantiationException {
+    return EfxTranslator.deriveFieldPresenceCondition(getSdkVersion(), expression);
+  }
+
+  @Test
+  void testFieldPresence_Comparisons() throws InstantiationException {
+    assertEquals(
+        new FieldPresenceCondition(Set.of("BT-00-Number", "BT-00-Text"), Set.of()),
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Number > 0 and BT-00-Text == 'a'}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Number > 0 or BT-00-Text == 'a'}"));
+  }
+
+  @Test
+  void testFieldPresence_PresenceConditions() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of(), Set.of("BT-00-Text")),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${BT-00-Code is present or BT-00-Text is not present}"));
+    assertEquals(new FieldPresenceCondition(Set.of(), Set.of("BT-00-Code")),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${not(BT-00-Code is present) and BT-00-Code not in ('a')}"));
+  }
+
+  @Test
+  void testFieldPresence_ContextAndEmptiness() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Text"), Set.of("BT-00-Text")),
+        deriveFieldPresenceCondition("{BT-00-Text} ${BT-00-Code is not empty or TRUE}"));
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Code"), Set.of()),
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Code is empty}"));
+  }
+
+  @Test
+  void testFieldPresence_QuantifiedExpressions() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Text"), Set.of()),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${some text:$x in BT-00-Text satisfies $x == 'a'}"));
+    assertEquals(new FieldPresenceCondition(Set.of(), Set.of("BT-00-Code", "BT-00-Text")),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${every text:$x in BT-00-Text satisfies $x not in BT-00-Code}"));
+  }
+
+  @Test
+  void testFieldPresence_Conservative() throws InstantiationException {
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Number + 1 > 2}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${number:BT-00-Text > 2}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Text like 'a.*'}"));
+  }
+
+  // #endregion: Field presence
 }
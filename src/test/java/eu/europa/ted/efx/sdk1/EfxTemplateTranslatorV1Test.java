@@ -2,9 +2,16 @@ package eu.europa.ted.efx.sdk1;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.Arrays;
+import java.util.Set;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.junit.jupiter.api.Test;
 import eu.europa.ted.efx.EfxTestsBase;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.templates.TemplateModule;
 
 class EfxTemplateTranslatorV1Test extends EfxTestsBase {
   @Override
@@ -360,4 +367,46 @@ class EfxTemplateTranslatorV1Test extends EfxTestsBase {
   void testImplicitFormatting_Times() {
     assertEquals("let block01() -> { eval(for $item in PathNode/StartTimeField/xs:time(text()) return format-time($item, '[H01]:[m01] [Z]')) }\nfor-each(/*).call(block01())", translateTemplate("{ND-Root} ${BT-00-StartTime}"));
   }
+
+  /*** Template modules ***/
+
+  private TemplateModule compileTemplateModule(final String name, final String template)
+      throws InstantiationException {
+    return EfxTranslator.compileTemplateModule(DependencyFactoryMock.INSTANCE, getSdkVersion(),
+        name, template, EfxTranslatorOptions.DEFAULT);
+  }
+
+  @Test
+  void testLinkTemplateModules() throws InstantiationException {
+    assertEquals(
+        lines("let organisations01() -> { text('foo') }", "let lots01() -> { text('bar') }",
+            "for-each(/*/PathNode/TextField).call(organisations01())",
+            "for-each(/*).call(lots01())"),
+        EfxTranslator.linkTemplateModules(DependencyFactoryMock.INSTANCE, getSdkVersion(),
+            Arrays.asList(compileTemplateModule("organisations", "{BT-00-Text} foo\n"),
+                compileTemplateModule("lots", "{ND-Root} bar\n")),
+            EfxTranslatorOptions.DEFAULT));
+  }
+
+  @Test
+  void testLinkTemplateModules_SameAsTemplate() throws InstantiationException {
+    final String template = lines("{BT-00-Text} foo", "\t{ND-Root} bar", "{ND-Root} baz");
+
+    assertEquals(translateTemplate(template),
+        EfxTranslator.linkTemplateModules(DependencyFactoryMock.INSTANCE, getSdkVersion(),
+            Arrays.asList(compileTemplateModule("block", template + "\n")),
+            EfxTranslatorOptions.DEFAULT));
+  }
+
+  /*** Dependencies ***/
+
+  @Test
+  void testExtractTemplateDependencies() throws InstantiationException {
+    final Dependencies dependencies = EfxTranslator.extractTemplateDependencies(getSdkVersion(),
+        lines("{BT-00-Text} foo #{BT-00-Code} ${BT-00-Number}",
+            "  {ND-Root} #{field|name|BT-00-Date}", ""));
+
+    assertEquals(Set.of("BT-00-Text", "BT-00-Code", "BT-00-Number"), dependencies.getFieldIds());
+    assertEquals(Set.of("ND-Root"), dependencies.getNodeIds());
+  }
 }
@@ -1,10 +1,44 @@
 package eu.europa.ted.efx.sdk2;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
+import eu.europa.ted.eforms.sdk.component.SdkComponent;
+import eu.europa.ted.eforms.sdk.component.SdkComponentType;
+import eu.europa.ted.efx.Diagnostic;
 import eu.europa.ted.efx.EfxTestsBase;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.cache.ExpressionFingerprint;
+import eu.europa.ted.efx.cache.TranslationCache;
+import eu.europa.ted.efx.component.EfxTranslatorFactory;
+import eu.europa.ted.efx.exceptions.DiagnosticCollector;
+import eu.europa.ted.efx.exceptions.EfxTranslationException;
+import eu.europa.ted.efx.interfaces.EfxExpressionTranslator;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.model.DecimalFormat;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.FieldIndex;
+import eu.europa.ted.efx.model.FieldPresenceCondition;
+import eu.europa.ted.efx.parsing.TwoStageParsing;
 
 class EfxExpressionTranslatorV2Test extends EfxTestsBase {
   @Override
@@ -1703,4 +1737,590 @@ class EfxExpressionTranslatorV2Test extends EfxTestsBase {
   }
 
   // #endregion: Indexers
+
+  // #region: Translator reuse ------------------------------------------------
+
+  @Test
+  void testTranslatorReuse_WithParameters() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    assertEquals("1 = 2",
+        translator.translateExpression("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "1", "2"));
+    assertEquals("3 = 4",
+        translator.translateExpression("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "3", "4"));
+  }
+
+  @Test
+  void testTranslatorReuse_AcrossThreads() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    final List<String> expected = IntStream.range(0, 200)
+        .mapToObj(i -> String.format("%d = %d", i, i + 1)).collect(Collectors.toList());
+    final List<String> actual = IntStream.range(0, 200).parallel()
+        .mapToObj(i -> translator.translateExpression(
+            "{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", String.valueOf(i),
+            String.valueOf(i + 1)))
+        .collect(Collectors.toList());
+
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Scales every numeric literal by ten, without providing a {@link #newTranslation()} of its own.
+   * The qualifiers keep the component factory from picking these subclasses up as SDK 2
+   * translators.
+   */
+  @SdkComponent(versions = {"2"}, componentType = SdkComponentType.EFX_EXPRESSION_TRANSLATOR,
+      qualifier = "scaling")
+  private static class ScalingTranslator extends EfxExpressionTranslatorV2 {
+    ScalingTranslator() {
+      super(DependencyFactoryMock.INSTANCE.createSymbolResolver("eforms-sdk-2.0", ""),
+          DependencyFactoryMock.INSTANCE.createScriptGenerator("eforms-sdk-2.0", "",
+              new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT)),
+          DependencyFactoryMock.INSTANCE.createErrorListener());
+    }
+
+    @Override
+    public void exitNumericLiteral(EfxParser.NumericLiteralContext ctx) {
+      this.stack.push(this.script.getNumericLiteralEquivalent(ctx.getText() + "0"));
+    }
+  }
+
+  @SdkComponent(versions = {"2"}, componentType = SdkComponentType.EFX_EXPRESSION_TRANSLATOR,
+      qualifier = "reusable-scaling")
+  private static class ReusableScalingTranslator extends ScalingTranslator {
+    @Override
+    protected EfxExpressionTranslatorV2 newTranslation() {
+      return new ReusableScalingTranslator();
+    }
+  }
+
+  @Test
+  void testTranslatorSubclass_WithoutNewTranslation() {
+    assertThrows(IllegalStateException.class,
+        () -> new ScalingTranslator().translateExpression("{ND-Root} ${1 + 2}"));
+  }
+
+  @Test
+  void testTranslatorSubclass_WithNewTranslation() {
+    assertEquals("10 + 20",
+        new ReusableScalingTranslator().translateExpression("{ND-Root} ${1 + 2}"));
+  }
+
+  @Test
+  void testTranslatorPool_SameOptions() throws InstantiationException {
+    assertSame(
+        EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE, getSdkVersion(), "",
+            new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT)),
+        EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE, getSdkVersion(), "",
+            new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT)));
+  }
+
+  @Test
+  void testTranslatorPool_DifferentOptions() throws InstantiationException {
+    assertNotSame(
+        EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE, getSdkVersion(), "",
+            new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT)),
+        EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE, getSdkVersion(), "",
+            new EfxTranslatorOptions(DecimalFormat.XSL_DEFAULT)));
+  }
+
+  @Test
+  void testTranslatorPool_EvictsLeastRecentlyUsed() throws InstantiationException {
+    final EfxTranslatorOptions efx = new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT);
+    final EfxTranslatorOptions xsl = new EfxTranslatorOptions(DecimalFormat.XSL_DEFAULT);
+    final int maximum = EfxTranslator.getMaximumPooledTranslators();
+    EfxTranslator.setMaximumPooledTranslators(1);
+    try {
+      final EfxExpressionTranslator first = EfxTranslator
+          .getExpressionTranslator(DependencyFactoryMock.INSTANCE, getSdkVersion(), "", efx);
+      assertSame(first, EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE,
+          getSdkVersion(), "", efx));
+
+      EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE, getSdkVersion(), "",
+          xsl);
+      assertNotSame(first, EfxTranslator.getExpressionTranslator(DependencyFactoryMock.INSTANCE,
+          getSdkVersion(), "", efx));
+    } finally {
+      EfxTranslator.setMaximumPooledTranslators(maximum);
+    }
+  }
+
+  @Test
+  void testTranslationCache() throws InstantiationException {
+    final TranslationCache cache = new TranslationCache();
+    EfxTranslator.setTranslationCache(cache);
+    try {
+      for (int i = 0; i < 2; i++) {
+        assertEquals("1 = 2", translateExpression("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "1", "2"));
+      }
+      assertEquals("1 = 3", translateExpression("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "1", "3"));
+    } finally {
+      EfxTranslator.setTranslationCache(null);
+    }
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  void testTranslationCache_CanonicalKeys() throws InstantiationException {
+    final TranslationCache cache = new TranslationCache();
+    EfxTranslator.setTranslationCache(cache);
+    EfxTranslator.setCanonicalCacheKeys(true);
+    try {
+      assertEquals("PathNode/NumberField/number() > 0",
+          translateExpression("{ND-Root} ${BT-00-Number > 0}"));
+      assertEquals("PathNode/NumberField/number() > 0",
+          translateExpression("{ND-Root}  ${ (BT-00-Number>0) }"));
+    } finally {
+      EfxTranslator.setCanonicalCacheKeys(false);
+      EfxTranslator.setTranslationCache(null);
+    }
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  void testTranslateExpressions() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    final List<TranslationResult> results = translator.translateExpressions(
+        List.of("{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}", "{ND-Root} ${1 + }",
+            "{ND-Root, number:$p1, number:$p2} ${$p1 == $p2}"),
+        List.of(new String[] {"1", "2"}, new String[0], new String[] {"3", "4"}));
+
+    assertEquals(3, results.size());
+    assertTrue(results.get(0).isSuccessful());
+    assertEquals("1 = 2", results.get(0).getTranslation());
+    assertFalse(results.get(1).isSuccessful());
+    assertTrue(results.get(1).getError() instanceof ParseCancellationException);
+    assertEquals("3 = 4", results.get(2).getTranslation());
+  }
+
+  @Test
+  void testTranslateExpressions_WithTypeCasts() throws InstantiationException {
+    final EfxExpressionTranslator translator = EfxTranslatorFactory.getEfxExpressionTranslator(
+        getSdkVersion(), DependencyFactoryMock.INSTANCE,
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+    final List<String> expressions = List.of("{ND-Root} ${BT-00-Number > 0}",
+        "{ND-Root} ${BT-00-Text == 'a'}", "{BT-00-Text} ${BT-00-StartDate < BT-00-EndDate}");
+
+    final List<TranslationResult> results = translator.translateExpressions(expressions);
+
+    for (int i = 0; i < expressions.size(); i++) {
+      assertEquals(translator.translateExpression(expressions.get(i)),
+          results.get(i).getTranslation());
+    }
+  }
+
+  @Test
+  void testParallelTranslateExpressions() throws InstantiationException {
+    final List<String> expressions = IntStream.range(0, 200)
+        .mapToObj(i -> i % 10 == 0 ? "{ND-Root} ${1 + }" : "{ND-Root} ${BT-00-Number > " + i + "}")
+        .collect(Collectors.toList());
+    final EfxTranslatorOptions options = new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<TranslationResult> results = EfxTranslator.translateExpressions(
+          DependencyFactoryMock.INSTANCE, getSdkVersion(), expressions, options, executor);
+
+      assertEquals(expressions.size(), results.size());
+      for (int i = 0; i < expressions.size(); i++) {
+        assertEquals(expressions.get(i), results.get(i).getSource());
+        assertEquals(i % 10 != 0, results.get(i).isSuccessful());
+        if (results.get(i).isSuccessful()) {
+          assertEquals("PathNode/NumberField/number() > " + i, results.get(i).getTranslation());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testTranslateExpressionAsync() {
+    final EfxTranslatorOptions options = new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT);
+    final List<CompletableFuture<String>> translations = IntStream.range(0, 20)
+        .mapToObj(i -> EfxTranslator.translateExpressionAsync(DependencyFactoryMock.INSTANCE,
+            getSdkVersion(), "{ND-Root} ${BT-00-Number > " + i + "}", options))
+        .collect(Collectors.toList());
+
+    for (int i = 0; i < translations.size(); i++) {
+      assertEquals("PathNode/NumberField/number() > " + i, translations.get(i).join());
+    }
+  }
+
+  @Test
+  void testTranslateExpressionAsync_SyntaxError() {
+    final CompletableFuture<String> translation = EfxTranslator.translateExpressionAsync(
+        DependencyFactoryMock.INSTANCE, getSdkVersion(), "{ND-Root} ${1 + }",
+        new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+
+    final CompletionException error = assertThrows(CompletionException.class, translation::join);
+    assertTrue(error.getCause() instanceof ParseCancellationException);
+    assertTrue(translation.isCompletedExceptionally());
+    assertFalse(translation.isCancelled());
+  }
+
+  // #endregion: Translator reuse
+
+  // #region: Diagnostics -----------------------------------------------------
+
+  private EfxExpressionTranslator getTranslator() throws InstantiationException {
+    return EfxTranslatorFactory.getEfxExpressionTranslator(getSdkVersion(),
+        DependencyFactoryMock.INSTANCE, new EfxTranslatorOptions(DecimalFormat.EFX_DEFAULT));
+  }
+
+  @Test
+  void testCheckExpression() throws InstantiationException {
+    final TranslationResult result =
+        getTranslator().checkExpression("{ND-Root} ${BT-00-Number > 0}");
+
+    assertTrue(result.isSuccessful());
+    assertEquals("PathNode/NumberField/number() > 0", result.getTranslation());
+    assertTrue(result.getDiagnostics().isEmpty());
+  }
+
+  @Test
+  void testCheckExpression_CollectsAllSyntaxErrors() throws InstantiationException {
+    final TranslationResult result =
+        getTranslator().checkExpression(
+        "{ND-Root} ${BT-00-Number in (1, , 3) and BT-00-Text in ('a',)}");
+
+    assertFalse(result.isSuccessful());
+    assertEquals(2, result.getDiagnostics().size());
+    for (Diagnostic diagnostic : result.getDiagnostics()) {
+      assertEquals(Diagnostic.Kind.SYNTAX, diagnostic.getKind());
+      assertEquals(1, diagnostic.getLine());
+    }
+    assertEquals(32, result.getDiagnostics().get(0).getColumn());
+    assertEquals(60, result.getDiagnostics().get(1).getColumn());
+  }
+
+  @Test
+  void testCheckExpression_LexerAndParserErrorsAtSamePosition() {
+    final EfxLexer lexer = new EfxLexer(CharStreams.fromString(""));
+    final EfxParser parser = new EfxParser(new CommonTokenStream(lexer));
+    final DiagnosticCollector collector = new DiagnosticCollector();
+
+    collector.syntaxError(lexer, null, 1, 12, "token recognition error", null);
+    collector.syntaxError(parser, null, 1, 12, "mismatched input", null);
+    collector.syntaxError(parser, null, 1, 12, "no viable alternative", null);
+
+    assertEquals(2, collector.getDiagnostics().size());
+    assertEquals("token recognition error", collector.getDiagnostics().get(0).getMessage());
+    assertEquals("no viable alternative", collector.getDiagnostics().get(1).getMessage());
+  }
+
+  @Test
+  void testCheckExpression_SemanticError() throws InstantiationException {
+    final TranslationResult result =
+        getTranslator().checkExpression("{ND-Root} ${BT-00-Number == 'a'}");
+
+    assertFalse(result.isSuccessful());
+    assertEquals(1, result.getDiagnostics().size());
+    final Diagnostic diagnostic = result.getDiagnostics().get(0);
+    assertEquals(Diagnostic.Kind.SEMANTIC, diagnostic.getKind());
+    assertEquals(1, diagnostic.getLine());
+    assertEquals(28, diagnostic.getColumn());
+  }
+
+  @Test
+  void testCheckExpression_UnknownField() throws InstantiationException {
+    final TranslationResult result = getTranslator().checkExpression("{ND-Root} ${BT-99-X > 0}");
+
+    assertFalse(result.isSuccessful());
+    final Diagnostic diagnostic = result.getDiagnostics().get(0);
+    assertEquals(Diagnostic.Kind.SEMANTIC, diagnostic.getKind());
+    assertEquals(12, diagnostic.getColumn());
+    assertEquals("Unknown field 'BT-99-X'.", diagnostic.getMessage());
+  }
+
+  @Test
+  void testCheckExpressions() throws InstantiationException {
+    final List<TranslationResult> results = getTranslator().checkExpressions(List.of(
+        "{ND-Root} ${1 + }", "{ND-Root} ${BT-00-Number > 0}", "{ND-Root} ${BT-00-Number == 'a'}"));
+
+    assertEquals(3, results.size());
+    assertEquals(Diagnostic.Kind.SYNTAX, results.get(0).getDiagnostics().get(0).getKind());
+    assertEquals("PathNode/NumberField/number() > 0", results.get(1).getTranslation());
+    assertEquals(Diagnostic.Kind.SEMANTIC, results.get(2).getDiagnostics().get(0).getKind());
+  }
+
+  @Test
+  void testCheckExpression_UndeclaredVariable() throws InstantiationException {
+    final EfxExpressionTranslator translator = getTranslator();
+    final EfxTranslationException error = assertThrows(EfxTranslationException.class,
+        () -> translator.translateExpression("{ND-Root} ${$x > 0}"));
+    assertEquals(0, error.getStackTrace().length);
+
+    final TranslationResult result = translator.checkExpression("{ND-Root} ${$x > 0}");
+    assertFalse(result.isSuccessful());
+    assertEquals(Diagnostic.Kind.SEMANTIC, result.getDiagnostics().get(0).getKind());
+    assertEquals(error.getMessage(), result.getDiagnostics().get(0).getMessage());
+  }
+
+  @Test
+  void testCheckExpression_DoesNotAffectTranslation() throws InstantiationException {
+    final EfxExpressionTranslator translator = getTranslator();
+    translator.checkExpression("{ND-Root} ${1 + }");
+
+    assertThrows(ParseCancellationException.class,
+        () -> translator.translateExpression("{ND-Root} ${1 + }"));
+  }
+
+  // #endregion: Diagnostics
+
+  // #region: Syntax validation -----------------------------------------------
+
+  @Test
+  void testValidateExpressionSyntax() throws InstantiationException {
+    assertTrue(EfxTranslator
+        .validateExpressionSyntax(getSdkVersion(), "{ND-Root} ${BT-00-Number > 0}").isEmpty());
+  }
+
+  @Test
+  void testValidateExpressionSyntax_DoesNotResolveSymbols() throws InstantiationException {
+    assertTrue(EfxTranslator
+        .validateExpressionSyntax(getSdkVersion(), "{ND-Root} ${BT-99-X == 'a'}").isEmpty());
+  }
+
+  @Test
+  void testValidateExpressionSyntax_SyntaxErrors() throws InstantiationException {
+    final List<Diagnostic> diagnostics = EfxTranslator.validateExpressionSyntax(getSdkVersion(),
+        "{ND-Root} ${BT-00-Number in (1, , 3) and BT-00-Text in ('a',)}");
+
+    assertEquals(2, diagnostics.size());
+    assertEquals(Diagnostic.Kind.SYNTAX, diagnostics.get(0).getKind());
+    assertEquals(32, diagnostics.get(0).getColumn());
+    assertEquals(60, diagnostics.get(1).getColumn());
+  }
+
+  // #endregion: Syntax validation
+
+  // #region: Canonicalisation ------------------------------------------------
+
+  private String canonicalise(final String expression) throws InstantiationException {
+    return EfxTranslator.canonicaliseExpression(getSdkVersion(), expression);
+  }
+
+  @Test
+  void testCanonicalise_Whitespace() throws InstantiationException {
+    assertEquals("{ ND-Root } ${ BT-00-Number > 0 }",
+        canonicalise("{ND-Root}   ${BT-00-Number>0 }"));
+    assertEquals(canonicalise("{ND-Root} ${BT-00-Number > 0}"),
+        canonicalise("{ND-Root}\t${ BT-00-Number  >  0}"));
+  }
+
+  @Test
+  void testCanonicalise_RedundantParentheses() throws InstantiationException {
+    assertEquals("{ ND-Root } ${ BT-00-Number > 0 or BT-00-Number < 1 }",
+        canonicalise("{ND-Root} ${((BT-00-Number > 0 or BT-00-Number < 1))}"));
+    assertEquals("{ ND-Root } ${ 3 > 1 }", canonicalise("{ND-Root} ${(((3))) > 1}"));
+  }
+
+  @Test
+  void testCanonicalise_NecessaryParentheses() throws InstantiationException {
+    assertEquals("{ ND-Root } ${ 2 * ( 1 + BT-00-Number ) > 0 }",
+        canonicalise("{ND-Root} ${2 * ((1 + BT-00-Number)) > 0}"));
+    assertEquals("{ ND-Root } ${ BT-00-Number in ( 1 , 2 ) }",
+        canonicalise("{ND-Root} ${BT-00-Number in (1, 2)}"));
+  }
+
+  @Test
+  void testCanonicalise_StringLiterals() throws InstantiationException {
+    assertEquals(canonicalise("{ND-Root} ${BT-00-Text == 'abc'}"),
+        canonicalise("{ND-Root} ${BT-00-Text == \"abc\"}"));
+  }
+
+  @Test
+  void testCanonicalise_TranslatesToSameCode() throws InstantiationException {
+    final String expression = "{ND-Root}  ${BT-00-Text=='abc' and (BT-00-Number > 0)}";
+    assertEquals(translateExpression(expression), translateExpression(canonicalise(expression)));
+  }
+
+  @Test
+  void testCanonicalise_SyntaxError() {
+    assertThrows(ParseCancellationException.class, () -> canonicalise("{ND-Root} ${1 + }"));
+  }
+
+  @Test
+  void testFingerprint() throws InstantiationException {
+    final ExpressionFingerprint fingerprint = EfxTranslator.fingerprintExpression(getSdkVersion(),
+        "{ND-Root, number:$p1} ${$p1 > (1)}", "2");
+
+    assertEquals(fingerprint, EfxTranslator.fingerprintExpression(getSdkVersion(),
+        "{ND-Root, number:$p1} ${ $p1>1 }", "2"));
+    assertNotEquals(fingerprint, EfxTranslator.fingerprintExpression(getSdkVersion(),
+        "{ND-Root, number:$p1} ${$p1 > 1}", "3"));
+    assertNotEquals(fingerprint, EfxTranslator.fingerprintExpression("eforms-sdk-2.1",
+        "{ND-Root, number:$p1} ${$p1 > 1}", "2"));
+    assertEquals(32, fingerprint.toString().length());
+    assertEquals(fingerprint.getHighBits(),
+        java.nio.ByteBuffer.wrap(fingerprint.toBytes()).getLong());
+  }
+
+  // #endregion: Canonicalisation
+
+  // #region: Dependencies ----------------------------------------------------
+
+  private Dependencies extractDependencies(final String expression)
+      throws InstantiationException {
+    return EfxTranslator.extractExpressionDependencies(getSdkVersion(), expression);
+  }
+
+  @Test
+  void testExtractDependencies() throws InstantiationException {
+    final Dependencies dependencies = extractDependencies(
+        "{ND-Root, number:$p} ${BT-00-Number > $p and BT-00-Code in #accessibility}");
+
+    assertEquals(Set.of("BT-00-Number", "BT-00-Code"), dependencies.getFieldIds());
+    assertEquals(Set.of("ND-Root"), dependencies.getNodeIds());
+    assertEquals(Set.of("accessibility"), dependencies.getCodelists());
+    assertEquals(Set.of("p"), dependencies.getVariables());
+    assertTrue(dependencies.getAttributes().isEmpty());
+    assertTrue(dependencies.getExternalReferences().isEmpty());
+  }
+
+  @Test
+  void testExtractDependencies_Attributes() throws InstantiationException {
+    final Dependencies dependencies = extractDependencies(
+        "{ND-Root} ${every text:$lang in BT-00-Text-Multilingual/@languageID satisfies $lang == 'x'}");
+
+    assertEquals(Set.of("BT-00-Text-Multilingual"), dependencies.getFieldIds());
+    assertEquals(Set.of("BT-00-Text-Multilingual/@languageID"), dependencies.getAttributes());
+    assertEquals(Set.of("lang"), dependencies.getVariables());
+  }
+
+  @Test
+  void testExtractDependencies_ExternalReferences() throws InstantiationException {
+    final Dependencies dependencies = extractDependencies(
+        "{ND-Root} ${notice(BT-00-Identifier)/BT-00-Number[BT-00-Code == 'a'] > 0}");
+
+    assertEquals(Set.of("BT-00-Identifier"), dependencies.getFieldIds());
+    assertEquals(Set.of("BT-00-Number", "BT-00-Code"), dependencies.getExternalReferences());
+  }
+
+  @Test
+  void testExtractDependencies_DoesNotResolveSymbols() throws InstantiationException {
+    assertEquals(Set.of("BT-00-Text", "BT-99-Unknown"),
+        extractDependencies("{BT-00-Text} ${BT-99-Unknown == 'a'}").getFieldIds());
+  }
+
+  // #endregion: Dependencies
+
+  // #region: Field presence --------------------------------------------------
+
+  private FieldPresenceCondition deriveFieldPresenceCondition(final String expression)
+      throws InstantiationException {
+    return EfxTranslator.deriveFieldPresenceCondition(getSdkVersion(), expression);
+  }
+
+  @Test
+  void testFieldPresence_Comparisons() throws InstantiationException {
+    assertEquals(
+        new FieldPresenceCondition(Set.of("BT-00-Number", "BT-00-Text"), Set.of()),
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Number > 0 and BT-00-Text == 'a'}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Number > 0 or BT-00-Text == 'a'}"));
+  }
+
+  @Test
+  void testFieldPresence_PresenceConditions() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of(), Set.of("BT-00-Text")),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${BT-00-Code is present or BT-00-Text is not present}"));
+    assertEquals(new FieldPresenceCondition(Set.of(), Set.of("BT-00-Code")),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${not(BT-00-Code is present) and BT-00-Code not in ('a')}"));
+  }
+
+  @Test
+  void testFieldPresence_ContextAndEmptiness() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Text"), Set.of("BT-00-Text")),
+        deriveFieldPresenceCondition("{BT-00-Text} ${BT-00-Code is not empty or TRUE}"));
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Code"), Set.of()),
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Code is empty}"));
+  }
+
+  @Test
+  void testFieldPresence_QuantifiedExpressions() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Text"), Set.of()),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${some text:$x in BT-00-Text satisfies $x == 'a'}"));
+    assertEquals(new FieldPresenceCondition(Set.of(), Set.of("BT-00-Code", "BT-00-Text")),
+        deriveFieldPresenceCondition(
+            "{ND-Root} ${every text:$x in BT-00-Text satisfies $x not in BT-00-Code}"));
+  }
+
+  @Test
+  void testFieldPresence_Predicates() throws InstantiationException {
+    assertEquals(new FieldPresenceCondition(Set.of("BT-00-Code", "BT-00-Text"), Set.of()),
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Text[BT-00-Code == 'b'] is present}"));
+  }
+
+  @Test
+  void testFieldPresence_Conservative() throws InstantiationException {
+    assertEquals(FieldPresenceCondition.UNKNOWN, deriveFieldPresenceCondition(
+        "{ND-Root} ${if BT-00-Number > 0 then BT-00-Text is present else BT-00-Code is present}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${notice(BT-00-Identifier)/BT-00-Text == 'a'}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Number + 1 > 2}"));
+    assertEquals(FieldPresenceCondition.UNKNOWN,
+        deriveFieldPresenceCondition("{ND-Root} ${BT-00-Text like 'a.*'}"));
+  }
+
+  @Test
+  void testFieldPresence_Bitmaps() throws InstantiationException {
+    final FieldIndex index =
+        new FieldIndex(List.of("BT-00-Text", "BT-00-Code", "BT-00-Number", "BT-00-Indicator"));
+    final FieldPresenceCondition condition = deriveFieldPresenceCondition(
+        "{ND-Root} ${BT-00-Number is not present or BT-00-Code in ('a', 'b')}");
+    final BitSet requiredToFail = condition.getRequiredWhenFalse(index);
+
+    assertEquals(BitSet.valueOf(new long[] {0b0100}), requiredToFail);
+    assertTrue(FieldIndex.containsAll(index.toBitmap(Set.of("BT-00-Number", "BT-00-Text")),
+        requiredToFail));
+    assertFalse(FieldIndex.containsAll(index.toBitmap(Set.of("BT-00-Code", "BT-00-Text")),
+        requiredToFail));
+  }
+
+  // #endregion: Field presence
+
+  // #region: Two-stage parsing -----------------------------------------------
+
+  @Test
+  void testTwoStageParsing() {
+    TwoStageParsing.setEnabled(true);
+    try {
+      TwoStageParsing.resetCounters();
+      testExpressionTranslationWithContext("../NumberField/number() > 0", "BT-00-Text",
+          "BT-00-Number > 0");
+      assertEquals(0, TwoStageParsing.getFallbackCount());
+      assertTrue(TwoStageParsing.getSllParseCount() > 0);
+    } finally {
+      TwoStageParsing.setEnabled(false);
+    }
+  }
+
+  @Test
+  void testTwoStageParsing_SyntaxError() {
+    TwoStageParsing.setEnabled(true);
+    try {
+      TwoStageParsing.resetCounters();
+      assertThrows(ParseCancellationException.class,
+          () -> translateExpressionWithContext("BT-00-Text", "BT-00-Number > > 0"));
+      assertEquals(1, TwoStageParsing.getFallbackCount());
+    } finally {
+      TwoStageParsing.setEnabled(false);
+    }
+  }
+
+  // #endregion: Two-stage parsing
 }
@@ -1,10 +1,34 @@
 package eu.europa.ted.efx.sdk2;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.Test;
+import eu.europa.ted.efx.Diagnostic;
 import eu.europa.ted.efx.EfxTestsBase;
+import eu.europa.ted.efx.EfxTranslator;
+import eu.europa.ted.efx.EfxTranslatorOptions;
+import eu.europa.ted.efx.TranslationResult;
+import eu.europa.ted.efx.cache.TranslationCache;
+import eu.europa.ted.efx.exceptions.ThrowingErrorListener;
+import eu.europa.ted.efx.mock.DependencyFactoryMock;
+import eu.europa.ted.efx.mock.MarkupGeneratorMock;
+import eu.europa.ted.efx.mock.StreamingMarkupGeneratorMock;
+import eu.europa.ted.efx.mock.SymbolResolverMockFactory;
+import eu.europa.ted.efx.model.Dependencies;
+import eu.europa.ted.efx.model.templates.Markup;
+import eu.europa.ted.efx.model.templates.TemplateModule;
+import eu.europa.ted.efx.model.templates.TemplateTranslationState;
 
 class EfxTemplateTranslatorV2Test extends EfxTestsBase {
   @Override
@@ -432,4 +456,340 @@ class EfxTemplateTranslatorV2Test extends EfxTestsBase {
         "let block01() -> { label(concat('field', '|', 'name', '|', 'BT-00-Text'))text(' blah blah') }\nfor-each(/*).call(block01())",
         translateTemplate("{ND-Root} #{name|BT-00-Text} blah blah // comment blah blah"));
   }
+
+
+  /*** Streaming output ***/
+
+  private EfxTemplateTranslatorV2 createTranslator(final MarkupGeneratorMock markupGenerator) {
+    return new EfxTemplateTranslatorV2(markupGenerator,
+        SymbolResolverMockFactory.getInstance(getSdkVersion()),
+        DependencyFactoryMock.INSTANCE.createScriptGenerator(getSdkVersion(), "",
+            EfxTranslatorOptions.DEFAULT),
+        ThrowingErrorListener.INSTANCE);
+  }
+
+  @Test
+  void testRenderTemplateToAppendable() throws IOException {
+    final String template = lines("{BT-00-Text} foo", "\t{ND-Root} bar", "\t\t{BT-00-Number} foo",
+        "{ND-Root} baz");
+    final StringBuilder output = new StringBuilder();
+
+    createTranslator(new StreamingMarkupGeneratorMock()).renderTemplate(template + "\n", output);
+
+    assertEquals(translateTemplate(template), output.toString());
+  }
+
+  @Test
+  void testRenderTemplateToAppendable_NonStreamingMarkupGenerator() throws IOException {
+    final String template = lines("{BT-00-Text} foo", "\t{ND-Root} bar");
+    final StringBuilder output = new StringBuilder();
+
+    createTranslator(new MarkupGeneratorMock()).renderTemplate(template + "\n", output);
+
+    assertEquals(translateTemplate(template), output.toString());
+  }
+
+  /*** Incremental translation ***/
+
+  private String multiBlockTemplate() {
+    return lines(
+      "// A comment before the first block",
+      "2{BT-00-Text} foo",
+      "\t3{ND-Root} bar",
+      "// A comment between a block and its children",
+      "\t\t{BT-00-Number} foo",
+      "",
+      "{context:$ctx = BT-00-Text, text:$t = BT-00-Text} ${concat($t, 'x')} \\",
+      "\tjoined",
+      "\t{BT-00-Text, text:$t2 = 'test'} ${concat($t, $t2)}",
+      "{BT-00-Number} baz",
+      "{ND-Root} qux");
+  }
+
+  @Test
+  void testRenderTemplateIncrementally() throws IOException {
+    final String template = multiBlockTemplate();
+    final StringBuilder output = new StringBuilder();
+
+    createTranslator(new MarkupGeneratorMock())
+        .renderTemplateIncrementally(new StringReader(template + "\n"), output);
+
+    assertEquals(translateTemplate(template), output.toString());
+  }
+
+  @Test
+  void testRenderTemplateIncrementally_Streaming() throws IOException {
+    final String template = multiBlockTemplate();
+    final StringBuilder output = new StringBuilder();
+
+    createTranslator(new StreamingMarkupGeneratorMock())
+        .renderTemplateIncrementally(new StringReader(template + "\n"), output);
+
+    assertEquals(translateTemplate(template), output.toString());
+  }
+
+  @Test
+  void testRenderTemplateIncrementally_ErrorsReportTemplateLines() {
+    final ParseCancellationException e = assertThrows(ParseCancellationException.class,
+        () -> createTranslator(new MarkupGeneratorMock()).renderTemplateIncrementally(
+            new StringReader(lines("{BT-00-Text} foo", "{ND-Root} bar", "{ND-Root} ${1 + }", "")),
+            new StringBuilder()));
+
+    assertTrue(e.getMessage().startsWith("line 3:"), e.getMessage());
+  }
+
+  @Test
+  void testRenderTemplateIncrementally_MixedIndentationAcrossBlocks() {
+    assertThrows(ParseCancellationException.class,
+        () -> createTranslator(new MarkupGeneratorMock()).renderTemplateIncrementally(
+            new StringReader(lines("{BT-00-Text} foo", "\t{ND-Root} bar", "{ND-Root} baz",
+                "  {ND-Root} qux", "")),
+            new StringBuilder()));
+  }
+
+  /*** Editing ***/
+
+  private static class CountingMarkupGenerator extends MarkupGeneratorMock {
+    int fragmentCount = 0;
+
+    @Override
+    public Markup composeFragmentDefinition(String name, String number, Markup content,
+        Set<String> parameters) {
+      fragmentCount++;
+      return super.composeFragmentDefinition(name, number, content, parameters);
+    }
+  }
+
+  private String editedTemplate() {
+    return lines("{BT-00-Text} foo", "\t{ND-Root} bar", "{BT-00-Number} baz", "{ND-Root} qux");
+  }
+
+  @Test
+  void testTranslateForEditing() {
+    final TemplateTranslationState state =
+        createTranslator(new MarkupGeneratorMock()).translateForEditing(editedTemplate());
+
+    assertEquals(translateTemplate(editedTemplate()), state.getTranslation());
+    assertEquals(3, state.getBlocks().size());
+  }
+
+  @Test
+  void testTranslateEdit_OnlyEditedBlockIsTranslated() {
+    final CountingMarkupGenerator markupGenerator = new CountingMarkupGenerator();
+    final EfxTemplateTranslatorV2 translator = createTranslator(markupGenerator);
+    final TemplateTranslationState state = translator.translateForEditing(editedTemplate());
+    markupGenerator.fragmentCount = 0;
+
+    final TemplateTranslationState edited =
+        translator.translateEdit(state, 3, 3, "{BT-00-Number} changed");
+
+    assertEquals(1, markupGenerator.fragmentCount);
+    assertEquals(translateTemplate(lines("{BT-00-Text} foo", "\t{ND-Root} bar",
+        "{BT-00-Number} changed", "{ND-Root} qux")), edited.getTranslation());
+  }
+
+  @Test
+  void testTranslateEdit_InsertedBlockRenumbersFollowingBlocks() {
+    final EfxTemplateTranslatorV2 translator = createTranslator(new MarkupGeneratorMock());
+    final TemplateTranslationState state = translator.translateForEditing(editedTemplate());
+
+    final TemplateTranslationState edited =
+        translator.translateEdit(state, 3, 2, lines("{ND-Root} new", "\t{BT-00-Text} child"));
+
+    assertEquals(translateTemplate(lines("{BT-00-Text} foo", "\t{ND-Root} bar", "{ND-Root} new",
+        "\t{BT-00-Text} child", "{BT-00-Number} baz", "{ND-Root} qux")), edited.getTranslation());
+  }
+
+  @Test
+  void testTranslateEdit_RemovedLines() {
+    final EfxTemplateTranslatorV2 translator = createTranslator(new MarkupGeneratorMock());
+    final TemplateTranslationState state = translator.translateForEditing(editedTemplate());
+
+    final TemplateTranslationState edited = translator.translateEdit(state, 2, 3, "");
+
+    assertEquals(translateTemplate(lines("{BT-00-Text} foo", "{ND-Root} qux")),
+        edited.getTranslation());
+  }
+
+  /*** Template modules ***/
+
+  @Test
+  void testCompileTemplateModule() {
+    final TemplateModule module = createTranslator(new MarkupGeneratorMock())
+        .compileTemplateModule("lots", lines("{BT-00-Text} foo", "\t{ND-Root} bar", ""));
+
+    assertEquals("lots", module.getName());
+    assertEquals(1, module.getInvocations().size());
+    assertEquals(2, module.getFragments().size());
+    assertTrue(module.getFragments().get(0).script.contains("lots01("));
+    assertTrue(module.getFragments().get(1).script.contains("lots0101("));
+  }
+
+  @Test
+  void testLinkTemplateModules() {
+    final EfxTemplateTranslatorV2 translator = createTranslator(new MarkupGeneratorMock());
+
+    assertEquals(
+        lines("let organisations01() -> { text('foo') }", "let lots01() -> { text('bar') }",
+            "for-each(/*/PathNode/TextField).call(organisations01())",
+            "for-each(/*).call(lots01())"),
+        translator.linkTemplateModules(
+            Arrays.asList(translator.compileTemplateModule("organisations", "{BT-00-Text} foo\n"),
+                translator.compileTemplateModule("lots", "{ND-Root} bar\n"))));
+  }
+
+  @Test
+  void testLinkTemplateModules_SameAsTemplate() {
+    final EfxTemplateTranslatorV2 translator = createTranslator(new MarkupGeneratorMock());
+
+    assertEquals(translateTemplate(editedTemplate()), translator.linkTemplateModules(
+        Arrays.asList(translator.compileTemplateModule("block", editedTemplate() + "\n"))));
+  }
+
+  @Test
+  void testLinkTemplateModules_DuplicateName() {
+    final EfxTemplateTranslatorV2 translator = createTranslator(new MarkupGeneratorMock());
+    final TemplateModule module = translator.compileTemplateModule("lots", "{ND-Root} bar\n");
+
+    assertThrows(IllegalArgumentException.class,
+        () -> translator.linkTemplateModules(Arrays.asList(module, module)));
+  }
+
+  @Test
+  void testCompileTemplateModule_InvalidName() {
+    final EfxTemplateTranslatorV2 translator = createTranslator(new MarkupGeneratorMock());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> translator.compileTemplateModule("lots1", "{ND-Root} bar\n"));
+  }
+
+  @Test
+  void testTemplateModuleEncoding() {
+    final TemplateModule module = createTranslator(new MarkupGeneratorMock())
+        .compileTemplateModule("lots", lines("{BT-00-Text} foo:bar", "\t{ND-Root} 12:", ""));
+
+    assertEquals(module, TemplateModule.decode(module.encode()));
+  }
+
+  @Test
+  void testTranslateTemplateModules_Cached() throws InstantiationException {
+    final Map<String, String> modules = new LinkedHashMap<>();
+    modules.put("organisations", "{BT-00-Text} foo\n");
+    modules.put("lots", "{ND-Root} bar\n");
+
+    final TranslationCache cache = new TranslationCache();
+    EfxTranslator.setTranslationCache(cache);
+    try {
+      final String first = EfxTranslator.translateTemplateModules(DependencyFactoryMock.INSTANCE,
+          getSdkVersion(), modules, EfxTranslatorOptions.DEFAULT);
+      assertEquals(first, EfxTranslator.translateTemplateModules(DependencyFactoryMock.INSTANCE,
+          getSdkVersion(), modules, EfxTranslatorOptions.DEFAULT));
+
+      modules.put("lots", "{ND-Root} baz\n");
+      assertTrue(EfxTranslator.translateTemplateModules(DependencyFactoryMock.INSTANCE,
+          getSdkVersion(), modules, EfxTranslatorOptions.DEFAULT).contains("baz"));
+    } finally {
+      EfxTranslator.setTranslationCache(null);
+    }
+    assertEquals(3, cache.getMissCount());
+    assertEquals(3, cache.getHitCount());
+  }
+
+  /*** Parallel translation ***/
+
+  @Test
+  void testRenderTemplateInParallel() {
+    final String template = multiBlockTemplate();
+
+    assertEquals(translateTemplate(template), createTranslator(new MarkupGeneratorMock())
+        .renderTemplateInParallel(template + "\n", ForkJoinPool.commonPool()));
+  }
+
+  @Test
+  void testRenderTemplateInParallel_MixedIndentationAcrossBlocks() {
+    final String template = lines("{BT-00-Text} foo", "\t{ND-Root} bar", "{BT-00-Number} baz",
+        "  {ND-Root} qux", "");
+
+    assertThrows(ParseCancellationException.class,
+        () -> createTranslator(new MarkupGeneratorMock()).renderTemplateInParallel(template,
+            ForkJoinPool.commonPool()));
+  }
+
+  @Test
+  void testTranslateTemplateInParallel() throws InstantiationException {
+    final String template = lines("{BT-00-Text} foo", "3 {ND-Root} bar", "{BT-00-Number} baz", "");
+
+    assertEquals(translateTemplate(template), EfxTranslator.translateTemplateInParallel(
+        DependencyFactoryMock.INSTANCE, getSdkVersion(), template, EfxTranslatorOptions.DEFAULT));
+  }
+
+  /*** Diagnostics ***/
+
+  @Test
+  void testCheckTemplate() throws InstantiationException {
+    final String template = lines("{BT-00-Text} foo", "");
+
+    final TranslationResult result = EfxTranslator.checkTemplate(DependencyFactoryMock.INSTANCE,
+        getSdkVersion(), template, EfxTranslatorOptions.DEFAULT);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(translateTemplate(template), result.getTranslation());
+  }
+
+  @Test
+  void testCheckTemplate_CollectsSyntaxErrorsOfAllLines() throws InstantiationException {
+    final TranslationResult result = EfxTranslator.checkTemplate(DependencyFactoryMock.INSTANCE,
+        getSdkVersion(),
+        lines("{BT-00-Text} foo ${1 + }", "{ND-Root} bar ${BT-00-Number in (1, , 3)}", ""),
+        EfxTranslatorOptions.DEFAULT);
+
+    assertFalse(result.isSuccessful());
+    assertEquals(2, result.getDiagnostics().size());
+    assertEquals(Diagnostic.Kind.SYNTAX, result.getDiagnostics().get(0).getKind());
+    assertEquals(1, result.getDiagnostics().get(0).getLine());
+    assertEquals(2, result.getDiagnostics().get(1).getLine());
+    assertEquals(36, result.getDiagnostics().get(1).getColumn());
+  }
+
+  @Test
+  void testCheckTemplate_SemanticError() throws InstantiationException {
+    final TranslationResult result = EfxTranslator.checkTemplate(DependencyFactoryMock.INSTANCE,
+        getSdkVersion(), lines("{BT-00-Text} foo", "{ND-Root} ${BT-99-X}", ""),
+        EfxTranslatorOptions.DEFAULT);
+
+    assertFalse(result.isSuccessful());
+    assertEquals(1, result.getDiagnostics().size());
+    assertEquals(Diagnostic.Kind.SEMANTIC, result.getDiagnostics().get(0).getKind());
+    assertEquals(2, result.getDiagnostics().get(0).getLine());
+  }
+
+  /*** Syntax validation ***/
+
+  @Test
+  void testValidateTemplateSyntax() throws InstantiationException {
+    assertTrue(EfxTranslator.validateTemplateSyntax(getSdkVersion(),
+        lines("{BT-99-X} foo ${BT-99-Y}", "  {ND-Root} bar", "")).isEmpty());
+  }
+
+  @Test
+  void testValidateTemplateSyntax_SyntaxErrors() throws InstantiationException {
+    final List<Diagnostic> diagnostics = EfxTranslator.validateTemplateSyntax(getSdkVersion(),
+        lines("{BT-00-Text} foo ${1 + }", "{ND-Root} bar ${BT-00-Number in (1, , 3)}", ""));
+
+    assertEquals(2, diagnostics.size());
+    assertEquals(1, diagnostics.get(0).getLine());
+    assertEquals(2, diagnostics.get(1).getLine());
+  }
+
+  /*** Dependencies ***/
+
+  @Test
+  void testExtractTemplateDependencies() throws InstantiationException {
+    final Dependencies dependencies = EfxTranslator.extractTemplateDependencies(getSdkVersion(),
+        lines("{BT-00-Text} foo #{BT-00-Code} ${BT-00-Number}",
+            "  {ND-Root} #{field|name|BT-00-Date}", ""));
+
+    assertEquals(Set.of("BT-00-Text", "BT-00-Code", "BT-00-Number"), dependencies.getFieldIds());
+    assertEquals(Set.of("ND-Root"), dependencies.getNodeIds());
+  }
 }